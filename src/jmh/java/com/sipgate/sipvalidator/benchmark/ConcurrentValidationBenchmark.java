@@ -0,0 +1,117 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.HeaderInfo;
+import com.sipgate.sipvalidator.service.MessageLimits;
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+import com.sipgate.sipvalidator.service.ValidationCache;
+import com.sipgate.sipvalidator.service.ValidationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Validates a few thousand mixed messages from all available cores through a
+ * single shared SipValidatorService and fails if any result differs from the
+ * single-threaded result of the same message. Compare the throughput with
+ * "-t 1" to see how validation scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentValidationBenchmark {
+
+    private static final int MESSAGE_COUNT = 5000;
+
+    /** Identity hash codes of char arrays that the parser puts into some error messages */
+    private static final Pattern ARRAY_IDENTITY = Pattern.compile("\\[C@[0-9a-f]+");
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private SipValidatorService service;
+    private String[] messages;
+    private String[] expected;
+
+    @Setup
+    public void setUp() {
+        List<String> corpus = SipCorpus.mixed(MESSAGE_COUNT);
+        messages = corpus.toArray(String[]::new);
+
+        // Expected results come from a separate, uncached instance on a single thread
+        SipValidatorService reference = new SipValidatorService();
+        expected = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            expected[i] = fingerprint(reference.validateMessage(messages[i]));
+        }
+
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getCache().setEnabled(cached);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new SipValidatorService(new ValidationMetrics(registry), new ValidationCache(properties, registry),
+            new MessageLimits(properties));
+    }
+
+    /**
+     * Position of a thread in the message list. Threads start at different
+     * offsets so they work on different messages at the same time.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex() * (MESSAGE_COUNT / Math.max(1, threadParams.getThreadCount()));
+        }
+    }
+
+    @Benchmark
+    public ValidationResult validateShared(Cursor cursor) {
+        int index = cursor.next;
+        cursor.next = index + 1 == messages.length ? 0 : index + 1;
+
+        ValidationResult result = service.validateMessage(messages[index]);
+        String actual = fingerprint(result);
+        if (!actual.equals(expected[index])) {
+            throw new IllegalStateException("Result of message " + index + " differs from the single-threaded result:\n"
+                + actual + "\nexpected:\n" + expected[index]);
+        }
+        return result;
+    }
+
+    private static String fingerprint(ValidationResult result) {
+        StringBuilder sb = new StringBuilder().append(result.isValid()).append('|');
+        result.getMessages().forEach(message -> sb.append(message).append(';'));
+        sb.append('|');
+        result.getErrors().forEach(error -> sb.append(ARRAY_IDENTITY.matcher(error).replaceAll("[C@")).append(';'));
+        sb.append('|');
+        for (HeaderInfo header : result.getHeaders()) {
+            sb.append(header.getName()).append(':').append(header.getType()).append(':')
+              .append(header.getRfcReference() != null ? header.getRfcReference().getUrl() : "-").append(';');
+        }
+        return sb.toString();
+    }
+}
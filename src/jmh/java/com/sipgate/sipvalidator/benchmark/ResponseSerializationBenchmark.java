@@ -0,0 +1,81 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.model.CompactValidationResponse;
+import com.sipgate.sipvalidator.model.StructuredValidationResponse;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a ValidationResponse as JSON, as done for every REST call,
+ * compared with the compact format as JSON and as CBOR and the structured
+ * format with and without rendered text. Each variant starts from the cached
+ * ValidationResult, like a request does, so it includes the conversion and
+ * the rendering of the sentences it needs. Run with -prof gc to compare the
+ * allocation per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"request-invite", "response-401-unauthorized", "malformed-garbage"})
+    private String message;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private ValidationResult result;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().build();
+        cborMapper = CBORMapper.builder().build();
+        result = new SipValidatorService().validateMessage(SipCorpus.message(message)).snapshot();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return objectMapper.writeValueAsBytes(ValidationResponse.of(result));
+    }
+
+    @Benchmark
+    public byte[] serializeCompactJson() {
+        return objectMapper.writeValueAsBytes(CompactValidationResponse.of(ValidationResponse.of(result)));
+    }
+
+    @Benchmark
+    public byte[] serializeCompactCbor() {
+        return cborMapper.writeValueAsBytes(CompactValidationResponse.of(ValidationResponse.of(result)));
+    }
+
+    @Benchmark
+    public byte[] serializeStructured() {
+        return objectMapper.writeValueAsBytes(StructuredValidationResponse.of(ValidationResponse.of(result), false));
+    }
+
+    @Benchmark
+    public byte[] serializeStructuredVerbose() {
+        return objectMapper.writeValueAsBytes(StructuredValidationResponse.of(ValidationResponse.of(result), true));
+    }
+}
@@ -0,0 +1,56 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of SipHeaderRfcMapping.getRfcReference for the header name spellings
+ * seen in practice, looked up as a String and as a slice of message bytes,
+ * the way the detailed message validation looks them up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RfcLookupBenchmark {
+
+    @Param({"Call-ID", "call-id", "WWW-Authenticate", "i", "P-Charging-Vector", "X-Unknown-Header"})
+    private String headerName;
+
+    private String name;
+    private byte[] line;
+
+    @Setup
+    public void setUp() {
+        // A fresh instance, so the lookup cannot benefit from a constant or cached hash code
+        name = new String(headerName.toCharArray());
+        line = (headerName + ": value\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public RfcReference getRfcReference() {
+        return SipHeaderRfcMapping.getRfcReference(name);
+    }
+
+    @Benchmark
+    public RfcReference getRfcReferenceFromBytes() {
+        return SipHeaderRfcMapping.getRfcReference(line, 0, headerName.length());
+    }
+}
@@ -0,0 +1,92 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.service.MessageLimits;
+import com.sipgate.sipvalidator.service.SdpValidator;
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+import com.sipgate.sipvalidator.service.ValidationCache;
+import com.sipgate.sipvalidator.service.ValidationMetrics;
+
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.parser.StringMsgParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking SDP bodies with many media streams. SdpValidator reads the
+ * body array of the parsed message in place, versus the body taken as String
+ * from the message and encoded again, which copies it twice. The end-to-end
+ * benchmarks show what the SDP check adds to validateMessage. Run with
+ * -prof gc to see the copies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SdpValidationBenchmark {
+
+    @Param({"2", "16", "64", "256"})
+    private int streams;
+
+    private SdpValidator sdp;
+    private SIPMessage message;
+    private String messageText;
+    private SipValidatorService withoutSdp;
+    private SipValidatorService withSdp;
+
+    @Setup
+    public void setUp() throws Exception {
+        sdp = new SdpValidator(List.of("PCMA", "PCMU", "telephone-event"));
+        messageText = SipCorpus.invite(streams);
+        message = new StringMsgParser().parseSIPMessage(messageText.getBytes(StandardCharsets.UTF_8), true, true, null);
+        withoutSdp = new SipValidatorService();
+        withSdp = new SipValidatorService(ValidationMetrics.noop(), ValidationCache.disabled(),
+            MessageLimits.defaults(), sdp);
+        if (!inPlace().getErrorEntries().isEmpty() || !copied().getErrorEntries().isEmpty()
+                || !validateMessageWithSdp().isValid()) {
+            throw new IllegalStateException("Benchmark SDP is expected to be valid");
+        }
+    }
+
+    @Benchmark
+    public ValidationResult inPlace() {
+        ValidationResult result = new ValidationResult();
+        byte[] body = message.getRawContent();
+        sdp.validate(body, 0, body.length, result);
+        return result;
+    }
+
+    @Benchmark
+    public ValidationResult copied() throws Exception {
+        ValidationResult result = new ValidationResult();
+        byte[] body = message.getMessageContent().getBytes(StandardCharsets.UTF_8);
+        sdp.validate(body, 0, body.length, result);
+        return result;
+    }
+
+    @Benchmark
+    public ValidationResult validateMessage() {
+        return withoutSdp.validateMessage(messageText);
+    }
+
+    @Benchmark
+    public ValidationResult validateMessageWithSdp() {
+        return withSdp.validateMessage(messageText);
+    }
+}
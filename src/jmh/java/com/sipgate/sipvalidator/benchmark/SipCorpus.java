@@ -0,0 +1,123 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sample messages and headers shared by the benchmarks. The messages are read
+ * from the corpus directory on the classpath, large SDP messages are generated.
+ */
+public final class SipCorpus {
+
+    /** Names of the message files in the corpus directory, without extension */
+    public static final List<String> MESSAGES = List.of(
+        "request-invite",
+        "request-register",
+        "request-options",
+        "request-bye",
+        "response-180-ringing",
+        "response-200-invite",
+        "response-401-unauthorized",
+        "malformed-cseq",
+        "malformed-max-forwards",
+        "malformed-request-line",
+        "malformed-status-line",
+        "malformed-garbage");
+
+    private SipCorpus() {
+    }
+
+    /**
+     * @param name A name from {@link #MESSAGES} or "large-sdp"
+     * @return the message text
+     */
+    public static String message(String name) {
+        if (name.equals("large-sdp")) {
+            return invite(200);
+        }
+        return load("/corpus/" + name + ".sip");
+    }
+
+    /**
+     * @return all corpus messages by name
+     */
+    public static Map<String, String> messages() {
+        return MESSAGES.stream().collect(Collectors.toMap(Function.identity(), SipCorpus::message));
+    }
+
+    /**
+     * Builds a large mixed workload from the corpus. Every entry differs in its
+     * Call-ID and the large SDP messages vary in size, so no two entries are equal.
+     * @param count Number of messages to build
+     */
+    public static List<String> mixed(int count) {
+        List<String> templates = new ArrayList<>();
+        MESSAGES.forEach(name -> templates.add(message(name)));
+        for (int streams = 10; streams <= 50; streams += 10) {
+            templates.add(invite(streams));
+        }
+        List<String> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String template = templates.get(i % templates.size());
+            messages.add(template.replace("a84b4c76e66710", "a84b4c76e66710-" + i));
+        }
+        return messages;
+    }
+
+    /**
+     * @return sample header lines, valid and invalid ones, in full and compact form
+     */
+    public static List<String> headers() {
+        return load("/headers.txt").lines().filter(line -> !line.isBlank()).toList();
+    }
+
+    /**
+     * Builds an INVITE with an SDP body of the given number of media streams
+     */
+    public static String invite(int mediaStreams) {
+        StringBuilder sdp = new StringBuilder()
+            .append("v=0\r\n")
+            .append("o=alice 2890844526 2890844526 IN IP4 pc33.example.com\r\n")
+            .append("s=-\r\n")
+            .append("c=IN IP4 192.0.2.101\r\n")
+            .append("t=0 0\r\n");
+        for (int i = 0; i < mediaStreams; i++) {
+            sdp.append("m=audio ").append(49170 + 2 * i).append(" RTP/AVP 0 8 96\r\n")
+               .append("a=rtpmap:0 PCMU/8000\r\n")
+               .append("a=rtpmap:8 PCMA/8000\r\n")
+               .append("a=rtpmap:96 telephone-event/8000\r\n")
+               .append("a=fmtp:96 0-16\r\n")
+               .append("a=sendrecv\r\n");
+        }
+        return "INVITE sip:bob@example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/UDP pc33.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@example.com>\r\n"
+            + "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:alice@pc33.example.com>\r\n"
+            + "Content-Type: application/sdp\r\n"
+            + "Content-Length: " + sdp.length() + "\r\n"
+            + "\r\n"
+            + sdp;
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = SipCorpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing corpus resource " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.service.SipValidatorService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the whole mixed corpus of requests, responses and malformed
+ * messages, reported per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateCorpusBenchmark {
+
+    /** Must match the size of SipCorpus.MESSAGES */
+    private static final int CORPUS_SIZE = 12;
+
+    private SipValidatorService service;
+    private String[] corpus;
+
+    @Setup
+    public void setUp() {
+        service = new SipValidatorService();
+        corpus = SipCorpus.MESSAGES.stream().map(SipCorpus::message).toArray(String[]::new);
+        if (corpus.length != CORPUS_SIZE) {
+            throw new IllegalStateException("CORPUS_SIZE is " + CORPUS_SIZE + " but the corpus has " + corpus.length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void validateCorpus(Blackhole blackhole) {
+        for (String text : corpus) {
+            blackhole.consume(service.validateMessage(text));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of SipValidatorService.validateHeader, cycling through the sample
+ * headers so valid, compact, unknown and invalid headers are all covered.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateHeaderBenchmark {
+
+    private SipValidatorService service;
+    private String[] headers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        service = new SipValidatorService();
+        headers = SipCorpus.headers().toArray(String[]::new);
+    }
+
+    @Benchmark
+    public ValidationResult validateHeader() {
+        String header = headers[next];
+        next = next + 1 == headers.length ? 0 : next + 1;
+        return service.validateHeader(header);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sipgate.sipvalidator.benchmark;
+
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of SipValidatorService.validateMessage per message kind,
+ * and of validateMessageDetailed, which reports on every header in the same
+ * parse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateMessageBenchmark {
+
+    @Param({"request-invite", "request-register", "response-200-invite", "response-401-unauthorized",
+            "malformed-cseq", "malformed-garbage", "large-sdp"})
+    private String message;
+
+    private SipValidatorService service;
+    private String messageText;
+
+    @Setup
+    public void setUp() {
+        service = new SipValidatorService();
+        messageText = SipCorpus.message(message);
+    }
+
+    @Benchmark
+    public ValidationResult validateMessage() {
+        return service.validateMessage(messageText);
+    }
+
+    @Benchmark
+    public ValidationResult validateMessageDetailed() {
+        return service.validateMessageDetailed(messageText);
+    }
+}
@@ -0,0 +1,108 @@
+package com.sipgate.sipvalidator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of DialogSequenceValidator per call flow of seven messages (INVITE,
+ * 100, 180, 200, ACK, BYE, 200), each call with a new Call-ID. The number of
+ * tracked calls grows up to maxCalls and stays there by eviction, so a flat
+ * result across maxCalls shows that the cost per message does not depend on
+ * the amount of state, and a stream of millions of messages is checked in
+ * linear time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class DialogSequenceBenchmark {
+
+    private static final String CALL_ID_PLACEHOLDER = "000000000000";
+
+    @Param({"1000", "100000", "1000000"})
+    private int maxCalls;
+
+    private byte[][] flow;
+    private int[] callIdOffsets;
+    private DialogSequenceValidator validator;
+    private long calls;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        flow = new byte[][] {
+            message("INVITE sip:bob@biloxi.example.com SIP/2.0", "z9hG4bK74bf9", null, "1 INVITE"),
+            message("SIP/2.0 100 Trying", "z9hG4bK74bf9", null, "1 INVITE"),
+            message("SIP/2.0 180 Ringing", "z9hG4bK74bf9", "8321234356", "1 INVITE"),
+            message("SIP/2.0 200 OK", "z9hG4bK74bf9", "8321234356", "1 INVITE"),
+            message("ACK sip:bob@client.biloxi.example.com SIP/2.0", "z9hG4bK74b76", "8321234356", "1 ACK"),
+            message("BYE sip:bob@client.biloxi.example.com SIP/2.0", "z9hG4bK74b77", "8321234356", "2 BYE"),
+            message("SIP/2.0 200 OK", "z9hG4bK74b77", "8321234356", "2 BYE")
+        };
+        callIdOffsets = new int[flow.length];
+        for (int i = 0; i < flow.length; i++) {
+            callIdOffsets[i] = new String(flow[i], StandardCharsets.US_ASCII).indexOf(CALL_ID_PLACEHOLDER);
+        }
+        validator = new DialogSequenceValidator(maxCalls, Duration.ofHours(1));
+        calls = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkState() {
+        if (validator.getTrackedCalls() != Math.min(calls, maxCalls)) {
+            throw new IllegalStateException("Tracking " + validator.getTrackedCalls() + " calls after " + calls);
+        }
+    }
+
+    @Benchmark
+    public void callFlow(Blackhole blackhole) {
+        long call = calls++;
+        for (int i = 0; i < flow.length; i++) {
+            byte[] message = flow[i];
+            writeCallId(message, callIdOffsets[i], call);
+            List<?> violations = validator.check(message);
+            if (!violations.isEmpty()) {
+                throw new IllegalStateException("Unexpected violation " + violations);
+            }
+            blackhole.consume(violations);
+        }
+    }
+
+    private static void writeCallId(byte[] message, int offset, long call) {
+        for (int i = CALL_ID_PLACEHOLDER.length() - 1; i >= 0; i--) {
+            message[offset + i] = (byte) Character.forDigit((int) (call & 0xf), 16);
+            call >>>= 4;
+        }
+    }
+
+    private static byte[] message(String startLine, String branch, String toTag, String cseq) {
+        String message = startLine + "\r\n"
+            + "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=" + branch + ";rport\r\n"
+            + "Max-Forwards: 70\r\n"
+            + "To: Bob <sip:bob@biloxi.example.com>" + (toTag != null ? ";tag=" + toTag : "") + "\r\n"
+            + "From: Alice <sip:alice@atlanta.example.com>;tag=1928301774\r\n"
+            + "Call-ID: " + CALL_ID_PLACEHOLDER + "@pc33.atlanta.example.com\r\n"
+            + "CSeq: " + cseq + "\r\n"
+            + "Contact: <sip:alice@pc33.atlanta.example.com>\r\n"
+            + "Content-Length: 0\r\n\r\n";
+        return message.getBytes(StandardCharsets.US_ASCII);
+    }
+}
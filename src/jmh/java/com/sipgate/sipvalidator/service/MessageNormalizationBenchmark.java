@@ -0,0 +1,62 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.benchmark.SipCorpus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former regex based line ending normalization in
+ * SipValidatorService.validateMessage with SipMessageNormalizer. Both variants
+ * end with the byte array that is handed to the JAIN-SIP parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageNormalizationBenchmark {
+
+    @Param({"small-lf", "small-crlf", "large-lf", "large-crlf"})
+    private String input;
+
+    private String messageText;
+
+    @Setup
+    public void setUp() {
+        String message = SipCorpus.invite(input.startsWith("small") ? 1 : 200);
+        messageText = input.endsWith("crlf") ? message : message.replace("\r\n", "\n");
+    }
+
+    @Benchmark
+    public void regexReplace(Blackhole blackhole) {
+        String text = messageText.replaceAll("\\r?\\n", "\r\n");
+        if (!text.endsWith("\r\n")) {
+            text = text + "\r\n";
+        }
+        String firstLine = text.split("\\r\\n", 2)[0].trim();
+        blackhole.consume(firstLine.startsWith("SIP/2.0"));
+        blackhole.consume(text.getBytes());
+    }
+
+    @Benchmark
+    public void byteNormalizer(Blackhole blackhole) {
+        byte[] message = SipMessageNormalizer.normalize(messageText.getBytes(StandardCharsets.UTF_8));
+        blackhole.consume(SipMessageNormalizer.isResponse(message));
+        blackhole.consume(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import com.sipgate.sipvalidator.Application;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The validator application running in this JVM on a random port
+ */
+final class EmbeddedServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final int port;
+
+    private EmbeddedServer(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    /**
+     * Starts the application
+     * @param properties Configuration overriding application.yaml
+     */
+    static EmbeddedServer start(Map<String, Object> properties) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("server.port", "0");
+        settings.put("logging.level.root", "WARN");
+        settings.put("logging.level.com.sipgate.sipvalidator", "WARN");
+        settings.put("spring.main.banner-mode", "off");
+        settings.putAll(properties);
+        // Passed as command line arguments so they take precedence over application.yaml
+        String[] args = settings.entrySet().stream()
+            .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+            .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class).run(args);
+        return new EmbeddedServer(context);
+    }
+
+    URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Request bodies for the REST API, built from the message and header corpus
+ * shared with the JMH benchmarks
+ */
+final class LoadCorpus {
+
+    private static final List<String> MESSAGES = List.of(
+        "request-invite",
+        "request-register",
+        "request-options",
+        "request-bye",
+        "response-180-ringing",
+        "response-200-invite",
+        "response-401-unauthorized",
+        "malformed-cseq",
+        "malformed-max-forwards",
+        "malformed-request-line",
+        "malformed-status-line",
+        "malformed-garbage");
+
+    /**
+     * Share of each corpus message in the mixed load, in percent of all
+     * requests. Registrations, keep-alive OPTIONS and the responses of call
+     * setup dominate, a few messages are broken. The rest of the load are
+     * single headers.
+     */
+    private static final Map<String, Integer> MESSAGE_MIX = Map.ofEntries(
+        Map.entry("request-register", 16),
+        Map.entry("request-options", 12),
+        Map.entry("request-invite", 8),
+        Map.entry("request-bye", 6),
+        Map.entry("response-180-ringing", 8),
+        Map.entry("response-200-invite", 10),
+        Map.entry("response-401-unauthorized", 10),
+        Map.entry("malformed-cseq", 1),
+        Map.entry("malformed-max-forwards", 1),
+        Map.entry("malformed-request-line", 1),
+        Map.entry("malformed-status-line", 1),
+        Map.entry("malformed-garbage", 1));
+
+    /** Share of detailed message validations among the INVITEs, in percent */
+    private static final int DETAILED_INVITES = 25;
+
+    /** Number of requests the mix is made of, so the shares are exact */
+    private static final int MIX_SIZE = 400;
+
+    static final String MESSAGE_ENDPOINT = "/api/sip/validate/message";
+    static final String HEADER_ENDPOINT = "/api/sip/validate/header";
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private LoadCorpus() {
+    }
+
+    /**
+     * @return one JSON body per corpus message for /api/sip/validate/message
+     */
+    static List<String> messageBodies() {
+        List<String> bodies = new ArrayList<>();
+        for (String name : MESSAGES) {
+            bodies.add(MAPPER.writeValueAsString(Map.of("messageText", load("/corpus/" + name + ".sip"))));
+        }
+        return bodies;
+    }
+
+    /**
+     * @return one JSON body per corpus header for /api/sip/validate/header
+     */
+    static List<String> headerBodies() {
+        List<String> bodies = new ArrayList<>();
+        for (String header : load("/headers.txt").lines().filter(line -> !line.isBlank()).toList()) {
+            bodies.add(MAPPER.writeValueAsString(Map.of("headerText", header)));
+        }
+        return bodies;
+    }
+
+    /**
+     * @return requests to both validation endpoints in the shares of MESSAGE_MIX,
+     *         in an order that is random but the same on every run
+     */
+    static List<LoadDriver.Call> mixedCalls(EmbeddedServer server) {
+        URI messageUri = server.uri(MESSAGE_ENDPOINT);
+        URI headerUri = server.uri(HEADER_ENDPOINT);
+        List<LoadDriver.Call> calls = new ArrayList<>(MIX_SIZE);
+        for (String name : MESSAGES) {
+            String text = load("/corpus/" + name + ".sip");
+            int count = MESSAGE_MIX.get(name) * MIX_SIZE / 100;
+            int detailed = name.equals("request-invite") ? count * DETAILED_INVITES / 100 : 0;
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> body = i < detailed
+                    ? Map.of("messageText", text, "detailed", true)
+                    : Map.of("messageText", text);
+                calls.add(LoadDriver.Call.post(MESSAGE_ENDPOINT, messageUri, MAPPER.writeValueAsString(body)));
+            }
+        }
+        List<String> headers = headerBodies();
+        for (int i = 0; calls.size() < MIX_SIZE; i++) {
+            calls.add(LoadDriver.Call.post(HEADER_ENDPOINT, headerUri, headers.get(i % headers.size())));
+        }
+        Collections.shuffle(calls, new Random(MIX_SIZE));
+        return calls;
+    }
+
+    /**
+     * @return the shares of the mix for the report, e.g. "75 % messages (5 % malformed), 25 % headers"
+     */
+    static String describeMix() {
+        int messages = 0;
+        int malformed = 0;
+        for (Map.Entry<String, Integer> entry : MESSAGE_MIX.entrySet()) {
+            messages += entry.getValue();
+            if (entry.getKey().startsWith("malformed-")) {
+                malformed += entry.getValue();
+            }
+        }
+        int detailed = MESSAGE_MIX.get("request-invite") * DETAILED_INVITES / 100;
+        return messages + " % messages (" + malformed + " % malformed, " + detailed + " % detailed), "
+            + (100 - messages) + " % headers";
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = LoadCorpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing corpus resource " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends JSON POST requests from a fixed number of concurrent clients, each
+ * sending its next request as soon as the previous one returned, and records
+ * the latencies. Clients run on virtual threads so thousands of them are cheap.
+ *
+ * A closed loop hides how long requests would have waited: a client held up
+ * by a slow response sends nothing meanwhile, so the requests it would have
+ * sent are never measured (coordinated omission). Given an interval, each
+ * client paces its requests to one per interval instead, and their latency is
+ * also measured from the time the request was due rather than sent, like
+ * wrk2 does. A client that falls behind sends the overdue requests right
+ * away, and the time they waited counts.
+ */
+final class LoadDriver {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.SECONDS.toMicros(60);
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    /**
+     * A request of the load
+     * @param name Groups requests in the result, e.g. by endpoint
+     * @param request The request to send
+     */
+    record Call(String name, HttpRequest request) {
+
+        static Call post(String name, URI uri, String body) {
+            return new Call(name, HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        }
+    }
+
+    /**
+     * Outcome of one load run
+     * @param latencies Request latencies in microseconds
+     * @param corrected Latencies from the time each request was due, the same as latencies without interval
+     * @param latenciesByName Latencies per call name
+     * @param correctedByName Corrected latencies per call name
+     * @param requests Number of completed requests
+     * @param failures Requests that failed or did not return 200
+     * @param seconds Length of the run
+     */
+    record Result(Histogram latencies, Histogram corrected, Map<String, Histogram> latenciesByName,
+                  Map<String, Histogram> correctedByName, long requests, long failures, double seconds) {
+
+        double throughput() {
+            return requests / seconds;
+        }
+
+        double throughput(String name) {
+            return latenciesByName.get(name).getTotalCount() / seconds;
+        }
+    }
+
+    /**
+     * Runs the clients for the given time
+     * @param uri Endpoint to post to
+     * @param bodies Request bodies, used round robin
+     * @param concurrency Number of concurrent clients
+     * @param duration Length of the run
+     */
+    Result closedLoop(URI uri, List<String> bodies, int concurrency, Duration duration) throws InterruptedException {
+        List<Call> calls = new ArrayList<>(bodies.size());
+        for (String body : bodies) {
+            calls.add(Call.post(uri.getPath(), uri, body));
+        }
+        return closedLoop(calls, concurrency, duration, 0);
+    }
+
+    /**
+     * Runs the clients for the given time
+     * @param calls Requests to send, used round robin with each client starting at another offset
+     * @param concurrency Number of concurrent clients
+     * @param duration Length of the run
+     * @param interval Microseconds between the requests of each client, 0 to send each request
+     *                 as soon as the previous one returned
+     */
+    Result closedLoop(List<Call> calls, int concurrency, Duration duration, long interval)
+            throws InterruptedException {
+        Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        Histogram corrected = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        Map<String, Histogram> latenciesByName = new TreeMap<>();
+        Map<String, Histogram> correctedByName = new TreeMap<>();
+        for (Call call : calls) {
+            latenciesByName.computeIfAbsent(call.name(), name -> new ConcurrentHistogram(HIGHEST_LATENCY, 3));
+            correctedByName.computeIfAbsent(call.name(), name -> new ConcurrentHistogram(HIGHEST_LATENCY, 3));
+        }
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                // Spread the clients over the calls, so each of them sends the whole mix
+                int offset = (int) ((long) c * calls.size() / concurrency);
+                // Clients start spread over one interval, so paced requests do not come in bursts
+                long firstDue = start + TimeUnit.MICROSECONDS.toNanos(interval) * c / concurrency;
+                clients.submit(() -> {
+                    int next = offset;
+                    long due = firstDue;
+                    while (System.nanoTime() < end) {
+                        Call call = calls.get(next++ % calls.size());
+                        if (interval > 0) {
+                            if (due >= end) {
+                                break;
+                            }
+                            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                                LockSupport.parkNanos(wait);
+                            }
+                        }
+                        long sent = System.nanoTime();
+                        long measuredFrom = interval > 0 ? Math.min(due, sent) : sent;
+                        due += TimeUnit.MICROSECONDS.toNanos(interval);
+                        try {
+                            HttpResponse<Void> response = client.send(call.request(), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failed.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        }
+                        long received = System.nanoTime();
+                        long latency = Math.min(HIGHEST_LATENCY, TimeUnit.NANOSECONDS.toMicros(received - sent));
+                        long fromDue = Math.min(HIGHEST_LATENCY, TimeUnit.NANOSECONDS.toMicros(received - measuredFrom));
+                        latencies.recordValue(latency);
+                        corrected.recordValue(fromDue);
+                        latenciesByName.get(call.name()).recordValue(latency);
+                        correctedByName.get(call.name()).recordValue(fromDue);
+                        completed.incrementAndGet();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(latencies, corrected, latenciesByName, correctedByName, completed.get(), failed.get(), seconds);
+    }
+}
@@ -0,0 +1,162 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the saturation point of the REST API and reports latency against a
+ * p99 objective. An embedded server without result cache gets the mixed
+ * corpus of LoadCorpus on /validate/message and /validate/header from a
+ * doubling number of clients, 1, 2, 4 and so on.
+ *
+ * Each client is paced to half the request rate a lone client reaches after
+ * the warm-up, so every step offers twice the load of the one before, and
+ * latencies are measured from the time a request was due, which corrects
+ * them for coordinated omission, see LoadDriver. The server is saturated once
+ * it serves less than 95 % of the offered rate or the throughput grows by less
+ * than 5 % a step. The ramp stops after two such steps, when requests fail or
+ * at the maximum concurrency.
+ *
+ * The report lists offered rate, throughput and p50, p99, p99.9 and max for
+ * every step, overall and per endpoint, and the p99 from the actual send time
+ * for comparison.
+ * It has no timestamps and a fixed layout, so reports of two versions can be
+ * compared with diff.
+ *
+ * Arguments (all optional): max concurrency, seconds per step, warm-up
+ * seconds, p99 objective in ms, report file, label.
+ * Defaults: 512 10 10 50 target/loadtest/saturation-report.txt current
+ */
+public class SaturationReport {
+
+    private static final double SATURATION_GAIN = 1.05;
+    private static final double SERVED_RATIO = 0.95;
+    private static final double MAX_FAILURE_RATIO = 0.01;
+
+    public static void main(String[] args) throws Exception {
+        int maxConcurrency = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        Duration step = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+        Duration warmup = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        double objective = args.length > 3 ? Double.parseDouble(args[3]) : 50;
+        Path reportFile = Path.of(args.length > 4 ? args[4] : "target/loadtest/saturation-report.txt");
+        String label = args.length > 5 ? args[5] : "current";
+
+        LoadDriver driver = new LoadDriver();
+        List<Step> steps = new ArrayList<>();
+        long interval;
+        int calls;
+        try (EmbeddedServer server = EmbeddedServer.start(Map.of("sipvalidator.cache.enabled", "false"))) {
+            List<LoadDriver.Call> mix = LoadCorpus.mixedCalls(server);
+            calls = mix.size();
+            driver.closedLoop(mix, Runtime.getRuntime().availableProcessors() * 2, warmup, 0);
+            LoadDriver.Result calibration = driver.closedLoop(mix, 1, step, 0);
+            interval = Math.max(1, Math.round(2 * calibration.latencies().getMean()));
+
+            double best = 0;
+            int saturated = 0;
+            for (int concurrency = 1; concurrency <= maxConcurrency && saturated < 2; concurrency *= 2) {
+                LoadDriver.Result result = driver.closedLoop(mix, concurrency, step, interval);
+                Step current = new Step(concurrency, concurrency * 1e6 / interval, result);
+                steps.add(current);
+                System.out.printf(Locale.ROOT, "%5d clients %10.0f offered %10.0f served requests/s%n",
+                    concurrency, current.offered(), result.throughput());
+                if (result.failures() > result.requests() * MAX_FAILURE_RATIO) {
+                    break;
+                }
+                boolean behind = result.throughput() < current.offered() * SERVED_RATIO;
+                saturated = behind || result.throughput() < best * SATURATION_GAIN ? saturated + 1 : 0;
+                best = Math.max(best, result.throughput());
+            }
+        }
+
+        String report = render(label, steps, step, warmup, interval, objective, calls);
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        Files.writeString(reportFile, report);
+        System.out.print(report);
+        System.out.println("Written to " + reportFile);
+    }
+
+    private static String render(String label, List<Step> steps, Duration step, Duration warmup,
+                                 long interval, double objective, int calls) {
+        StringBuilder out = new StringBuilder();
+        out.append("# Saturation report: ").append(label).append('\n');
+        out.append('\n');
+        out.append(String.format(Locale.ROOT, "java        %s %s%n",
+            System.getProperty("java.vm.name"), System.getProperty("java.version")));
+        out.append(String.format(Locale.ROOT, "cpus        %d%n", Runtime.getRuntime().availableProcessors()));
+        out.append(String.format(Locale.ROOT, "load        %d requests, %s, cache disabled%n", calls, LoadCorpus.describeMix()));
+        out.append(String.format(Locale.ROOT, "steps       %d s each after %d s warm-up%n", step.toSeconds(), warmup.toSeconds()));
+        out.append(String.format(Locale.ROOT, "pacing      one request per %d us and client%n", interval));
+        out.append(String.format(Locale.ROOT, "objective   p99 <= %.1f ms%n", objective));
+        out.append('\n');
+        out.append("Latencies in ms from the time a request was due, p99 sent from the time it was sent\n");
+        out.append('\n');
+        out.append(String.format(Locale.ROOT, "%7s  %-9s %10s %10s %8s %9s %9s %9s %9s %9s%n",
+            "clients", "endpoint", "offered/s", "served/s", "failed", "p50", "p99", "p99.9", "max", "p99 sent"));
+        for (Step s : steps) {
+            LoadDriver.Result result = s.result();
+            out.append(row(s.concurrency(), "all", String.format(Locale.ROOT, "%.0f", s.offered()),
+                result.throughput(), Long.toString(result.failures()), result.corrected(), result.latencies()));
+            for (Map.Entry<String, Histogram> endpoint : result.correctedByName().entrySet()) {
+                String name = endpoint.getKey();
+                out.append(row(s.concurrency(), shortName(name), "", result.throughput(name), "", endpoint.getValue(),
+                    result.latenciesByName().get(name)));
+            }
+        }
+        out.append('\n');
+
+        Step saturation = null;
+        Step withinObjective = null;
+        for (Step s : steps) {
+            if (saturation == null || s.result().throughput() > saturation.result().throughput()) {
+                saturation = s;
+            }
+            if (millis(s.result().corrected(), 99) <= objective
+                    && (withinObjective == null || s.result().throughput() > withinObjective.result().throughput())) {
+                withinObjective = s;
+            }
+        }
+        if (saturation != null) {
+            out.append(String.format(Locale.ROOT, "saturation  %.0f requests/s with %d clients, p99 %.2f ms%n",
+                saturation.result().throughput(), saturation.concurrency(), millis(saturation.result().corrected(), 99)));
+        }
+        if (withinObjective != null) {
+            out.append(String.format(Locale.ROOT, "objective   met up to %.0f requests/s with %d clients, p99 %.2f ms%n",
+                withinObjective.result().throughput(), withinObjective.concurrency(),
+                millis(withinObjective.result().corrected(), 99)));
+        } else {
+            out.append("objective   not met at any step\n");
+        }
+        return out.toString();
+    }
+
+    private static String row(int concurrency, String endpoint, String offered, double throughput, String failures,
+                              Histogram corrected, Histogram raw) {
+        return String.format(Locale.ROOT, "%7d  %-9s %10s %10.0f %8s %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+            concurrency, endpoint, offered, throughput, failures,
+            millis(corrected, 50), millis(corrected, 99), millis(corrected, 99.9),
+            corrected.getMaxValue() / 1000.0, millis(raw, 99));
+    }
+
+    private static String shortName(String endpoint) {
+        return endpoint.substring(endpoint.lastIndexOf('/') + 1);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * A step of the ramp
+     * @param offered Requests per second the paced clients would send if served right away
+     */
+    private record Step(int concurrency, double offered, LoadDriver.Result result) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cold start of the packaged application in separate JVMs: the
+ * plain jar, the extracted jar, AOT processing, the CDS archive and both,
+ * with and without warm-up, and the native executable if one was built.
+ *
+ * For every start the time until /actuator/health answers, the latency of
+ * the first validation and the resident set size after it are measured, the
+ * table shows the medians. Build first with mvn -Paot,cds package, and with
+ * mvn -Pnative native:compile for the native row.
+ *
+ * Arguments (all optional): starts per mode, target directory, modes.
+ * Defaults: 5 target, all modes whose files exist
+ */
+public class StartupComparison {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+    private static final String WARM_UP = "--sipvalidator.warm-up.enabled=true";
+
+    public static void main(String[] args) throws Exception {
+        int starts = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path target = Path.of(args.length > 1 ? args[1] : "target");
+        List<String> selected = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : null;
+
+        Map<String, List<String>> modes = modes(target);
+        String message = LoadCorpus.messageBodies().get(0);
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+        System.out.printf("%-14s %10s %14s %10s%n", "mode", "ready ms", "first req ms", "RSS MiB");
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            if (selected != null && !selected.contains(mode.getKey())) {
+                continue;
+            }
+            long[] ready = new long[starts];
+            long[] firstRequest = new long[starts];
+            long[] rss = new long[starts];
+            boolean failed = false;
+            for (int i = 0; i < starts && !failed; i++) {
+                Measurement measurement = measure(client, mode.getValue(), message);
+                failed = measurement == null;
+                if (!failed) {
+                    ready[i] = measurement.readyMillis();
+                    firstRequest[i] = measurement.firstRequestMillis();
+                    rss[i] = measurement.rssKiB();
+                }
+            }
+            if (failed) {
+                System.out.printf("%-14s %10s%n", mode.getKey(), "failed");
+            } else {
+                System.out.printf("%-14s %10d %14d %10.0f%n",
+                    mode.getKey(), median(ready), median(firstRequest), median(rss) / 1024.0);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> modes(Path target) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        Path jar = findJar(target);
+        if (jar != null) {
+            modes.put("jar", List.of(java, "-jar", jar.toString()));
+        }
+        Path extracted = findJar(target.resolve("application"));
+        if (extracted != null) {
+            String archive = "-XX:SharedArchiveFile=" + target.resolve("application/application.jsa");
+            String aot = "-Dspring.aot.enabled=true";
+            modes.put("extracted", List.of(java, "-jar", extracted.toString()));
+            modes.put("aot", List.of(java, aot, "-jar", extracted.toString()));
+            modes.put("cds", List.of(java, archive, "-jar", extracted.toString()));
+            modes.put("aot+cds", List.of(java, aot, archive, "-jar", extracted.toString()));
+            modes.put("aot+cds+warm", List.of(java, aot, archive, "-jar", extracted.toString(), WARM_UP));
+        }
+        Path executable = target.resolve("sip-validator");
+        if (Files.isExecutable(executable)) {
+            modes.put("native", List.of(executable.toString()));
+            modes.put("native+warm", List.of(executable.toString(), WARM_UP));
+        }
+        return modes;
+    }
+
+    private static Path findJar(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try (var files = Files.list(directory)) {
+            return files
+                .filter(file -> file.getFileName().toString().matches("sip-validator-.*\\.jar"))
+                .filter(file -> !file.getFileName().toString().endsWith("-plain.jar"))
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    /**
+     * Starts the application once and stops it after the first validation
+     * @return the measurement, null if the application did not come up
+     */
+    private static Measurement measure(HttpClient client, List<String> command, String message) throws Exception {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        arguments.add("--logging.level.root=WARN");
+        arguments.add("--logging.level.com.sipgate.sipvalidator=WARN");
+        arguments.add("--spring.main.banner-mode=off");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+            while (!isUp(client, health)) {
+                if (!process.isAlive() || System.nanoTime() - start > TIMEOUT.toNanos()) {
+                    return null;
+                }
+                Thread.sleep(5);
+            }
+            long ready = System.nanoTime();
+
+            HttpRequest validate = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/sip/validate/message"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(message))
+                .build();
+            client.send(validate, HttpResponse.BodyHandlers.discarding());
+            long firstRequest = System.nanoTime();
+
+            return new Measurement(
+                TimeUnit.NANOSECONDS.toMillis(ready - start),
+                TimeUnit.NANOSECONDS.toMillis(firstRequest - ready),
+                rssKiB(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static boolean isUp(HttpClient client, HttpRequest health) throws InterruptedException {
+        try {
+            return client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return resident set size of the process from /proc, 0 where that is not available
+     */
+    private static long rssKiB(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return 0;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private record Measurement(long readyMillis, long firstRequestMillis, long rssKiB) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.sipgate.sipvalidator.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares request latency of the classic Tomcat thread pool with virtual
+ * request threads (spring.threads.virtual.enabled). Each mode gets a fresh
+ * embedded server, a warm-up and then a measured run with more concurrent
+ * clients than the platform pool has threads.
+ *
+ * Arguments (all optional): concurrency, measured seconds, warm-up seconds,
+ * max platform threads. Defaults: 400 30 10 200
+ *
+ * Pass -Dloadtest.jvm.args="-Djdk.tracePinnedThreads=full" to print the stack
+ * of every virtual thread that blocks while pinned to its carrier. A run with
+ * 400 clients on Java 21 printed no pinned stacks, and neither did the cached,
+ * detailed, batch and header endpoints driven against the packaged jar.
+ */
+public class ThreadModelComparison {
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 30);
+        Duration warmup = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        String maxThreads = args.length > 3 ? args[3] : "200";
+
+        List<String> bodies = LoadCorpus.messageBodies();
+        LoadDriver driver = new LoadDriver();
+
+        System.out.printf("%-10s %12s %10s %10s %10s %10s %10s%n",
+            "mode", "requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "failures");
+        for (boolean virtual : new boolean[] {false, true}) {
+            try (EmbeddedServer server = EmbeddedServer.start(Map.of(
+                    "spring.threads.virtual.enabled", String.valueOf(virtual),
+                    "server.tomcat.threads.max", maxThreads,
+                    "sipvalidator.cache.enabled", "false"))) {
+                driver.closedLoop(server.uri("/api/sip/validate/message"), bodies, concurrency, warmup);
+                LoadDriver.Result result = driver.closedLoop(
+                    server.uri("/api/sip/validate/message"), bodies, concurrency, duration);
+                System.out.printf("%-10s %12.0f %10.2f %10.2f %10.2f %10.2f %10d%n",
+                    virtual ? "virtual" : "platform",
+                    result.throughput(),
+                    result.latencies().getValueAtPercentile(50) / 1000.0,
+                    result.latencies().getValueAtPercentile(99) / 1000.0,
+                    result.latencies().getValueAtPercentile(99.9) / 1000.0,
+                    result.latencies().getMaxValue() / 1000.0,
+                    result.failures());
+            }
+        }
+    }
+}
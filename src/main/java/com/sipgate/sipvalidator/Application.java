@@ -2,10 +2,20 @@ package com.sipgate.sipvalidator;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+import com.sipgate.sipvalidator.cli.CorpusValidationCommand;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class Application {
     public static void main(String[] args) {
+        // The corpus validation command runs without the Spring context
+        if (args.length > 0 && args[0].equals(CorpusValidationCommand.NAME)) {
+            System.exit(CorpusValidationCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SpringApplication.run(Application.class, args);
     }
 }
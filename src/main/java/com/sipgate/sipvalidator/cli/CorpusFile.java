@@ -0,0 +1,67 @@
+package com.sipgate.sipvalidator.cli;
+
+import java.io.IOException;
+
+/**
+ * A file of a corpus, either already loaded or read on demand
+ */
+interface CorpusFile {
+
+    /**
+     * @return the path of the file within the corpus
+     */
+    String name();
+
+    /**
+     * @return the complete content of the file
+     */
+    byte[] content() throws IOException;
+
+    /**
+     * @return number of bytes held in memory before {@link #content()} is called
+     */
+    long loadedSize();
+
+    static CorpusFile loaded(String name, byte[] content) {
+        return new CorpusFile() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public byte[] content() {
+                return content;
+            }
+
+            @Override
+            public long loadedSize() {
+                return content.length;
+            }
+        };
+    }
+
+    static CorpusFile lazy(String name, Loader loader) {
+        return new CorpusFile() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public byte[] content() throws IOException {
+                return loader.load();
+            }
+
+            @Override
+            public long loadedSize() {
+                return 0;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        byte[] load() throws IOException;
+    }
+}
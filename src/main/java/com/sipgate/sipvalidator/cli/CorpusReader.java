@@ -0,0 +1,285 @@
+package com.sipgate.sipvalidator.cli;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The files of a corpus, from a directory tree, a zip archive or a tar
+ * archive that may be gzip compressed. Files of directories and zip archives
+ * are only read when their content is requested, possibly by several threads
+ * at once. Tar archives can only be read front to back, so their files are
+ * loaded while iterating.
+ *
+ * Only the first maxFileSize bytes of a file are read, so a single huge file
+ * does not have to fit into memory. Passing the message size limit plus one
+ * lets the validator still see that the file is too large.
+ */
+abstract class CorpusReader implements AutoCloseable {
+
+    final int maxFileSize;
+
+    CorpusReader(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @param corpus A directory or a file ending in .zip, .jar, .tar, .tar.gz or .tgz
+     * @param maxFileSize Number of bytes of a file read at most, the rest is skipped
+     */
+    static CorpusReader open(Path corpus, int maxFileSize) throws IOException {
+        if (Files.isDirectory(corpus)) {
+            return new DirectoryReader(corpus, maxFileSize);
+        }
+        String name = corpus.getFileName().toString().toLowerCase();
+        if (name.endsWith(".zip") || name.endsWith(".jar")) {
+            return new ZipReader(corpus, maxFileSize);
+        }
+        if (name.endsWith(".tar")) {
+            return new TarReader(new BufferedInputStream(Files.newInputStream(corpus)), maxFileSize);
+        }
+        if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarReader(new GZIPInputStream(Files.newInputStream(corpus), 65536), maxFileSize);
+        }
+        throw new IOException("Not a directory or a zip or tar archive: " + corpus);
+    }
+
+    /**
+     * @return the regular files of the corpus, I/O errors while iterating are thrown as UncheckedIOException
+     */
+    abstract Iterator<CorpusFile> files() throws IOException;
+
+    @Override
+    public abstract void close() throws IOException;
+
+    private static final class DirectoryReader extends CorpusReader {
+        private final Path root;
+        private Stream<Path> walk;
+
+        DirectoryReader(Path root, int maxFileSize) {
+            super(maxFileSize);
+            this.root = root;
+        }
+
+        @Override
+        Iterator<CorpusFile> files() throws IOException {
+            walk = Files.walk(root);
+            return walk.filter(Files::isRegularFile)
+                .map(path -> CorpusFile.lazy(root.relativize(path).toString(), () -> read(path)))
+                .iterator();
+        }
+
+        private byte[] read(Path path) throws IOException {
+            try (InputStream in = Files.newInputStream(path)) {
+                return in.readNBytes(maxFileSize);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (walk != null) {
+                walk.close();
+            }
+        }
+    }
+
+    private static final class ZipReader extends CorpusReader {
+        private final ZipFile zip;
+
+        ZipReader(Path archive, int maxFileSize) throws IOException {
+            super(maxFileSize);
+            this.zip = new ZipFile(archive.toFile());
+        }
+
+        @Override
+        Iterator<CorpusFile> files() {
+            // ZipFile is safe for concurrent reads of different entries
+            return zip.stream()
+                .filter(entry -> !entry.isDirectory())
+                .map(entry -> CorpusFile.lazy(entry.getName(), () -> read(entry)))
+                .iterator();
+        }
+
+        private byte[] read(ZipEntry entry) throws IOException {
+            try (InputStream in = zip.getInputStream(entry)) {
+                return in.readNBytes(maxFileSize);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * Reads ustar archives with GNU long names, other entry types are skipped
+     */
+    private static final class TarReader extends CorpusReader implements Iterator<CorpusFile> {
+        private static final int BLOCK = 512;
+        private static final byte TYPE_FILE = '0';
+        private static final byte TYPE_FILE_OLD = 0;
+        private static final byte TYPE_GNU_LONG_NAME = 'L';
+
+        private final InputStream in;
+        private final byte[] header = new byte[BLOCK];
+        private CorpusFile next;
+        private boolean end;
+
+        TarReader(InputStream in, int maxFileSize) {
+            super(maxFileSize);
+            this.in = in;
+        }
+
+        @Override
+        Iterator<CorpusFile> files() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !end) {
+                try {
+                    next = readFile();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                end = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public CorpusFile next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CorpusFile file = next;
+            next = null;
+            return file;
+        }
+
+        /**
+         * @return the next regular file, null at the end of the archive
+         */
+        private CorpusFile readFile() throws IOException {
+            String longName = null;
+            while (readHeader() && !isZeroBlock()) {
+                long size = parseSize();
+                byte type = header[156];
+                if (type == TYPE_GNU_LONG_NAME) {
+                    byte[] content = readContent(size);
+                    longName = terminated(content, 0, content.length);
+                } else if (type == TYPE_FILE || type == TYPE_FILE_OLD) {
+                    String name = longName != null ? longName : name();
+                    return CorpusFile.loaded(name, readContent(size));
+                } else {
+                    skipContent(size);
+                    longName = null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return false if the archive ends before the next header, without the end blocks
+         */
+        private boolean readHeader() throws IOException {
+            int read = in.readNBytes(header, 0, BLOCK);
+            if (read > 0 && read < BLOCK) {
+                throw new IOException("Tar archive is truncated");
+            }
+            return read == BLOCK;
+        }
+
+        private boolean isZeroBlock() {
+            for (byte b : header) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String name() {
+            String name = terminated(header, 0, 100);
+            boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+            String prefix = ustar ? terminated(header, 345, 155) : "";
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+
+        private long parseSize() throws IOException {
+            long size = 0;
+            for (int i = 124; i < 136; i++) {
+                byte b = header[i];
+                if (b == 0 || b == ' ') {
+                    if (size > 0) {
+                        break;
+                    }
+                } else if (b >= '0' && b <= '7') {
+                    size = size * 8 + (b - '0');
+                } else {
+                    throw new IOException("Unsupported tar entry size in " + name());
+                }
+            }
+            if (size > Integer.MAX_VALUE - BLOCK) {
+                throw new IOException("Tar entry " + name() + " is too large");
+            }
+            return size;
+        }
+
+        /**
+         * Reads up to maxFileSize bytes of the content and skips the rest
+         */
+        private byte[] readContent(long size) throws IOException {
+            int length = (int) Math.min(size, maxFileSize);
+            byte[] content = in.readNBytes(length);
+            if (content.length != length) {
+                throw new IOException("Tar archive is truncated");
+            }
+            skipContent(size - length, padding(size));
+            return content;
+        }
+
+        private void skipContent(long size) throws IOException {
+            skipContent(size, padding(size));
+        }
+
+        private void skipContent(long size, long padding) throws IOException {
+            try {
+                in.skipNBytes(size + padding);
+            } catch (EOFException e) {
+                throw new IOException("Tar archive is truncated", e);
+            }
+        }
+
+        private static long padding(long size) {
+            return (BLOCK - size % BLOCK) % BLOCK;
+        }
+
+        private static String terminated(byte[] bytes, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
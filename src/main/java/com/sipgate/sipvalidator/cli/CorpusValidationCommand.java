@@ -0,0 +1,229 @@
+package com.sipgate.sipvalidator.cli;
+
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.MessageLimits;
+import com.sipgate.sipvalidator.service.ParallelRange;
+import com.sipgate.sipvalidator.service.SipValidatorService;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+import com.sipgate.sipvalidator.service.ValidationCache;
+import com.sipgate.sipvalidator.service.ValidationMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Validates a corpus of SIP message files from the command line, without
+ * starting the Spring context, the web server or the template engine:
+ *
+ * <pre>
+ * java -jar sip-validator.jar validate-corpus &lt;directory|archive&gt; [--results FILE] [--parallelism N]
+ * </pre>
+ *
+ * Every regular file in the directory tree or entry of the zip or tar(.gz)
+ * archive is validated as one message by the same SipValidatorService the
+ * web application uses, with default limits and without result cache. Only
+ * one byte more than the message size limit is read of each file, larger
+ * files are rejected for their size like in the web application. The
+ * files are validated on a work-stealing fork/join pool using all cores
+ * unless --parallelism says otherwise. Archives are read sequentially, so
+ * their entries are loaded in slices of limited size which the pool then
+ * validates in parallel.
+ *
+ * The result of every file is written as one JSON line in the format of the
+ * streaming endpoint, with the file name as id, in completion order. A
+ * summary with the throughput and the number of failures per error class,
+ * as counted by the validation metrics, is printed at the end. The exit code
+ * is 0 if all files are valid, 1 if some are not and 2 on usage or I/O errors.
+ */
+public final class CorpusValidationCommand {
+
+    /** First argument that selects this command instead of the web application */
+    public static final String NAME = "validate-corpus";
+
+    static final int EXIT_VALID = 0;
+    static final int EXIT_INVALID = 1;
+    static final int EXIT_ERROR = 2;
+
+    private static final String DEFAULT_RESULTS = "validation-results.ndjson";
+    /** Error class of files that could not be read */
+    private static final String UNREADABLE = "unreadable";
+    /** Maximum number of files and of loaded bytes handed to the pool at once */
+    private static final int SLICE_FILES = 4096;
+    private static final long SLICE_BYTES = 64L * 1024 * 1024;
+
+    private final SipValidatorService validatorService;
+    private final SimpleMeterRegistry registry;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final ForkJoinPool pool;
+    private final OutputStream results;
+
+    private final LongAdder valid = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder unreadable = new LongAdder();
+
+    CorpusValidationCommand(MessageLimits limits, int parallelism, OutputStream results) {
+        this.registry = new SimpleMeterRegistry();
+        this.validatorService = new SipValidatorService(
+            new ValidationMetrics(registry), ValidationCache.disabled(), limits);
+        this.pool = new ForkJoinPool(parallelism);
+        this.results = results;
+    }
+
+    /**
+     * Runs the command
+     * @param args The arguments following {@link #NAME}
+     * @return the exit code
+     */
+    public static int run(String[] args) {
+        return run(args, System.out, System.err);
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Path corpus = null;
+        Path resultsFile = Path.of(DEFAULT_RESULTS);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--results" -> resultsFile = Path.of(value(args, ++i));
+                    case "--parallelism" -> parallelism = Integer.parseInt(value(args, ++i));
+                    default -> {
+                        if (args[i].startsWith("--") || corpus != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        corpus = Path.of(args[i]);
+                    }
+                }
+            }
+            if (corpus == null) {
+                throw new IllegalArgumentException("No corpus given");
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Usage: " + NAME + " <directory|archive> [--results FILE] [--parallelism N]");
+            return EXIT_ERROR;
+        }
+
+        MessageLimits limits = MessageLimits.defaults();
+        // One byte more than a message may have is enough to reject larger files
+        int maxFileSize = (int) Math.min(Integer.MAX_VALUE, limits.getMaxMessageSize() + 1L);
+        try (CorpusReader reader = CorpusReader.open(corpus, maxFileSize);
+             OutputStream results = new BufferedOutputStream(Files.newOutputStream(resultsFile))) {
+            CorpusValidationCommand command = new CorpusValidationCommand(limits, parallelism, results);
+            try {
+                long start = System.nanoTime();
+                command.validate(reader);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                command.printSummary(out, seconds, resultsFile);
+                return command.invalid.sum() + command.unreadable.sum() == 0 ? EXIT_VALID : EXIT_INVALID;
+            } finally {
+                command.pool.shutdown();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Validating " + corpus + " failed: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Validates all files of the corpus, one slice at a time
+     */
+    void validate(CorpusReader reader) throws IOException {
+        Iterator<CorpusFile> files = reader.files();
+        List<CorpusFile> slice = new ArrayList<>(SLICE_FILES);
+        long sliceBytes = 0;
+        while (files.hasNext()) {
+            CorpusFile file = files.next();
+            slice.add(file);
+            sliceBytes += file.loadedSize();
+            if (slice.size() == SLICE_FILES || sliceBytes >= SLICE_BYTES) {
+                validate(slice);
+                slice = new ArrayList<>(SLICE_FILES);
+                sliceBytes = 0;
+            }
+        }
+        validate(slice);
+    }
+
+    private void validate(List<CorpusFile> slice) {
+        ParallelRange.forEach(pool, slice.size(), i -> validate(slice.get(i)));
+    }
+
+    private void validate(CorpusFile file) {
+        ValidationResponse response;
+        try {
+            ValidationResult result = validatorService.validateMessage(file.content());
+            (result.isValid() ? valid : invalid).increment();
+            response = ValidationResponse.of(result);
+        } catch (IOException | UncheckedIOException e) {
+            unreadable.increment();
+            response = new ValidationResponse();
+            response.setValid(false);
+            response.getErrors().add("Reading the file failed: " + e.getMessage());
+        }
+        response.setId(file.name());
+        write(response);
+    }
+
+    private void write(ValidationResponse response) {
+        byte[] line = objectMapper.writeValueAsBytes(response);
+        synchronized (results) {
+            try {
+                results.write(line);
+                results.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    void printSummary(PrintStream out, double seconds, Path resultsFile) {
+        long files = valid.sum() + invalid.sum() + unreadable.sum();
+        out.printf("Validated %d files in %.2f s, %.1f files/s on %d threads%n",
+            files, seconds, seconds > 0 ? files / seconds : 0.0, pool.getParallelism());
+        out.printf("  valid:      %d%n", valid.sum());
+        out.printf("  invalid:    %d%n", invalid.sum());
+        out.printf("  unreadable: %d%n", unreadable.sum());
+
+        Map<String, Long> errorClasses = new TreeMap<>();
+        for (Counter counter : registry.find("sipvalidator.errors").counters()) {
+            errorClasses.put(counter.getId().getTag("category"), (long) counter.count());
+        }
+        if (unreadable.sum() > 0) {
+            errorClasses.put(UNREADABLE, unreadable.sum());
+        }
+        if (!errorClasses.isEmpty()) {
+            out.println("Errors by class:");
+            errorClasses.forEach((errorClass, count) -> out.printf("  %-16s %d%n", errorClass, count));
+        }
+        out.println("Results per file written to " + resultsFile);
+    }
+}
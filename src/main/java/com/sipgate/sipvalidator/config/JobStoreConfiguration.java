@@ -0,0 +1,30 @@
+package com.sipgate.sipvalidator.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sipgate.sipvalidator.service.FileJobStore;
+import com.sipgate.sipvalidator.service.InMemoryJobStore;
+import com.sipgate.sipvalidator.service.JobStore;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+
+/**
+ * Provides the JobStore selected by "sipvalidator.jobs.store". The choice is
+ * made when the bean is created rather than through bean conditions, so it
+ * can still be changed at runtime after AOT processing.
+ */
+@Configuration(proxyBeanMethods = false)
+public class JobStoreConfiguration {
+
+    @Bean
+    public JobStore jobStore(SipValidatorProperties properties, ObjectMapper objectMapper) {
+        SipValidatorProperties.Jobs jobs = properties.getJobs();
+        return switch (jobs.getStore()) {
+            case MEMORY -> new InMemoryJobStore();
+            case FILE -> new FileJobStore(Path.of(jobs.getDirectory()), objectMapper);
+        };
+    }
+}
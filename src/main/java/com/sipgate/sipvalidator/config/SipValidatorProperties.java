@@ -0,0 +1,614 @@
+package com.sipgate.sipvalidator.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties of the validator, bound from the "sipvalidator" prefix
+ */
+@ConfigurationProperties(prefix = "sipvalidator")
+public class SipValidatorProperties {
+
+    private final Batch batch = new Batch();
+    private final Stream stream = new Stream();
+    private final Cache cache = new Cache();
+    private final Listener listener = new Listener();
+    private final Limits limits = new Limits();
+    private final WarmUp warmUp = new WarmUp();
+    private final Jobs jobs = new Jobs();
+    private final Sequence sequence = new Sequence();
+    private final Policy policy = new Policy();
+    private final Sdp sdp = new Sdp();
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Sequence getSequence() {
+        return sequence;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public Sdp getSdp() {
+        return sdp;
+    }
+
+    /**
+     * Settings for the batch validation endpoint
+     */
+    public static class Batch {
+        /** Maximum number of worker threads used to validate a batch */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        /** Maximum number of messages accepted in a single batch request */
+        private int maxSize = 1000;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Settings for the streaming validation endpoint
+     */
+    public static class Stream {
+        /** Largest single message (or NDJSON line) that is buffered, larger ones are skipped */
+        private int maxMessageSize = 1024 * 1024;
+
+        public int getMaxMessageSize() {
+            return maxMessageSize;
+        }
+
+        public void setMaxMessageSize(int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+        }
+    }
+
+    /**
+     * Settings for the cache of validation results
+     */
+    public static class Cache {
+        private boolean enabled = false;
+        /** Approximate upper bound of the memory used by cached inputs and results, in bytes */
+        private long maximumWeight = 64L * 1024 * 1024;
+        /** How long a result stays cached after it was computed */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * Settings for the listener that validates SIP traffic received on UDP and TCP ports
+     */
+    public static class Listener {
+        private boolean enabled = false;
+        private String bindAddress = "0.0.0.0";
+        /** UDP port to receive datagrams on, 0 to disable UDP */
+        private int udpPort = 5060;
+        /** TCP port to accept connections on, 0 to disable TCP */
+        private int tcpPort = 5060;
+        /** Number of threads validating received messages */
+        private int workers = 2;
+        /** Messages waiting for a worker, further messages are dropped */
+        private int queueCapacity = 10000;
+        /** Largest message that is buffered, larger ones are dropped */
+        private int maxMessageSize = 65535;
+        /** Maximum number of open TCP connections, further connections are closed right away */
+        private int maxConnections = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getBindAddress() {
+            return bindAddress;
+        }
+
+        public void setBindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+        }
+
+        public int getUdpPort() {
+            return udpPort;
+        }
+
+        public void setUdpPort(int udpPort) {
+            this.udpPort = udpPort;
+        }
+
+        public int getTcpPort() {
+            return tcpPort;
+        }
+
+        public void setTcpPort(int tcpPort) {
+            this.tcpPort = tcpPort;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxMessageSize() {
+            return maxMessageSize;
+        }
+
+        public void setMaxMessageSize(int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    /**
+     * Size limits of validated input, anything larger is rejected before it is parsed
+     */
+    public static class Limits {
+        /** Largest request body of the message, header and batch endpoints, in bytes */
+        private int maxRequestSize = 4 * 1024 * 1024;
+        /** Largest single SIP message, in bytes */
+        private int maxMessageSize = 256 * 1024;
+        /** Maximum number of header lines of a message, folded lines count once */
+        private int maxHeaderCount = 256;
+        /** Longest line of a message and longest single header, in bytes */
+        private int maxLineLength = 8192;
+        /** Largest message body (e.g. SDP), in bytes */
+        private int maxBodySize = 128 * 1024;
+
+        public int getMaxRequestSize() {
+            return maxRequestSize;
+        }
+
+        public void setMaxRequestSize(int maxRequestSize) {
+            this.maxRequestSize = maxRequestSize;
+        }
+
+        public int getMaxMessageSize() {
+            return maxMessageSize;
+        }
+
+        public void setMaxMessageSize(int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        public int getMaxHeaderCount() {
+            return maxHeaderCount;
+        }
+
+        public void setMaxHeaderCount(int maxHeaderCount) {
+            this.maxHeaderCount = maxHeaderCount;
+        }
+
+        public int getMaxLineLength() {
+            return maxLineLength;
+        }
+
+        public void setMaxLineLength(int maxLineLength) {
+            this.maxLineLength = maxLineLength;
+        }
+
+        public int getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    /**
+     * Settings for validating sample messages at startup, before the application reports ready
+     */
+    public static class WarmUp {
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Settings for asynchronous validation jobs
+     */
+    public static class Jobs {
+
+        /**
+         * Where jobs and their results are kept
+         */
+        public enum Store {
+            MEMORY, FILE
+        }
+
+        /** Number of jobs validated at the same time */
+        private int workers = 2;
+        /** Number of submitted jobs waiting for a worker, further submissions are refused */
+        private int queueCapacity = 16;
+        /** Total length of the messages of queued and running jobs, in chars, further submissions are refused */
+        private long maxQueuedSize = 128L * 1024 * 1024;
+        /** Maximum number of messages of one job */
+        private int maxSize = 100_000;
+        /** Largest request body of a job submission, in bytes */
+        private int maxRequestSize = 64 * 1024 * 1024;
+        /** Number of messages validated and stored together, progress is reported in these steps */
+        private int chunkSize = 256;
+        /** How long a finished job and its results are kept */
+        private Duration ttl = Duration.ofHours(1);
+        /**
+         * Maximum number of results kept of all jobs, the oldest finished jobs are removed
+         * first and submissions are refused while the results of unfinished jobs would not fit
+         */
+        private int maxRetainedResults = 200_000;
+        /** The same for the estimated size of the kept results, in bytes */
+        private long maxRetainedSize = 256L * 1024 * 1024;
+        private Store store = Store.MEMORY;
+        /** Directory of the file store */
+        private String directory = System.getProperty("java.io.tmpdir") + "/sipvalidator-jobs";
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getMaxQueuedSize() {
+            return maxQueuedSize;
+        }
+
+        public void setMaxQueuedSize(long maxQueuedSize) {
+            this.maxQueuedSize = maxQueuedSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxRequestSize() {
+            return maxRequestSize;
+        }
+
+        public void setMaxRequestSize(int maxRequestSize) {
+            this.maxRequestSize = maxRequestSize;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxRetainedResults() {
+            return maxRetainedResults;
+        }
+
+        public void setMaxRetainedResults(int maxRetainedResults) {
+            this.maxRetainedResults = maxRetainedResults;
+        }
+
+        public long getMaxRetainedSize() {
+            return maxRetainedSize;
+        }
+
+        public void setMaxRetainedSize(long maxRetainedSize) {
+            this.maxRetainedSize = maxRetainedSize;
+        }
+
+        public Store getStore() {
+            return store;
+        }
+
+        public void setStore(Store store) {
+            this.store = store;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Settings for checking the call flow of a message stream
+     */
+    public static class Sequence {
+        /** Most calls whose state is tracked per stream, the least recently active one is dropped first */
+        private int maxCalls = 20000;
+        /** How long a call is tracked after its last message */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        public int getMaxCalls() {
+            return maxCalls;
+        }
+
+        public void setMaxCalls(int maxCalls) {
+            this.maxCalls = maxCalls;
+        }
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    /**
+     * Settings for checking application/sdp message bodies, see SdpValidator
+     */
+    public static class Sdp {
+        /** Check the SDP body of parsed messages, problems make the message invalid */
+        private boolean enabled = false;
+        /** Encoding names every active media description must offer at least one of, e.g. PCMA, empty for any */
+        private List<String> codecs = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getCodecs() {
+            return codecs;
+        }
+
+        public void setCodecs(List<String> codecs) {
+            this.codecs = codecs;
+        }
+    }
+
+    /**
+     * House rules checked on every parsed message in addition to the grammar
+     */
+    public static class Policy {
+        /** Rules from the application configuration, read once at startup */
+        private List<Rule> rules = new ArrayList<>();
+        /** YAML or properties file with more rules under "rules", reloaded when it changes */
+        private String file;
+        /** How often the rule file is checked for changes */
+        private Duration reloadInterval = Duration.ofSeconds(10);
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public Duration getReloadInterval() {
+            return reloadInterval;
+        }
+
+        public void setReloadInterval(Duration reloadInterval) {
+            this.reloadInterval = reloadInterval;
+        }
+
+        /**
+         * Messages a rule applies to
+         */
+        public enum Target {
+            ALL, REQUESTS, RESPONSES
+        }
+
+        /**
+         * One rule about a header. A rule may combine checks, e.g. min and
+         * max, or required and pattern.
+         */
+        public static class Rule {
+            /** Name reported with violations, defaults to the header name */
+            private String name;
+            /** Full header name, matched case-insensitively */
+            private String header;
+            private Target target = Target.ALL;
+            /** Request methods the rule applies to, responses by their CSeq method, empty for all */
+            private List<String> methods = new ArrayList<>();
+            /** The header must be present */
+            private boolean required;
+            /** The header must not be present */
+            private boolean forbidden;
+            /** Smallest allowed numeric value */
+            private Long min;
+            /** Largest allowed numeric value */
+            private Long max;
+            /** Regular expression every value of the header must match completely */
+            private String pattern;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getHeader() {
+                return header;
+            }
+
+            public void setHeader(String header) {
+                this.header = header;
+            }
+
+            public Target getTarget() {
+                return target;
+            }
+
+            public void setTarget(Target target) {
+                this.target = target;
+            }
+
+            public List<String> getMethods() {
+                return methods;
+            }
+
+            public void setMethods(List<String> methods) {
+                this.methods = methods;
+            }
+
+            public boolean isRequired() {
+                return required;
+            }
+
+            public void setRequired(boolean required) {
+                this.required = required;
+            }
+
+            public boolean isForbidden() {
+                return forbidden;
+            }
+
+            public void setForbidden(boolean forbidden) {
+                this.forbidden = forbidden;
+            }
+
+            public Long getMin() {
+                return min;
+            }
+
+            public void setMin(Long min) {
+                this.min = min;
+            }
+
+            public Long getMax() {
+                return max;
+            }
+
+            public void setMax(Long max) {
+                this.max = max;
+            }
+
+            public String getPattern() {
+                return pattern;
+            }
+
+            public void setPattern(String pattern) {
+                this.pattern = pattern;
+            }
+        }
+    }
+}
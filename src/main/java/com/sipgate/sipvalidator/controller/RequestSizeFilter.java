@@ -0,0 +1,170 @@
+package com.sipgate.sipvalidator.controller;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.LimitViolation;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.MessageLimits;
+import com.sipgate.sipvalidator.service.ValidationMetrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rejects request bodies of the message, header and batch endpoints that are
+ * larger than "sipvalidator.limits.max-request-size", and job submissions
+ * larger than "sipvalidator.jobs.max-request-size", with 413 and a
+ * ValidationResponse naming the limit, before the body is deserialized. A
+ * declared Content-Length is checked without reading anything, a chunked body
+ * is read up to the limit. The streaming endpoints are not limited, they
+ * check each message on its own.
+ */
+@Component
+public class RequestSizeFilter extends OncePerRequestFilter {
+
+    private static final String LIMITED_PATH = "/api/sip/validate/";
+    private static final String STREAM_PATH = "/api/sip/validate/stream";
+    private static final String SEQUENCE_PATH = "/api/sip/validate/sequence";
+    private static final String JOBS_PATH = "/api/sip/jobs";
+
+    private final int maxRequestSize;
+    private final int maxJobRequestSize;
+    private final ValidationMetrics metrics;
+    private final ObjectMapper objectMapper;
+
+    public RequestSizeFilter(SipValidatorProperties properties, ValidationMetrics metrics, ObjectMapper objectMapper) {
+        this.maxRequestSize = properties.getLimits().getMaxRequestSize();
+        this.maxJobRequestSize = properties.getJobs().getMaxRequestSize();
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.equals(JOBS_PATH)) {
+            return false;
+        }
+        return !path.startsWith(LIMITED_PATH) || path.startsWith(STREAM_PATH) || path.startsWith(SEQUENCE_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        int maxSize = request.getRequestURI().equals(JOBS_PATH) ? maxJobRequestSize : maxRequestSize;
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxSize) {
+            reject(response, maxSize, contentLength);
+            return;
+        }
+        if (contentLength >= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxSize + 1);
+        if (body.length > maxSize) {
+            reject(response, maxSize, body.length);
+            return;
+        }
+        chain.doFilter(new BufferedBodyRequest(request, body), response);
+    }
+
+    private void reject(HttpServletResponse response, int maxSize, long size) throws IOException {
+        LimitViolation violation = new LimitViolation(MessageLimits.REQUEST_SIZE, maxSize, size);
+        metrics.recordRejected(violation.getLimit());
+
+        ValidationResponse body = new ValidationResponse();
+        body.setValid(false);
+        body.getErrors().add(violation.describe());
+        body.setRejection(violation);
+        response.setStatus(HttpStatus.CONTENT_TOO_LARGE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // The rest of the body is not read, make sure the connection is not reused for another request
+        response.setHeader("Connection", "close");
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(body));
+    }
+
+    /**
+     * A request whose body has already been read into memory
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is in memory, so it can be read right away
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -1,67 +1,213 @@
 package com.sipgate.sipvalidator.controller;
 
+import com.sipgate.sipvalidator.model.BatchValidationRequest;
+import com.sipgate.sipvalidator.model.BatchValidationResponse;
+import com.sipgate.sipvalidator.model.CompactBatchValidationResponse;
+import com.sipgate.sipvalidator.model.CompactValidationResponse;
+import com.sipgate.sipvalidator.model.StructuredBatchValidationResponse;
+import com.sipgate.sipvalidator.model.StructuredValidationResponse;
 import com.sipgate.sipvalidator.model.ValidationRequest;
 import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.BatchValidationService;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
 import com.sipgate.sipvalidator.service.SipValidatorService;
-import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+import com.sipgate.sipvalidator.service.StreamValidationService;
+import com.sipgate.sipvalidator.service.StreamValidationService.Format;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST API of the validator. Validation endpoints answer with the full JSON
+ * ValidationResponse by default. Clients that send
+ * Accept: application/vnd.sipvalidator.compact+json or application/cbor get the
+ * compact form instead, which refers to RFC references by the ids listed at
+ * /rfc-references. Clients that send
+ * Accept: application/vnd.sipvalidator.structured+json get messages and errors
+ * as result codes, with their text only if the request sets verbose.
+ */
 @RestController
 @RequestMapping("/api/sip")
 public class SipValidatorRestController {
 
+    /** Media type of the compact JSON response format */
+    public static final String COMPACT_JSON_VALUE = "application/vnd.sipvalidator.compact+json";
+
+    /** Media type of the structured JSON response format */
+    public static final String STRUCTURED_JSON_VALUE = "application/vnd.sipvalidator.structured+json";
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final SipValidatorService validatorService;
+    private final BatchValidationService batchValidationService;
+    private final StreamValidationService streamValidationService;
 
-    public SipValidatorRestController(SipValidatorService validatorService) {
+    public SipValidatorRestController(SipValidatorService validatorService,
+                                      BatchValidationService batchValidationService,
+                                      StreamValidationService streamValidationService) {
         this.validatorService = validatorService;
+        this.batchValidationService = batchValidationService;
+        this.streamValidationService = streamValidationService;
     }
 
-    @PostMapping("/validate/message")
+    @PostMapping(value = "/validate/message", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ValidationResponse> validateMessage(
             @RequestBody ValidationRequest request) {
         
-        ValidationResponse response = new ValidationResponse();
+        ValidationResponse response;
         
         if (request.getMessageText() != null && !request.getMessageText().isEmpty()) {
-            ValidationResult result = validatorService.validateMessage(request.getMessageText());
-
-            response.setValid(result.isValid());
-            response.setMessages(result.getMessages());
-            response.setErrors(result.getErrors());
-            response.setHeaders(result.getHeaders());
+            response = ValidationResponse.of(request.isDetailed()
+                ? validatorService.validateMessageDetailed(request.getMessageText())
+                : validatorService.validateMessage(request.getMessageText()));
         } else {
+            response = new ValidationResponse();
             response.setValid(false);
             response.getErrors().add("Request must include messageText");
         }
+        response.setId(request.getId());
         
         return ResponseEntity.ok(response);
     }
 
-    @PostMapping("/validate/header")
+    @PostMapping(value = "/validate/message", produces = {COMPACT_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CompactValidationResponse> validateMessageCompact(
+            @RequestBody ValidationRequest request) {
+        return ResponseEntity.ok(CompactValidationResponse.of(validateMessage(request).getBody()));
+    }
+
+    @PostMapping(value = "/validate/message", produces = STRUCTURED_JSON_VALUE)
+    public ResponseEntity<StructuredValidationResponse> validateMessageStructured(
+            @RequestBody ValidationRequest request) {
+        return ResponseEntity.ok(StructuredValidationResponse.of(validateMessage(request).getBody(), request.isVerbose()));
+    }
+
+    @PostMapping(value = "/validate/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchValidationResponse> validateBatch(
+            @RequestBody BatchValidationRequest request) {
+
+        BatchValidationResponse response = new BatchValidationResponse();
+        List<ValidationRequest> items = request.getMessages();
+
+        if (items == null || items.isEmpty()) {
+            response.getErrors().add("Request must include at least one message");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (items.size() > batchValidationService.getMaxSize()) {
+            response.getErrors().add("Batch contains " + items.size()
+                + " messages, maximum is " + batchValidationService.getMaxSize());
+            return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(response);
+        }
+
+        response.setResults(batchValidationService.validateRequests(items));
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/validate/batch", produces = {COMPACT_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CompactBatchValidationResponse> validateBatchCompact(
+            @RequestBody BatchValidationRequest request) {
+        ResponseEntity<BatchValidationResponse> response = validateBatch(request);
+        return ResponseEntity.status(response.getStatusCode())
+            .body(CompactBatchValidationResponse.of(response.getBody()));
+    }
+
+    @PostMapping(value = "/validate/batch", produces = STRUCTURED_JSON_VALUE)
+    public ResponseEntity<StructuredBatchValidationResponse> validateBatchStructured(
+            @RequestBody BatchValidationRequest request) {
+        ResponseEntity<BatchValidationResponse> response = validateBatch(request);
+        return ResponseEntity.status(response.getStatusCode())
+            .body(StructuredBatchValidationResponse.of(response.getBody(), request.isVerbose()));
+    }
+
+    /**
+     * Validates a stream of messages while it is uploaded. The body is either
+     * NDJSON (Content-Type application/x-ndjson) with one request object per line,
+     * or raw SIP messages one after the other. Results are streamed back as NDJSON.
+     */
+    @PostMapping(value = "/validate/stream", produces = "application/x-ndjson")
+    public void validateStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        validateStream(request, response, false);
+    }
+
+    /**
+     * Like /validate/stream, but also checks the messages as one ordered flow,
+     * e.g. for CSeq order and responses matching their requests. Problems are
+     * listed in sequenceViolations of the result of the message they were found in.
+     */
+    @PostMapping(value = "/validate/sequence", produces = "application/x-ndjson")
+    public void validateSequence(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        validateStream(request, response, true);
+    }
+
+    private void validateStream(HttpServletRequest request, HttpServletResponse response, boolean sequence)
+            throws IOException {
+        Format format = Format.SIP;
+        String contentType = request.getContentType();
+        if (contentType != null && MediaType.parseMediaType(contentType).isCompatibleWith(NDJSON)) {
+            format = Format.NDJSON;
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_TYPE, NDJSON.toString());
+        streamValidationService.validate(request.getInputStream(), format, sequence, response.getOutputStream());
+    }
+
+    @PostMapping(value = "/validate/header", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ValidationResponse> validateHeader(
             @RequestBody ValidationRequest request) {
         
-        ValidationResponse response = new ValidationResponse();
+        ValidationResponse response;
         
         if (request.getHeaderText() != null && !request.getHeaderText().isEmpty()) {
-            ValidationResult result = validatorService.validateHeader(request.getHeaderText());
-
-            response.setValid(result.isValid());
-            response.setMessages(result.getMessages());
-            response.setErrors(result.getErrors());
-            response.setHeaders(result.getHeaders());
+            response = ValidationResponse.of(validatorService.validateHeader(request.getHeaderText()));
         } else {
+            response = new ValidationResponse();
             response.setValid(false);
             response.getErrors().add("Request must include either headerText");
         }
+        response.setId(request.getId());
         
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping(value = "/validate/header", produces = {COMPACT_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CompactValidationResponse> validateHeaderCompact(
+            @RequestBody ValidationRequest request) {
+        return ResponseEntity.ok(CompactValidationResponse.of(validateHeader(request).getBody()));
+    }
+
+    @PostMapping(value = "/validate/header", produces = STRUCTURED_JSON_VALUE)
+    public ResponseEntity<StructuredValidationResponse> validateHeaderStructured(
+            @RequestBody ValidationRequest request) {
+        return ResponseEntity.ok(StructuredValidationResponse.of(validateHeader(request).getBody(), request.isVerbose()));
+    }
+
+    /**
+     * The RFC references that compact responses refer to by id, which is the
+     * index in this list. The list only changes with a new release.
+     */
+    @GetMapping("/rfc-references")
+    public ResponseEntity<List<RfcReference>> rfcReferences() {
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS))
+            .body(SipHeaderRfcMapping.getReferences());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("SIP Header Validator is running");
     }
-}
\ No newline at end of file
+}
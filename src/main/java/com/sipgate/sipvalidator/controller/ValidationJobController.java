@@ -0,0 +1,117 @@
+package com.sipgate.sipvalidator.controller;
+
+import com.sipgate.sipvalidator.model.BatchValidationRequest;
+import com.sipgate.sipvalidator.model.JobResultsPage;
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.ValidationRequest;
+import com.sipgate.sipvalidator.service.ValidationJobService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous validation of submissions too large to validate within one
+ * HTTP request. A job is submitted with the body of the batch endpoint and
+ * answered with 202 and its status right away. Clients then poll the status,
+ * page through the results validated so far, or stream them as NDJSON until
+ * the job finishes. Finished jobs expire, see ValidationJobService.
+ */
+@RestController
+@RequestMapping("/api/sip/jobs")
+public class ValidationJobController {
+
+    /** Largest page of results returned at once */
+    private static final int MAX_PAGE_SIZE = 10_000;
+    /** Seconds a client should wait before submitting again while the queue is full */
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final ValidationJobService jobService;
+
+    public ValidationJobController(ValidationJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submit(@RequestBody BatchValidationRequest request, UriComponentsBuilder uriBuilder) {
+        List<ValidationRequest> items = request.getMessages();
+        if (items == null || items.isEmpty()) {
+            return problem(HttpStatus.BAD_REQUEST, "Request must include at least one message");
+        }
+        if (items.size() > jobService.getMaxSize()) {
+            return problem(HttpStatus.CONTENT_TOO_LARGE,
+                "Job contains " + items.size() + " messages, maximum is " + jobService.getMaxSize());
+        }
+
+        JobStatus status;
+        try {
+            status = jobService.submit(items);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage()));
+        }
+        return ResponseEntity.accepted()
+            .location(uriBuilder.path("/api/sip/jobs/{id}").buildAndExpand(status.getId()).toUri())
+            .body(status);
+    }
+
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JobStatus> status(@PathVariable String id) {
+        return ResponseEntity.of(jobService.status(id));
+    }
+
+    /**
+     * Results validated so far, in submission order. Fewer results than the
+     * limit are returned while they are not validated yet, the status tells
+     * how many there will be.
+     */
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JobResultsPage> results(@PathVariable String id,
+                                                  @RequestParam(defaultValue = "0") int offset,
+                                                  @RequestParam(defaultValue = "1000") int limit) {
+        if (offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.of(jobService.results(id, offset, Math.min(limit, MAX_PAGE_SIZE))
+            .map(results -> new JobResultsPage(results.status(), offset, results.results())));
+    }
+
+    /**
+     * Streams the results from offset as NDJSON while they are validated,
+     * the response ends when the job has finished
+     */
+    @GetMapping(value = "/{id}/results", produces = "application/x-ndjson")
+    public void streamResults(@PathVariable String id, @RequestParam(defaultValue = "0") int offset,
+                              HttpServletResponse response) throws IOException {
+        if (offset < 0 || jobService.status(id).isEmpty()) {
+            response.sendError(offset < 0 ? HttpStatus.BAD_REQUEST.value() : HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_TYPE, "application/x-ndjson");
+        jobService.streamResults(id, offset, response.getOutputStream());
+    }
+
+    /**
+     * Cancels the job if it is still queued or running and removes it with its results
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        return jobService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatus status, String detail) {
+        return ResponseEntity.status(status).body(ProblemDetail.forStatusAndDetail(status, detail));
+    }
+}
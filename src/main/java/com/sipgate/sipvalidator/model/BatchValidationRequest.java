@@ -0,0 +1,22 @@
+package com.sipgate.sipvalidator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of messages to validate in one call. Each entry may carry an id
+ * which is echoed back on the corresponding result.
+ */
+public class BatchValidationRequest {
+    private List<ValidationRequest> messages = new ArrayList<>();
+    /** Add the rendered text to messages and errors of structured results */
+    private boolean verbose;
+
+    public List<ValidationRequest> getMessages() {
+        return messages;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+}
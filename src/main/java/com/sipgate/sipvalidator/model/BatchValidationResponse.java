@@ -0,0 +1,28 @@
+package com.sipgate.sipvalidator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of a batch validation, in the same order as the submitted messages
+ */
+public class BatchValidationResponse {
+    private List<ValidationResponse> results = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+
+    public List<ValidationResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ValidationResponse> results) {
+        this.results = results;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,45 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact form of a BatchValidationResponse, see CompactValidationResponse
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class CompactBatchValidationResponse {
+    private List<CompactValidationResponse> results = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+
+    /**
+     * Creates the compact form of a batch response
+     */
+    public static CompactBatchValidationResponse of(BatchValidationResponse response) {
+        CompactBatchValidationResponse compact = new CompactBatchValidationResponse();
+        List<CompactValidationResponse> results = new ArrayList<>(response.getResults().size());
+        for (ValidationResponse result : response.getResults()) {
+            results.add(CompactValidationResponse.of(result));
+        }
+        compact.setResults(results);
+        compact.setErrors(response.getErrors());
+        return compact;
+    }
+
+    public List<CompactValidationResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<CompactValidationResponse> results) {
+        this.results = results;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,132 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Terse form of a ValidationResponse for bulk clients. Informational messages
+ * are left out, and each header is sent as a [name, rfcId] pair, where rfcId is
+ * the index into the list served by GET /api/sip/rfc-references.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonPropertyOrder({"id", "v", "e", "h", "r"})
+public class CompactValidationResponse {
+    private String id;
+    private boolean valid;
+    private List<String> errors = new ArrayList<>();
+    private List<Header> headers = new ArrayList<>();
+    private LimitViolation rejection;
+
+    /**
+     * Creates the compact form of a response
+     */
+    public static CompactValidationResponse of(ValidationResponse response) {
+        CompactValidationResponse compact = new CompactValidationResponse();
+        compact.setId(response.getId());
+        compact.setValid(response.isValid());
+        compact.setErrors(response.getErrors());
+        compact.setHeaders(headers(response.getHeaderNames()));
+        compact.setRejection(response.getRejection());
+        return compact;
+    }
+
+    /**
+     * @return [name, rfcId] pairs of the headers, with the ids of the shared RFC references
+     */
+    static List<Header> headers(List<String> names) {
+        List<Header> headers = new ArrayList<>(names.size());
+        for (String name : names) {
+            RfcReference reference = SipHeaderRfcMapping.getRfcReference(name);
+            headers.add(new Header(name, reference != null ? SipHeaderRfcMapping.getReferenceId(reference) : null));
+        }
+        return headers;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @JsonProperty("v")
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    @JsonProperty("e")
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    @JsonProperty("h")
+    public List<Header> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<Header> headers) {
+        this.headers = headers;
+    }
+
+    @JsonProperty("r")
+    public LimitViolation getRejection() {
+        return rejection;
+    }
+
+    public void setRejection(LimitViolation rejection) {
+        this.rejection = rejection;
+    }
+
+    /**
+     * A header of the message, written as a two element array
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"name", "rfc"})
+    public static class Header {
+        private String name;
+        private Integer rfc;
+
+        public Header() {}
+
+        public Header(String name, Integer rfc) {
+            this.name = name;
+            this.rfc = rfc;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return id of the RFC reference, null for headers without one
+         */
+        public Integer getRfc() {
+            return rfc;
+        }
+
+        public void setRfc(Integer rfc) {
+            this.rfc = rfc;
+        }
+    }
+}
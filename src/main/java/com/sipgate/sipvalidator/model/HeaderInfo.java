@@ -1,15 +1,28 @@
 package com.sipgate.sipvalidator.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
 
 /**
- * Information about a validated SIP header
+ * Information about a validated SIP header. Validity, line and error are
+ * only set by the detailed message validation. Results shared between
+ * threads hold unmodifiable copies, see {@link #unmodifiableCopy()}.
  */
 public class HeaderInfo {
     private String name;
     private String canonicalName;
     private String type;
     private RfcReference rfcReference;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean valid;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer line;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer errorColumn;
+    /** Set on copies in shared results, has no getter so it is not serialized */
+    private boolean unmodifiable;
     
     public HeaderInfo() {}
     
@@ -25,6 +38,7 @@ public class HeaderInfo {
     }
     
     public void setName(String name) {
+        checkModifiable();
         this.name = name;
     }
     
@@ -33,6 +47,7 @@ public class HeaderInfo {
     }
     
     public void setCanonicalName(String canonicalName) {
+        checkModifiable();
         this.canonicalName = canonicalName;
     }
     
@@ -41,6 +56,7 @@ public class HeaderInfo {
     }
     
     public void setType(String type) {
+        checkModifiable();
         this.type = type;
     }
     
@@ -49,6 +65,71 @@ public class HeaderInfo {
     }
     
     public void setRfcReference(RfcReference rfcReference) {
+        checkModifiable();
         this.rfcReference = rfcReference;
     }
+
+    public Boolean getValid() {
+        return valid;
+    }
+
+    public void setValid(Boolean valid) {
+        checkModifiable();
+        this.valid = valid;
+    }
+
+    /**
+     * @return 1-based line of the message the header starts on
+     */
+    public Integer getLine() {
+        return line;
+    }
+
+    public void setLine(Integer line) {
+        checkModifiable();
+        this.line = line;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        checkModifiable();
+        this.error = error;
+    }
+
+    /**
+     * @return 1-based position of the error within the header, folded lines joined
+     */
+    public Integer getErrorColumn() {
+        return errorColumn;
+    }
+
+    public void setErrorColumn(Integer errorColumn) {
+        checkModifiable();
+        this.errorColumn = errorColumn;
+    }
+
+    /**
+     * @return a copy whose setters throw UnsupportedOperationException
+     */
+    public HeaderInfo unmodifiableCopy() {
+        if (unmodifiable) {
+            return this;
+        }
+        HeaderInfo copy = new HeaderInfo(name, canonicalName, type, rfcReference);
+        copy.valid = valid;
+        copy.line = line;
+        copy.error = error;
+        copy.errorColumn = errorColumn;
+        copy.unmodifiable = true;
+        return copy;
+    }
+
+    private void checkModifiable() {
+        if (unmodifiable) {
+            throw new UnsupportedOperationException("Header of a shared validation result");
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package com.sipgate.sipvalidator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous part of the results of a job, in submission order. While the
+ * job runs, fewer results than requested may be available yet.
+ */
+public class JobResultsPage {
+    private JobStatus status;
+    private int offset;
+    private List<ValidationResponse> results = new ArrayList<>();
+
+    public JobResultsPage() {}
+
+    public JobResultsPage(JobStatus status, int offset, List<ValidationResponse> results) {
+        this.status = status;
+        this.offset = offset;
+        this.results = results;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return index of the first result of this page
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public List<ValidationResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ValidationResponse> results) {
+        this.results = results;
+    }
+}
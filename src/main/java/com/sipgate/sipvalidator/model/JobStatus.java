@@ -0,0 +1,134 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * Progress of an asynchronous validation job
+ */
+public class JobStatus {
+
+    /**
+     * Lifecycle of a job, ending in one of the finished states
+     */
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private String id;
+    private State state;
+    private int total;
+    private int completed;
+    private int valid;
+    private int invalid;
+    private Instant submitted;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant finished;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public JobStatus() {}
+
+    /**
+     * @return a status with the same values, later changes of either are not seen by the other
+     */
+    public JobStatus copy() {
+        JobStatus copy = new JobStatus();
+        copy.id = id;
+        copy.state = state;
+        copy.total = total;
+        copy.completed = completed;
+        copy.valid = valid;
+        copy.invalid = invalid;
+        copy.submitted = submitted;
+        copy.finished = finished;
+        copy.error = error;
+        return copy;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    /**
+     * @return number of submitted messages
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * @return number of messages validated so far, their results are available in submission order
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getValid() {
+        return valid;
+    }
+
+    public void setValid(int valid) {
+        this.valid = valid;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(int invalid) {
+        this.invalid = invalid;
+    }
+
+    public Instant getSubmitted() {
+        return submitted;
+    }
+
+    public void setSubmitted(Instant submitted) {
+        this.submitted = submitted;
+    }
+
+    public Instant getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Instant finished) {
+        this.finished = finished;
+    }
+
+    /**
+     * @return why the job failed, null unless its state is FAILED
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
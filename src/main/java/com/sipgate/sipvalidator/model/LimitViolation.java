@@ -0,0 +1,54 @@
+package com.sipgate.sipvalidator.model;
+
+/**
+ * Describes why input was rejected without being parsed
+ */
+public class LimitViolation {
+    private String limit;
+    private long maximum;
+    private long actual;
+
+    public LimitViolation() {}
+
+    /**
+     * @param limit Name of the exceeded limit, e.g. header-count
+     * @param maximum Configured maximum
+     * @param actual Size of the input, or the size seen so far if reading stopped early
+     */
+    public LimitViolation(String limit, long maximum, long actual) {
+        this.limit = limit;
+        this.maximum = maximum;
+        this.actual = actual;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    public void setLimit(String limit) {
+        this.limit = limit;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public void setMaximum(long maximum) {
+        this.maximum = maximum;
+    }
+
+    public long getActual() {
+        return actual;
+    }
+
+    public void setActual(long actual) {
+        this.actual = actual;
+    }
+
+    /**
+     * @return a sentence for the errors list of a response
+     */
+    public String describe() {
+        return "Input exceeds the " + limit + " limit of " + maximum + " (" + actual + ")";
+    }
+}
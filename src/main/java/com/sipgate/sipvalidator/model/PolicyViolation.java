@@ -0,0 +1,54 @@
+package com.sipgate.sipvalidator.model;
+
+/**
+ * Describes a message that breaks a configured header policy rule
+ */
+public class PolicyViolation {
+    private String rule;
+    private String header;
+    private String description;
+
+    public PolicyViolation() {}
+
+    /**
+     * @param rule Name of the broken rule
+     * @param header Header the rule is about
+     * @param description What is wrong, e.g. the value that is out of range
+     */
+    public PolicyViolation(String rule, String header, String description) {
+        this.rule = rule;
+        this.header = header;
+        this.description = description;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return a sentence for the errors list of a response
+     */
+    public String describe() {
+        return "Policy " + rule + ": " + description;
+    }
+}
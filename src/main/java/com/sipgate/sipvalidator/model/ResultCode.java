@@ -0,0 +1,77 @@
+package com.sipgate.sipvalidator.model;
+
+/**
+ * Kinds of messages and errors in a validation result. A result stores a code
+ * with the variable part of the text, its detail, and the sentence shown to
+ * people is only put together from the code's template when it is rendered.
+ */
+public enum ResultCode {
+    /** The message parsed */
+    MESSAGE_PARSED("Message successfully parsed"),
+    /** The message parsed, but some of its headers did not, see the detailed validation */
+    MESSAGE_PARSED_WITH_ERRORS("Message parsed with errors"),
+    /** Detail is the class of the parsed message, e.g. SIPRequest */
+    MESSAGE_TYPE("Message type: "),
+    /** Detail is the number of headers */
+    HEADER_COUNT("Found ", " headers in the message"),
+    /** Detail is the reason the headers of a parsed message could not be listed */
+    HEADERS_UNREADABLE("Could not extract headers: "),
+    /** The header parsed */
+    HEADER_PARSED("Header successfully parsed"),
+    /** Detail is the class of the parsed header, e.g. CallID */
+    HEADER_TYPE("Header type: "),
+    /** Detail is the full name of the header */
+    HEADER_CANONICAL_NAME("Header canonical name: "),
+    /** Detail is the display text of the header's RFC reference */
+    RFC_REFERENCE("RFC Reference: "),
+    /** Detail is the name of a header without RFC reference */
+    NO_RFC_REFERENCE("No RFC reference found for header: "),
+    /** Detail is the number of media descriptions of the checked SDP body */
+    SDP_CHECKED("SDP body with ", " media descriptions checked"),
+
+    /** Detail is the parser's error message */
+    PARSE_ERROR("Parse error: "),
+    /** Detail is the message of an unexpected error while validating */
+    VALIDATION_ERROR("Validation error: "),
+    /** Detail is the position and error of the request or status line */
+    INVALID_START_LINE("Invalid start line at "),
+    /** Detail is the header with its position and error */
+    INVALID_HEADER("Invalid "),
+    /** Detail is the broken rule and what is wrong, see PolicyViolation */
+    POLICY_VIOLATION("Policy "),
+    /** Detail is the SDP line and what is wrong with its syntax, see SdpValidator */
+    SDP_SYNTAX("Invalid SDP at "),
+    /** Detail is the SDP line and the payload type or rtpmap problem */
+    SDP_CODEC("SDP codec problem at "),
+    /** Detail is the SDP line with conflicting direction attributes */
+    SDP_DIRECTION("SDP direction problem at "),
+    /** Detail is the SDP line and the connection address or port problem */
+    SDP_ADDRESS("SDP address problem at "),
+    /** Detail is the exceeded limit, see LimitViolation */
+    LIMIT_EXCEEDED(""),
+    /** Detail is what is wrong with the request itself, e.g. missing input */
+    INVALID_REQUEST("");
+
+    private final String prefix;
+    private final String suffix;
+
+    ResultCode(String prefix) {
+        this(prefix, "");
+    }
+
+    ResultCode(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param detail The variable part of the text, null for codes without one
+     * @return the human-readable sentence
+     */
+    public String render(String detail) {
+        if (detail == null) {
+            return suffix.isEmpty() ? prefix : prefix + suffix;
+        }
+        return prefix + detail + suffix;
+    }
+}
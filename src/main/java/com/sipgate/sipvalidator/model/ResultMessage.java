@@ -0,0 +1,35 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A message or error of a validation result in structured form
+ * @param code What happened
+ * @param detail The variable part of the text, e.g. the parser's error message, null if there is none
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultMessage(ResultCode code, String detail) {
+
+    /** Messages without detail, one shared instance per code */
+    private static final ResultMessage[] PLAIN = new ResultMessage[ResultCode.values().length];
+
+    static {
+        for (ResultCode code : ResultCode.values()) {
+            PLAIN[code.ordinal()] = new ResultMessage(code, null);
+        }
+    }
+
+    /**
+     * @return the shared message of a code without detail
+     */
+    public static ResultMessage of(ResultCode code) {
+        return PLAIN[code.ordinal()];
+    }
+
+    /**
+     * @return the human-readable sentence, built on every call
+     */
+    public String render() {
+        return code.render(detail);
+    }
+}
@@ -0,0 +1,56 @@
+package com.sipgate.sipvalidator.model;
+
+/**
+ * Describes a message that is valid by itself but breaks the flow of its
+ * call, transaction or dialog as seen in an ordered stream of messages
+ */
+public class SequenceViolation {
+
+    /**
+     * Kinds of flow problems, see DialogSequenceValidator for the rules
+     */
+    public enum Type {
+        /** A request has a lower CSeq than an earlier request of the same sender in the call */
+        CSEQ_DECREASED,
+        /** A new request reuses the CSeq of the previous request of the same sender */
+        CSEQ_NOT_INCREMENTED,
+        /** A response, ACK or CANCEL carries another CSeq number than the request it belongs to */
+        CSEQ_MISMATCH,
+        /** A response whose top Via branch and CSeq method match no request seen */
+        UNMATCHED_RESPONSE,
+        /** A CANCEL whose Via branch matches no INVITE seen */
+        UNMATCHED_CANCEL,
+        /** A response other than 100 without To tag */
+        MISSING_TO_TAG,
+        /** A final response of a non-INVITE transaction with another To tag than an earlier final response */
+        TO_TAG_CHANGED,
+        /** A request with a To tag that no dialog of the call has */
+        UNKNOWN_DIALOG
+    }
+
+    private Type type;
+    private String description;
+
+    public SequenceViolation() {}
+
+    public SequenceViolation(Type type, String description) {
+        this.type = type;
+        this.description = description;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,46 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structured form of a BatchValidationResponse, see StructuredValidationResponse
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class StructuredBatchValidationResponse {
+    private List<StructuredValidationResponse> results = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+
+    /**
+     * Creates the structured form of a batch response
+     * @param verbose Whether to render the text of messages and errors
+     */
+    public static StructuredBatchValidationResponse of(BatchValidationResponse response, boolean verbose) {
+        StructuredBatchValidationResponse structured = new StructuredBatchValidationResponse();
+        List<StructuredValidationResponse> results = new ArrayList<>(response.getResults().size());
+        for (ValidationResponse result : response.getResults()) {
+            results.add(StructuredValidationResponse.of(result, verbose));
+        }
+        structured.setResults(results);
+        structured.setErrors(response.getErrors());
+        return structured;
+    }
+
+    public List<StructuredValidationResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<StructuredValidationResponse> results) {
+        this.results = results;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
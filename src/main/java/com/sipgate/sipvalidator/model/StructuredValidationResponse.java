@@ -0,0 +1,129 @@
+package com.sipgate.sipvalidator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sipgate.sipvalidator.model.CompactValidationResponse.Header;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Form of a ValidationResponse for clients that act on the outcome. Messages
+ * and errors are listed by ResultCode with their detail, and headers as
+ * [name, rfcId] pairs like in CompactValidationResponse. The sentences of the
+ * default form are only added, as text of each entry, if the request asked
+ * for a verbose response.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class StructuredValidationResponse {
+    private String id;
+    private boolean valid;
+    private List<Entry> messages = new ArrayList<>();
+    private List<Entry> errors = new ArrayList<>();
+    private List<Header> headers = new ArrayList<>();
+    private List<PolicyViolation> policyViolations = new ArrayList<>();
+    private LimitViolation rejection;
+
+    /**
+     * Creates the structured form of a response
+     * @param verbose Whether to render the text of messages and errors
+     */
+    public static StructuredValidationResponse of(ValidationResponse response, boolean verbose) {
+        StructuredValidationResponse structured = new StructuredValidationResponse();
+        structured.setId(response.getId());
+        structured.setValid(response.isValid());
+        ValidationResult result = response.getResult();
+        if (result != null) {
+            structured.setMessages(entries(result.getMessageEntries(), verbose));
+        }
+        if (response.hasResultErrors()) {
+            structured.setErrors(entries(result.getErrorEntries(), verbose));
+        } else {
+            // Errors of the request itself, which come as text only
+            List<Entry> errors = new ArrayList<>(response.getErrors().size());
+            for (String error : response.getErrors()) {
+                errors.add(new Entry(ResultCode.INVALID_REQUEST, error, verbose ? error : null));
+            }
+            structured.setErrors(errors);
+        }
+        structured.setHeaders(CompactValidationResponse.headers(response.getHeaderNames()));
+        structured.setPolicyViolations(response.getPolicyViolations());
+        structured.setRejection(response.getRejection());
+        return structured;
+    }
+
+    private static List<Entry> entries(List<ResultMessage> messages, boolean verbose) {
+        List<Entry> entries = new ArrayList<>(messages.size());
+        for (ResultMessage message : messages) {
+            entries.add(new Entry(message.code(), message.detail(), verbose ? message.render() : null));
+        }
+        return entries;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public List<Entry> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Entry> messages) {
+        this.messages = messages;
+    }
+
+    public List<Entry> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<Entry> errors) {
+        this.errors = errors;
+    }
+
+    public List<Header> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<Header> headers) {
+        this.headers = headers;
+    }
+
+    public List<PolicyViolation> getPolicyViolations() {
+        return policyViolations;
+    }
+
+    public void setPolicyViolations(List<PolicyViolation> policyViolations) {
+        this.policyViolations = policyViolations;
+    }
+
+    public LimitViolation getRejection() {
+        return rejection;
+    }
+
+    public void setRejection(LimitViolation rejection) {
+        this.rejection = rejection;
+    }
+
+    /**
+     * A message or error
+     * @param code What happened
+     * @param detail The variable part of the text, null if there is none
+     * @param text The rendered sentence, null unless a verbose response was asked for
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Entry(ResultCode code, String detail, String text) {
+    }
+}
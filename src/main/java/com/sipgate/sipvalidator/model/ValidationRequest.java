@@ -1,8 +1,17 @@
 package com.sipgate.sipvalidator.model;
 
 public class ValidationRequest {
+    private String id;
     private String messageText;
     private String headerText;
+    /** Report on every header of the message separately, see SipValidatorService.validateMessageDetailed */
+    private boolean detailed;
+    /** Add the rendered text to messages and errors of a structured response, see StructuredValidationResponse */
+    private boolean verbose;
+
+    public String getId() {
+        return id;
+    }
 
     public String getMessageText() {
         return messageText;
@@ -11,4 +20,12 @@ public class ValidationRequest {
     public String getHeaderText() {
         return headerText;
     }
-}
\ No newline at end of file
+
+    public boolean isDetailed() {
+        return detailed;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+}
@@ -1,13 +1,57 @@
 package com.sipgate.sipvalidator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Outcome of a validation in the default JSON form. A response created from
+ * a ValidationResult renders its messages, errors and headers from the
+ * result when they are first asked for, so responses that are converted to
+ * another form, see CompactValidationResponse and StructuredValidationResponse,
+ * never build the sentences.
+ */
 public class ValidationResponse {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String id;
     private boolean valid;
     private List<String> messages = new ArrayList<>();
     private List<String> errors = new ArrayList<>();
     private List<HeaderInfo> headers = new ArrayList<>();
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<PolicyViolation> policyViolations = new ArrayList<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LimitViolation rejection;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<SequenceViolation> sequenceViolations;
+    /** The result messages, errors and headers are rendered from, null if the response was built otherwise */
+    private ValidationResult result;
+
+    /**
+     * Creates a response carrying the outcome of a validation
+     */
+    public static ValidationResponse of(ValidationResult result) {
+        ValidationResponse response = new ValidationResponse();
+        response.result = result;
+        response.messages = null;
+        response.errors = null;
+        response.headers = null;
+        response.setValid(result.isValid());
+        response.setPolicyViolations(result.getPolicyViolations());
+        response.setRejection(result.getRejection());
+        return response;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
 
     public boolean isValid() {
         return valid;
@@ -18,6 +62,9 @@ public class ValidationResponse {
     }
 
     public List<String> getMessages() {
+        if (messages == null) {
+            messages = result.getMessages();
+        }
         return messages;
     }
 
@@ -26,6 +73,9 @@ public class ValidationResponse {
     }
 
     public List<String> getErrors() {
+        if (errors == null) {
+            errors = result.getErrors();
+        }
         return errors;
     }
 
@@ -34,10 +84,79 @@ public class ValidationResponse {
     }
 
     public List<HeaderInfo> getHeaders() {
+        if (headers == null) {
+            headers = result.getHeaders();
+        }
         return headers;
     }
 
     public void setHeaders(List<HeaderInfo> headers) {
         this.headers = headers;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the header policy rules the message breaks, also listed in errors
+     */
+    public List<PolicyViolation> getPolicyViolations() {
+        return policyViolations;
+    }
+
+    public void setPolicyViolations(List<PolicyViolation> policyViolations) {
+        this.policyViolations = policyViolations;
+    }
+
+    /**
+     * @return the exceeded limit if the input was rejected without parsing, otherwise null
+     */
+    public LimitViolation getRejection() {
+        return rejection;
+    }
+
+    public void setRejection(LimitViolation rejection) {
+        this.rejection = rejection;
+    }
+
+    /**
+     * @return call flow problems found when the message was validated as part of a stream
+     *         with sequence checks, otherwise null. They do not affect valid, which refers to
+     *         the message by itself.
+     */
+    public List<SequenceViolation> getSequenceViolations() {
+        return sequenceViolations;
+    }
+
+    public void setSequenceViolations(List<SequenceViolation> sequenceViolations) {
+        this.sequenceViolations = sequenceViolations;
+    }
+
+    /**
+     * @return the result this response was created from, null if it was built otherwise
+     */
+    @JsonIgnore
+    public ValidationResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return whether the errors are still those of the result, i.e. were not rendered and changed
+     */
+    @JsonIgnore
+    public boolean hasResultErrors() {
+        return result != null && errors == null;
+    }
+
+    /**
+     * @return the names of the headers, without building their HeaderInfo if not done yet
+     */
+    @JsonIgnore
+    public List<String> getHeaderNames() {
+        if (headers == null) {
+            return result.getHeaderNames();
+        }
+        List<String> names = new ArrayList<>(headers.size());
+        for (HeaderInfo header : headers) {
+            names.add(header.getName());
+        }
+        return names;
+    }
+}
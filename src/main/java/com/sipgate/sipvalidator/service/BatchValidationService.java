@@ -0,0 +1,101 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.stereotype.Service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.ValidationRequest;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Validates many SIP messages at once by fanning them out over a dedicated
+ * fork/join pool. The pool is sized by "sipvalidator.batch.parallelism" so a
+ * large batch cannot take over all cores of the request threads.
+ *
+ * The pool uses platform threads even with spring.threads.virtual.enabled,
+ * as validation is pure CPU work that virtual threads cannot speed up. A
+ * virtual request thread waiting for the batch parks in ForkJoinTask.join
+ * without pinning its carrier.
+ */
+@Service
+public class BatchValidationService {
+
+    private final SipValidatorService validatorService;
+    private final ForkJoinPool pool;
+    private final int maxSize;
+
+    public BatchValidationService(SipValidatorService validatorService, SipValidatorProperties properties) {
+        this.validatorService = validatorService;
+        this.pool = new ForkJoinPool(Math.max(1, properties.getBatch().getParallelism()));
+        this.maxSize = properties.getBatch().getMaxSize();
+    }
+
+    /**
+     * @return the maximum number of messages accepted by {@link #validateMessages(List)}
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Validates all messages in parallel
+     * @param messages The complete message texts
+     * @return One ValidationResult per message, in input order
+     * @throws IllegalArgumentException if more than {@link #getMaxSize()} messages are given
+     */
+    public List<ValidationResult> validateMessages(List<String> messages) {
+        if (messages.size() > maxSize) {
+            throw new IllegalArgumentException(
+                "Batch contains " + messages.size() + " messages, maximum is " + maxSize);
+        }
+
+        return ParallelRange.map(pool, messages.size(), i -> validatorService.validateMessage(messages.get(i)));
+    }
+
+    /**
+     * Validates the messages of batch entries in parallel
+     * @param requests Entries with message text and optional id
+     * @return One response per entry carrying its id, in input order. Entries
+     *         without message text get an error response.
+     * @throws IllegalArgumentException if more than {@link #getMaxSize()} entries are given
+     */
+    public List<ValidationResponse> validateRequests(List<ValidationRequest> requests) {
+        // Only non-empty messages are handed to the validator, remember where their results belong
+        List<String> texts = new ArrayList<>(requests.size());
+        int[] positions = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            String messageText = requests.get(i).getMessageText();
+            if (messageText != null && !messageText.isEmpty()) {
+                positions[texts.size()] = i;
+                texts.add(messageText);
+            }
+        }
+        List<ValidationResult> results = validateMessages(texts);
+
+        ValidationResponse[] responses = new ValidationResponse[requests.size()];
+        for (int i = 0; i < results.size(); i++) {
+            responses[positions[i]] = ValidationResponse.of(results.get(i));
+        }
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i] == null) {
+                responses[i] = new ValidationResponse();
+                responses[i].setValid(false);
+                responses[i].getErrors().add("Request must include messageText");
+            }
+            responses[i].setId(requests.get(i).getId());
+        }
+        return Arrays.asList(responses);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,342 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.SequenceViolation;
+import com.sipgate.sipvalidator.model.SequenceViolation.Type;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the flow of an ordered stream of SIP messages, such as a capture of
+ * a link, for problems single messages cannot show:
+ *
+ * - Requests of one sender (From tag) in a call must increase their CSeq,
+ *   except for retransmissions, ACK and CANCEL. An ACK carries the CSeq of
+ *   its INVITE, a CANCEL that of the INVITE it cancels.
+ * - A response must match a request seen before by top Via branch and CSeq
+ *   method and carry its CSeq. Responses other than 100 must have a To tag,
+ *   final responses of a non-INVITE transaction all the same one.
+ * - A request with a To tag must belong to a dialog, its To tag must have
+ *   been seen in a response or as the From tag of the other side.
+ *
+ * State is kept per Call-ID, with branches and tags as hashes in a few small
+ * arrays, so each message costs constant time and memory is bounded by the
+ * number of tracked calls. Calls are dropped when they have been idle for the
+ * idle timeout, and the least recently active one when a new call would
+ * exceed the maximum. A call first seen in the middle of its flow, because
+ * the stream started late or the call was dropped, is only checked for what
+ * does not depend on earlier messages. Likewise responses to transactions
+ * older than the last few of a call are not reported as unmatched.
+ *
+ * Messages should have passed validation, fields of malformed ones are read
+ * as far as they go. Instances are not thread-safe, use one per stream.
+ */
+public class DialogSequenceValidator {
+
+    private static final String INVITE = "INVITE";
+    private static final String ACK = "ACK";
+    private static final String CANCEL = "CANCEL";
+
+    /** Senders tracked per call, more are not checked for CSeq order */
+    private static final int MAX_PARTIES = 4;
+    /** Dialog tags tracked per call, beyond that To tags are not checked */
+    private static final int MAX_TAGS = 8;
+    /** Most recent transactions remembered per call */
+    private static final int TRANSACTIONS = 8;
+
+    private final int maxCalls;
+    private final long idleTimeoutNanos;
+    private final SipFlowFields fields = new SipFlowFields();
+    private final LinkedHashMap<String, CallState> calls;
+    private long evicted;
+
+    /**
+     * @param maxCalls Most calls tracked at a time
+     * @param idleTimeout How long a call is tracked after its last message
+     */
+    public DialogSequenceValidator(int maxCalls, Duration idleTimeout) {
+        this.maxCalls = maxCalls;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        // Access order keeps the least recently active call first
+        this.calls = new LinkedHashMap<>(Math.min(maxCalls, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CallState> eldest) {
+                if (size() > DialogSequenceValidator.this.maxCalls) {
+                    evicted++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Checks the next message of the stream and adds it to the state
+     * @param message The raw message, the array is not kept
+     * @return the violations found, empty if there are none
+     */
+    public List<SequenceViolation> check(byte[] message) {
+        return check(message, System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos Arrival time of the message on the {@link System#nanoTime()} scale
+     */
+    List<SequenceViolation> check(byte[] message, long nowNanos) {
+        evictIdle(nowNanos);
+        if (!fields.read(message)) {
+            return List.of();
+        }
+        CallState call = calls.get(fields.callId);
+        if (call == null) {
+            boolean partial = fields.response || fields.toTag != 0
+                || ACK.equals(fields.method) || CANCEL.equals(fields.method);
+            call = new CallState(partial);
+            calls.put(fields.callId, call);
+        }
+        call.lastSeen = nowNanos;
+
+        Violations violations = new Violations();
+        if (fields.response) {
+            checkResponse(call, violations);
+        } else {
+            checkRequest(call, violations);
+        }
+        return violations.list != null ? violations.list : List.of();
+    }
+
+    /**
+     * @return the number of calls currently tracked
+     */
+    public int getTrackedCalls() {
+        return calls.size();
+    }
+
+    /**
+     * @return the number of calls dropped so far, for idleness or to stay within the maximum
+     */
+    public long getEvictedCalls() {
+        return evicted;
+    }
+
+    private void checkRequest(CallState call, Violations violations) {
+        String method = fields.cseqMethod;
+        long cseq = fields.cseq;
+        int party = call.party(fields.fromTag);
+
+        if (ACK.equals(method)) {
+            int invite = call.transaction(transactionKey(INVITE));
+            if (invite >= 0) {
+                // ACK of a non-2xx final response, sent in the INVITE transaction
+                if (call.transactionCSeq[invite] != cseq) {
+                    violations.add(Type.CSEQ_MISMATCH, "ACK has CSeq " + cseq
+                        + " but the INVITE with branch " + fields.branchText() + " has " + call.transactionCSeq[invite]);
+                }
+            } else if (party >= 0 && call.partyInvite[party] >= 0 && call.partyInvite[party] != cseq) {
+                violations.add(Type.CSEQ_MISMATCH, "ACK has CSeq " + cseq
+                    + " but the last INVITE of its sender has " + call.partyInvite[party]);
+            }
+        } else if (CANCEL.equals(method)) {
+            int invite = call.transaction(transactionKey(INVITE));
+            if (invite >= 0) {
+                if (call.transactionCSeq[invite] != cseq) {
+                    violations.add(Type.CSEQ_MISMATCH, "CANCEL has CSeq " + cseq
+                        + " but the INVITE with branch " + fields.branchText() + " has " + call.transactionCSeq[invite]);
+                }
+            } else if (!call.partial && fields.branch != 0) {
+                violations.add(Type.UNMATCHED_CANCEL,
+                    "CANCEL with branch " + fields.branchText() + " matches no INVITE");
+            }
+            if (fields.branch != 0 && call.transaction(transactionKey(CANCEL)) < 0) {
+                call.addTransaction(transactionKey(CANCEL), cseq);
+            }
+        } else {
+            long key = transactionKey(method);
+            int transaction = fields.branch != 0 ? call.transaction(key) : -1;
+            boolean retransmission = transaction >= 0 && call.transactionCSeq[transaction] == cseq;
+            if (party >= 0 && call.partyCSeq[party] >= 0 && !retransmission) {
+                long last = call.partyCSeq[party];
+                if (cseq < last) {
+                    violations.add(Type.CSEQ_DECREASED, method + " has CSeq " + cseq
+                        + " after CSeq " + last + " from the same sender");
+                } else if (cseq == last) {
+                    violations.add(Type.CSEQ_NOT_INCREMENTED, method + " reuses CSeq " + cseq
+                        + " of the previous request from the same sender");
+                }
+            }
+            if (party >= 0) {
+                call.partyCSeq[party] = Math.max(call.partyCSeq[party], cseq);
+                if (INVITE.equals(method)) {
+                    call.partyInvite[party] = cseq;
+                }
+            }
+            if (fields.branch != 0 && transaction < 0) {
+                call.addTransaction(key, cseq);
+            }
+        }
+
+        if (fields.toTag != 0 && !call.partial && !call.tagsOverflowed && !call.hasTag(fields.toTag)) {
+            violations.add(Type.UNKNOWN_DIALOG, method + " has To tag " + fields.toTagText()
+                + " which matches no dialog of the call");
+        }
+        call.addTag(fields.fromTag);
+    }
+
+    private void checkResponse(CallState call, Violations violations) {
+        int status = fields.statusCode;
+        String method = fields.cseqMethod;
+        if (fields.branch != 0) {
+            int transaction = call.transaction(transactionKey(method));
+            if (transaction < 0) {
+                if (!call.partial) {
+                    violations.add(Type.UNMATCHED_RESPONSE, status + " response to " + method
+                        + " with branch " + fields.branchText() + " matches no request");
+                }
+            } else {
+                if (call.transactionCSeq[transaction] != fields.cseq) {
+                    violations.add(Type.CSEQ_MISMATCH, status + " response has CSeq " + fields.cseq
+                        + " but the " + method + " it answers has " + call.transactionCSeq[transaction]);
+                }
+                if (status >= 200 && fields.toTag != 0) {
+                    long finalTag = call.transactionFinalTag[transaction];
+                    if (finalTag == 0) {
+                        call.transactionFinalTag[transaction] = fields.toTag;
+                    } else if (finalTag != fields.toTag && !INVITE.equals(method)) {
+                        violations.add(Type.TO_TAG_CHANGED, status + " response to " + method
+                            + " has To tag " + fields.toTagText() + " unlike the earlier final response");
+                    }
+                }
+            }
+        }
+        if (status > 100 && fields.toTag == 0) {
+            violations.add(Type.MISSING_TO_TAG, status + " response to " + method + " has no To tag");
+        }
+        call.addTag(fields.toTag);
+    }
+
+    /**
+     * @return the key of the transaction the current message belongs to, by branch and method
+     */
+    private long transactionKey(String method) {
+        return fields.branch * 31 + method.hashCode();
+    }
+
+    private void evictIdle(long nowNanos) {
+        Iterator<CallState> iterator = calls.values().iterator();
+        while (iterator.hasNext()) {
+            if (nowNanos - iterator.next().lastSeen < idleTimeoutNanos) {
+                return;
+            }
+            iterator.remove();
+            evicted++;
+        }
+    }
+
+    /**
+     * Collects the violations of one message, the list is only created for the first one
+     */
+    private static final class Violations {
+        private List<SequenceViolation> list;
+
+        void add(Type type, String description) {
+            if (list == null) {
+                list = new ArrayList<>(2);
+            }
+            list.add(new SequenceViolation(type, description));
+        }
+    }
+
+    /**
+     * What is known about one Call-ID
+     */
+    private static final class CallState {
+        /** First seen in the middle of its flow, checks that need earlier messages are skipped */
+        final boolean partial;
+        long lastSeen;
+
+        /** From tags of the senders, with their highest CSeq and the CSeq of their last INVITE */
+        final long[] partyTag = new long[MAX_PARTIES];
+        final long[] partyCSeq = new long[MAX_PARTIES];
+        final long[] partyInvite = new long[MAX_PARTIES];
+        int parties;
+
+        /** Tags of all dialogs of the call */
+        final long[] tags = new long[MAX_TAGS];
+        int tagCount;
+        boolean tagsOverflowed;
+
+        /** Ring of the most recent transactions, by key, with their CSeq and the To tag of their final response */
+        final long[] transactionKey = new long[TRANSACTIONS];
+        final long[] transactionCSeq = new long[TRANSACTIONS];
+        final long[] transactionFinalTag = new long[TRANSACTIONS];
+        int transactions;
+        int nextTransaction;
+
+        CallState(boolean partial) {
+            this.partial = partial;
+        }
+
+        /**
+         * @return the index of the sender, added if new, -1 if too many senders are tracked
+         */
+        int party(long tag) {
+            for (int i = 0; i < parties; i++) {
+                if (partyTag[i] == tag) {
+                    return i;
+                }
+            }
+            if (parties == MAX_PARTIES) {
+                return -1;
+            }
+            partyTag[parties] = tag;
+            partyCSeq[parties] = -1;
+            partyInvite[parties] = -1;
+            return parties++;
+        }
+
+        boolean hasTag(long tag) {
+            for (int i = 0; i < tagCount; i++) {
+                if (tags[i] == tag) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void addTag(long tag) {
+            if (tag == 0 || hasTag(tag)) {
+                return;
+            }
+            if (tagCount == MAX_TAGS) {
+                tagsOverflowed = true;
+                return;
+            }
+            tags[tagCount++] = tag;
+        }
+
+        /**
+         * @return the index of the transaction, -1 if it is not known
+         */
+        int transaction(long key) {
+            for (int i = 0; i < transactions; i++) {
+                if (transactionKey[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void addTransaction(long key, long cseq) {
+            int index = nextTransaction;
+            nextTransaction = (nextTransaction + 1) % TRANSACTIONS;
+            transactions = Math.min(transactions + 1, TRANSACTIONS);
+            transactionKey[index] = key;
+            transactionCSeq[index] = cseq;
+            transactionFinalTag[index] = 0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps jobs in a local directory, so finished jobs survive a restart and
+ * results do not take up heap. Each job has a status file, replaced
+ * atomically on every update, and an NDJSON file its results are appended to.
+ *
+ * Reading a page of results scans the result file from its start, which is
+ * fine for the occasional poll but makes reading a large job page by page
+ * quadratic. Clients should prefer streaming the results.
+ */
+public class FileJobStore implements JobStore {
+
+    private static final String STATUS_SUFFIX = ".json";
+    private static final String RESULTS_SUFFIX = ".ndjson";
+    /** Job ids become file names, anything but a generated id is treated as unknown */
+    private static final Pattern ID = Pattern.compile("[0-9a-f-]{1,64}");
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public FileJobStore(Path directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Creating the job directory " + directory + " failed", e);
+        }
+    }
+
+    @Override
+    public void create(JobStatus status) {
+        try {
+            Files.write(resultsFile(status.getId()), new byte[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        update(status);
+    }
+
+    @Override
+    public void update(JobStatus status) {
+        Path file = statusFile(status.getId());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, objectMapper.writeValueAsBytes(status));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void append(JobStatus status, List<ValidationResponse> results) {
+        try (OutputStream out = Files.newOutputStream(resultsFile(status.getId()), StandardOpenOption.APPEND)) {
+            for (ValidationResponse result : results) {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted while running
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        update(status);
+    }
+
+    @Override
+    public Optional<JobStatus> status(String id) {
+        if (!ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(Files.readAllBytes(statusFile(id)), JobStatus.class));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<ValidationResponse> results(String id, int offset, int limit) {
+        if (!ID.matcher(id).matches() || limit <= 0) {
+            return List.of();
+        }
+        List<ValidationResponse> results = new ArrayList<>(limit);
+        try (BufferedReader reader = Files.newBufferedReader(resultsFile(id), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < offset; i++) {
+                if (reader.readLine() == null) {
+                    return results;
+                }
+            }
+            String line;
+            while (results.size() < limit && (line = reader.readLine()) != null) {
+                results.add(objectMapper.readValue(line, ValidationResponse.class));
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    /**
+     * @return the size of the result file
+     */
+    @Override
+    public long size(String id) {
+        if (!ID.matcher(id).matches()) {
+            return 0;
+        }
+        try {
+            return Files.size(resultsFile(id));
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<JobStatus> list() {
+        List<JobStatus> statuses = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + STATUS_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                status(name.substring(0, name.length() - STATUS_SUFFIX.length())).ifPresent(statuses::add);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return statuses;
+    }
+
+    @Override
+    public void delete(String id) {
+        if (!ID.matcher(id).matches()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(statusFile(id));
+            Files.deleteIfExists(resultsFile(id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path statusFile(String id) {
+        return directory.resolve(id + STATUS_SUFFIX);
+    }
+
+    private Path resultsFile(String id) {
+        return directory.resolve(id + RESULTS_SUFFIX);
+    }
+}
@@ -0,0 +1,219 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties.Policy.Rule;
+import com.sipgate.sipvalidator.config.SipValidatorProperties.Policy.Target;
+import com.sipgate.sipvalidator.model.PolicyViolation;
+
+import gov.nist.javax.sip.header.SIPHeader;
+import gov.nist.javax.sip.header.SIPHeaderList;
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.message.SIPRequest;
+import gov.nist.javax.sip.message.SIPResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Header policy rules compiled for evaluation. Rules are indexed by lower
+ * case header name and their patterns compiled once, so checking a message
+ * takes a single pass over its parsed headers with one map lookup each.
+ * Required headers are ticked off in a bit set during that pass and the
+ * missing ones reported after it.
+ *
+ * Instances are immutable and shared by all request threads. A changed
+ * configuration is compiled into a new instance, see HeaderPolicyService.
+ */
+public final class HeaderPolicy {
+
+    /** A policy without rules */
+    public static final HeaderPolicy NONE = new HeaderPolicy(Map.of(), new CompiledRule[0]);
+
+    private final Map<String, HeaderRules> byHeader;
+    private final CompiledRule[] required;
+
+    private HeaderPolicy(Map<String, HeaderRules> byHeader, CompiledRule[] required) {
+        this.byHeader = byHeader;
+        this.required = required;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rule is incomplete, contradicts itself or has an invalid pattern
+     */
+    public static HeaderPolicy compile(List<Rule> rules) {
+        if (rules.isEmpty()) {
+            return NONE;
+        }
+        Map<String, HeaderRules> byHeader = new HashMap<>();
+        List<CompiledRule> required = new ArrayList<>();
+        for (Rule rule : rules) {
+            CompiledRule compiled = CompiledRule.of(rule);
+            HeaderRules headerRules = byHeader.computeIfAbsent(compiled.header.toLowerCase(Locale.ROOT),
+                name -> new HeaderRules());
+            if (rule.isRequired()) {
+                headerRules.required.add(required.size());
+                required.add(compiled);
+            }
+            if (rule.isForbidden()) {
+                headerRules.forbidden.add(compiled);
+            }
+            if (compiled.pattern != null || compiled.min != null || compiled.max != null) {
+                headerRules.values.add(compiled);
+            }
+        }
+        return new HeaderPolicy(byHeader, required.toArray(new CompiledRule[0]));
+    }
+
+    public boolean isEmpty() {
+        return byHeader.isEmpty();
+    }
+
+    /**
+     * @return the rules the message breaks, empty if it keeps all of them
+     */
+    public List<PolicyViolation> evaluate(SIPMessage message) {
+        if (byHeader.isEmpty()) {
+            return List.of();
+        }
+        boolean response = message instanceof SIPResponse;
+        String method = response
+            ? (message.getCSeq() != null ? message.getCSeq().getMethod() : null)
+            : ((SIPRequest) message).getMethod();
+
+        List<PolicyViolation> violations = new ArrayList<>(0);
+        long[] present = new long[(required.length + 63) / 64];
+        for (Iterator<SIPHeader> headers = message.getHeaders(); headers.hasNext(); ) {
+            SIPHeader header = headers.next();
+            HeaderRules rules = byHeader.get(header.getName().toLowerCase(Locale.ROOT));
+            if (rules == null) {
+                continue;
+            }
+            for (int index : rules.required) {
+                present[index >>> 6] |= 1L << index;
+            }
+            for (CompiledRule rule : rules.forbidden) {
+                if (rule.appliesTo(response, method)) {
+                    violations.add(rule.violation(header.getName() + " is not allowed"));
+                }
+            }
+            if (!rules.values.isEmpty()) {
+                if (header instanceof SIPHeaderList<?> list) {
+                    for (SIPHeader value : list) {
+                        checkValue(rules, value.getHeaderValue(), response, method, violations);
+                    }
+                } else {
+                    checkValue(rules, header.getHeaderValue(), response, method, violations);
+                }
+            }
+        }
+        for (int i = 0; i < required.length; i++) {
+            if ((present[i >>> 6] & (1L << i)) == 0 && required[i].appliesTo(response, method)) {
+                violations.add(required[i].violation(required[i].header + " is missing"));
+            }
+        }
+        return violations;
+    }
+
+    private static void checkValue(HeaderRules rules, String value, boolean response, String method,
+                                   List<PolicyViolation> violations) {
+        String trimmed = value != null ? value.trim() : "";
+        for (CompiledRule rule : rules.values) {
+            if (rule.appliesTo(response, method)) {
+                String problem = rule.checkValue(trimmed);
+                if (problem != null) {
+                    violations.add(rule.violation(problem));
+                }
+            }
+        }
+    }
+
+    /**
+     * The rules about one header
+     */
+    private static final class HeaderRules {
+        /** Indexes into the required rules */
+        private final List<Integer> required = new ArrayList<>(1);
+        private final List<CompiledRule> forbidden = new ArrayList<>(1);
+        /** Rules checking values, by range or pattern */
+        private final List<CompiledRule> values = new ArrayList<>(1);
+    }
+
+    /**
+     * A rule with its method set and pattern ready for matching
+     */
+    private record CompiledRule(String name, String header, Target target, Set<String> methods,
+                                Long min, Long max, Pattern pattern) {
+
+        static CompiledRule of(Rule rule) {
+            String header = rule.getHeader() != null ? rule.getHeader().trim() : "";
+            if (header.isEmpty()) {
+                throw new IllegalArgumentException("Policy rule " + rule.getName() + " has no header");
+            }
+            String name = rule.getName() != null && !rule.getName().isBlank() ? rule.getName() : header;
+            if (rule.isRequired() && rule.isForbidden()) {
+                throw new IllegalArgumentException("Policy rule " + name + " both requires and forbids " + header);
+            }
+            if (rule.getMin() != null && rule.getMax() != null && rule.getMin() > rule.getMax()) {
+                throw new IllegalArgumentException("Policy rule " + name + " has min greater than max");
+            }
+            if (!rule.isRequired() && !rule.isForbidden() && rule.getMin() == null && rule.getMax() == null
+                    && rule.getPattern() == null) {
+                throw new IllegalArgumentException("Policy rule " + name + " checks nothing");
+            }
+            Pattern pattern = null;
+            if (rule.getPattern() != null) {
+                try {
+                    pattern = Pattern.compile(rule.getPattern());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Policy rule " + name + " has an invalid pattern: "
+                        + e.getDescription(), e);
+                }
+            }
+            Set<String> methods = rule.getMethods() == null || rule.getMethods().isEmpty() ? null
+                : Set.copyOf(rule.getMethods().stream().map(method -> method.trim().toUpperCase(Locale.ROOT)).toList());
+            Target target = rule.getTarget() != null ? rule.getTarget() : Target.ALL;
+            return new CompiledRule(name, header, target, methods, rule.getMin(), rule.getMax(), pattern);
+        }
+
+        boolean appliesTo(boolean response, String method) {
+            if (target == (response ? Target.REQUESTS : Target.RESPONSES)) {
+                return false;
+            }
+            return methods == null || (method != null && methods.contains(method));
+        }
+
+        /**
+         * @return what is wrong with the value, null if it is fine
+         */
+        String checkValue(String value) {
+            if (min != null || max != null) {
+                long number;
+                try {
+                    number = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return header + " value " + value + " is not a number";
+                }
+                if (min != null && number < min) {
+                    return header + " value " + number + " is below the minimum of " + min;
+                }
+                if (max != null && number > max) {
+                    return header + " value " + number + " is above the maximum of " + max;
+                }
+            }
+            if (pattern != null && !pattern.matcher(value).matches()) {
+                return header + " value " + value + " does not match " + pattern.pattern();
+            }
+            return null;
+        }
+
+        PolicyViolation violation(String description) {
+            return new PolicyViolation(name, header, description);
+        }
+    }
+}
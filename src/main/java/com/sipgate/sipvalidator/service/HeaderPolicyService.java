@@ -0,0 +1,157 @@
+package com.sipgate.sipvalidator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.config.SipValidatorProperties.Policy.Rule;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the compiled header policy. It consists of the rules under
+ * "sipvalidator.policy.rules" and those in "sipvalidator.policy.file", in the
+ * same format. The file is checked for changes every reload interval.
+ *
+ * A changed file is compiled on the reload thread and then swapped in with a
+ * single reference update. Validations read the reference once per message,
+ * so they never wait for a reload and every message is checked against one
+ * version of the rules. Invalid rules fail the startup, but a reload with
+ * invalid rules is logged and the previous policy stays in place.
+ */
+@Component
+public class HeaderPolicyService {
+
+    private static final Logger log = LoggerFactory.getLogger(HeaderPolicyService.class);
+
+    private final List<Rule> configuredRules;
+    private final Path file;
+    private final AtomicReference<HeaderPolicy> policy = new AtomicReference<>();
+    private final ScheduledExecutorService reloader;
+    /** Modification time of the file when it was last read, null if it did not exist */
+    private FileTime readVersion;
+
+    public HeaderPolicyService(SipValidatorProperties properties) {
+        SipValidatorProperties.Policy config = properties.getPolicy();
+        this.configuredRules = List.copyOf(config.getRules());
+        this.file = config.getFile() != null && !config.getFile().isBlank() ? Path.of(config.getFile()) : null;
+
+        FileTime version = modificationTime();
+        List<Rule> rules = rules();
+        policy.set(HeaderPolicy.compile(rules));
+        readVersion = version;
+        log.info("Header policy with {} rules loaded", rules.size());
+
+        if (file == null) {
+            this.reloader = null;
+            return;
+        }
+        this.reloader = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "header-policy-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getReloadInterval().toMillis();
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the policy to check a message against, never null
+     */
+    public HeaderPolicy current() {
+        return policy.get();
+    }
+
+    /**
+     * Reads the rule file again if it changed since it was last read. A file
+     * with invalid rules is not read again until it changes once more.
+     * @return true if a new policy is in place
+     */
+    public synchronized boolean reloadIfChanged() {
+        try {
+            FileTime version = modificationTime();
+            if (version == null ? readVersion == null : version.equals(readVersion)) {
+                return false;
+            }
+            readVersion = version;
+            List<Rule> rules = rules();
+            policy.set(HeaderPolicy.compile(rules));
+            log.info("Header policy reloaded from {} with {} rules", file, rules.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Reloading the header policy from {} failed, keeping the previous rules: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    private List<Rule> rules() {
+        List<Rule> rules = new ArrayList<>(configuredRules);
+        if (file != null && Files.exists(file)) {
+            rules.addAll(readRules(file));
+        }
+        return rules;
+    }
+
+    /**
+     * Binds the "rules" of a YAML or properties file like the application configuration
+     */
+    static List<Rule> readRules(Path file) {
+        Properties properties;
+        String name = file.getFileName().toString();
+        if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+            YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+            yaml.setResources(new FileSystemResource(file));
+            properties = yaml.getObject();
+        } else {
+            properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Reading " + file + " failed", e);
+            }
+        }
+        Binder binder = new Binder(new MapConfigurationPropertySource(properties));
+        return binder.bind("rules", Bindable.listOf(Rule.class)).orElse(List.of());
+    }
+
+    private FileTime modificationTime() {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
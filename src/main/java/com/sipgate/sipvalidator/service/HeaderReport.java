@@ -0,0 +1,243 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.HeaderInfo;
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import gov.nist.javax.sip.header.RequestLine;
+import gov.nist.javax.sip.header.StatusLine;
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.parser.ParseExceptionListener;
+
+import javax.sip.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-header analysis of a message, gathered during the one parse that
+ * validates it.
+ *
+ * The JAIN-SIP parser hands every header that fails to parse to its
+ * ParseExceptionListener and carries on with the next one, so a single pass
+ * yields both the typed headers of the message and the errors of the broken
+ * ones. Afterwards the header section is split into lines once more, without
+ * parsing, to report every header in message order with its line number,
+ * concrete header class and, for broken headers, the error and its column.
+ *
+ * Instances collect the errors of one parse and are not thread-safe.
+ */
+final class HeaderReport implements ParseExceptionListener {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    /** Compact forms of header names, the parser accepts them but SIPMessage.getHeader does not */
+    private static final Map<String, String> COMPACT_FORMS = Map.ofEntries(
+        Map.entry("a", "Accept-Contact"),
+        Map.entry("b", "Referred-By"),
+        Map.entry("c", "Content-Type"),
+        Map.entry("d", "Request-Disposition"),
+        Map.entry("e", "Content-Encoding"),
+        Map.entry("f", "From"),
+        Map.entry("i", "Call-ID"),
+        Map.entry("j", "Reject-Contact"),
+        Map.entry("k", "Supported"),
+        Map.entry("l", "Content-Length"),
+        Map.entry("m", "Contact"),
+        Map.entry("o", "Event"),
+        Map.entry("r", "Refer-To"),
+        Map.entry("s", "Subject"),
+        Map.entry("t", "To"),
+        Map.entry("u", "Allow-Events"),
+        Map.entry("v", "Via"),
+        Map.entry("x", "Session-Expires"),
+        Map.entry("y", "Identity"));
+
+    private final List<Failure> failures = new ArrayList<>();
+    private Failure startLineFailure;
+
+    @Override
+    public void handleException(ParseException e, SIPMessage message, @SuppressWarnings("rawtypes") Class headerClass,
+                                String headerText, String messageText) {
+        Failure failure = new Failure(headerText, headerClass, e);
+        if (headerClass == RequestLine.class || headerClass == StatusLine.class) {
+            startLineFailure = failure;
+        } else {
+            failures.add(failure);
+        }
+    }
+
+    /**
+     * @return the error of the request or status line, null if it parsed
+     */
+    ParseException getStartLineError() {
+        return startLineFailure != null ? startLineFailure.error() : null;
+    }
+
+    /**
+     * @return the error of the first header that failed to parse, null if all parsed
+     */
+    ParseException getFirstHeaderError() {
+        return failures.isEmpty() ? null : failures.get(0).error();
+    }
+
+    /**
+     * Adds one HeaderInfo per header line to the result and an error for the
+     * start line and every header that failed to parse
+     * @param message The normalized message that was parsed
+     * @param parsed The parsed message, holding the headers that parsed
+     */
+    void describe(byte[] message, SIPMessage parsed, ValidationResult result) {
+        if (startLineFailure != null) {
+            result.addError(ResultCode.INVALID_START_LINE, "line 1, column " + column(startLineFailure) + ": "
+                + startLineFailure.error().getMessage());
+        }
+        int nextFailure = 0;
+        for (HeaderLine line : split(message)) {
+            String name = line.name();
+            RfcReference rfcRef = line.rfcReference();
+            HeaderInfo headerInfo;
+            if (nextFailure < failures.size() && failures.get(nextFailure).text().equals(line.text())) {
+                Failure failure = failures.get(nextFailure++);
+                String type = failure.headerClass() != null ? failure.headerClass().getSimpleName() : ValidationMetrics.TYPE_UNKNOWN;
+                headerInfo = new HeaderInfo(name, canonicalName(name), type, rfcRef);
+                headerInfo.setValid(false);
+                headerInfo.setError(failure.error().getMessage());
+                headerInfo.setErrorColumn(column(failure));
+                result.addError(ResultCode.INVALID_HEADER, name + " header at line " + line.number() + ", column "
+                    + column(failure) + ": " + failure.error().getMessage());
+            } else {
+                Header header = parsed.getHeader(canonicalName(name));
+                headerInfo = new HeaderInfo(
+                    name,
+                    header != null ? header.getName() : name,
+                    header != null ? header.getClass().getSimpleName() : ValidationMetrics.TYPE_UNKNOWN,
+                    rfcRef);
+                headerInfo.setValid(true);
+            }
+            headerInfo.setLine(line.number());
+            result.addHeader(headerInfo);
+        }
+    }
+
+    private static String canonicalName(String name) {
+        if (name.length() == 1) {
+            String fullName = COMPACT_FORMS.get(name.toLowerCase());
+            if (fullName != null) {
+                return fullName;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return 1-based column of the error within the unfolded header
+     */
+    private static int column(Failure failure) {
+        return Math.max(0, failure.error().getErrorOffset()) + 1;
+    }
+
+    /**
+     * Splits the header section into headers, joining folded lines the same
+     * way the parser does so the text can be matched with reported failures
+     */
+    private static List<HeaderLine> split(byte[] message) {
+        List<HeaderLine> lines = new ArrayList<>();
+        int position = 0;
+        int lineNumber = 0;
+        boolean startLine = true;
+        StringBuilder header = null;
+        int headerLine = 0;
+        RfcReference headerReference = null;
+        while (position < message.length) {
+            int end = position;
+            while (end < message.length && message[end] != LF) {
+                end++;
+            }
+            int next = end + 1;
+            if (end > position && message[end - 1] == CR) {
+                end--;
+            }
+            lineNumber++;
+            if (end == position) {
+                // Empty lines before the start line are skipped by the parser, the first one after it ends the headers
+                if (!startLine) {
+                    break;
+                }
+            } else if (startLine) {
+                startLine = false;
+            } else if ((message[position] == ' ' || message[position] == '\t') && header != null) {
+                header.append(trimEndOfLine(message, position, end).substring(1));
+            } else {
+                if (header != null) {
+                    lines.add(new HeaderLine(headerLine, header.toString(), headerReference));
+                }
+                header = new StringBuilder(trimEndOfLine(message, position, end));
+                headerLine = lineNumber;
+                headerReference = rfcReference(message, position, end);
+            }
+            position = next;
+        }
+        if (header != null) {
+            lines.add(new HeaderLine(headerLine, header.toString(), headerReference));
+        }
+        return lines;
+    }
+
+    /**
+     * Looks up the name of the header starting at the given line in place,
+     * without decoding it. Names are US-ASCII and end at the colon.
+     */
+    private static RfcReference rfcReference(byte[] message, int start, int end) {
+        int colon = start;
+        while (colon < end && message[colon] != ':') {
+            colon++;
+        }
+        int nameEnd = colon;
+        while (nameEnd > start && (message[nameEnd - 1] & 0xff) <= ' ') {
+            nameEnd--;
+        }
+        while (start < nameEnd && (message[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return SipHeaderRfcMapping.getRfcReference(message, start, nameEnd - start);
+    }
+
+    /**
+     * Decodes a line without trailing whitespace, like StringMsgParser.trimEndOfLine
+     */
+    private static String trimEndOfLine(byte[] message, int start, int end) {
+        while (end > start && (message[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return new String(message, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A header that the parser could not parse
+     * @param text The header as the parser saw it, folded lines joined
+     * @param headerClass Class the header would have been parsed into, null if not even its name could be read
+     * @param error The parse error
+     */
+    private record Failure(String text, Class<?> headerClass, ParseException error) {
+    }
+
+    /**
+     * A header of the message
+     * @param number 1-based line number of its first line
+     * @param text The header with folded lines joined
+     * @param rfcReference Reference of the header name, null if it has none
+     */
+    private record HeaderLine(int number, String text, RfcReference rfcReference) {
+
+        String name() {
+            int colon = text.indexOf(':');
+            return (colon >= 0 ? text.substring(0, colon) : text).strip();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps jobs on the heap, they are lost on restart. Statuses are stored as
+ * copies, so the caller may keep changing its own instance.
+ *
+ * Responses built from a ValidationResult are kept as that result, which
+ * holds codes and header names only, and every read gets new responses
+ * rendered from it, so serializing a page does not make the stored results
+ * grow.
+ */
+public class InMemoryJobStore implements JobStore {
+
+    /** Rough size of a response without result, e.g. for an entry without message, in bytes */
+    private static final int RESPONSE_WEIGHT = 256;
+
+    private final ConcurrentMap<String, StoredJob> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public void create(JobStatus status) {
+        jobs.put(status.getId(), new StoredJob(status.copy()));
+    }
+
+    @Override
+    public void update(JobStatus status) {
+        StoredJob job = jobs.get(status.getId());
+        if (job != null) {
+            job.status = status.copy();
+        }
+    }
+
+    @Override
+    public void append(JobStatus status, List<ValidationResponse> results) {
+        StoredJob job = jobs.get(status.getId());
+        if (job != null) {
+            synchronized (job.results) {
+                for (ValidationResponse response : results) {
+                    StoredResult stored = StoredResult.of(response);
+                    job.results.add(stored);
+                    job.size += stored.weight();
+                }
+            }
+            job.status = status.copy();
+        }
+    }
+
+    @Override
+    public Optional<JobStatus> status(String id) {
+        StoredJob job = jobs.get(id);
+        return job != null ? Optional.of(job.status.copy()) : Optional.empty();
+    }
+
+    @Override
+    public List<ValidationResponse> results(String id, int offset, int limit) {
+        StoredJob job = jobs.get(id);
+        if (job == null) {
+            return List.of();
+        }
+        synchronized (job.results) {
+            int from = Math.min(offset, job.results.size());
+            int to = Math.min(from + limit, job.results.size());
+            List<ValidationResponse> results = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                results.add(job.results.get(i).response());
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public long size(String id) {
+        StoredJob job = jobs.get(id);
+        if (job == null) {
+            return 0;
+        }
+        synchronized (job.results) {
+            return job.size;
+        }
+    }
+
+    @Override
+    public List<JobStatus> list() {
+        return jobs.values().stream().map(job -> job.status.copy()).toList();
+    }
+
+    @Override
+    public void delete(String id) {
+        jobs.remove(id);
+    }
+
+    private static final class StoredJob {
+        private volatile JobStatus status;
+        private final List<StoredResult> results = new ArrayList<>();
+        /** Sum of the weights of the results, guarded by results */
+        private long size;
+
+        StoredJob(JobStatus status) {
+            this.status = status;
+        }
+    }
+
+    /**
+     * A stored response, as the result it was built from if there is one
+     * @param id The id of the batch entry
+     * @param result The result, null if the response was built otherwise
+     * @param other The response itself if it was not built from a result, otherwise null
+     */
+    private record StoredResult(String id, ValidationResult result, ValidationResponse other) {
+
+        static StoredResult of(ValidationResponse response) {
+            ValidationResult result = response.getResult();
+            return result != null && response.getSequenceViolations() == null
+                ? new StoredResult(response.getId(), result, null)
+                : new StoredResult(null, null, response);
+        }
+
+        ValidationResponse response() {
+            if (other != null) {
+                return other;
+            }
+            ValidationResponse rendered = ValidationResponse.of(result);
+            rendered.setId(id);
+            return rendered;
+        }
+
+        long weight() {
+            return result != null ? ValidationCache.weighResult(result) : RESPONSE_WEIGHT;
+        }
+    }
+}
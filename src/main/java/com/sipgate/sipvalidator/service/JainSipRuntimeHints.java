@@ -0,0 +1,64 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Reflection metadata the JAIN-SIP parser needs in a native image.
+ *
+ * ParserFactory creates the parser of each header through its String
+ * constructor, header lists create their elements with the no-arg
+ * constructor, and equals and match of headers, addresses and the core
+ * objects walk their declared fields. The classes are found by scanning the
+ * NIST packages during AOT processing, so the hints follow the JAIN-SIP
+ * version on the classpath instead of a list kept in this file.
+ */
+class JainSipRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final String[] PARSER_CLASSES = {
+        "gov/nist/javax/sip/parser/**/*Parser.class"
+    };
+
+    private static final String[] OBJECT_CLASSES = {
+        "gov/nist/javax/sip/header/**/*.class",
+        "gov/nist/javax/sip/address/*.class",
+        "gov/nist/core/*.class"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        MetadataReaderFactory readerFactory = new CachingMetadataReaderFactory(resolver);
+        for (String pattern : PARSER_CLASSES) {
+            register(hints, resolver, readerFactory, pattern, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        for (String pattern : OBJECT_CLASSES) {
+            register(hints, resolver, readerFactory, pattern,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.ACCESS_DECLARED_FIELDS);
+        }
+    }
+
+    private static void register(RuntimeHints hints, PathMatchingResourcePatternResolver resolver,
+                                 MetadataReaderFactory readerFactory, String pattern, MemberCategory... categories) {
+        try {
+            for (Resource resource : resolver.getResources("classpath*:" + pattern)) {
+                ClassMetadata metadata = readerFactory.getMetadataReader(resource).getClassMetadata();
+                if (metadata.isConcrete() && !metadata.getClassName().contains("$")) {
+                    hints.reflection().registerType(TypeReference.of(metadata.getClassName()), categories);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Scanning " + pattern + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the status and the results of validation jobs. Each job is written by
+ * a single thread at a time, while any number of threads read it. Results are
+ * stored before the status that counts them, so a reader that fetches the
+ * status first can read as many results as it reports completed.
+ */
+public interface JobStore {
+
+    /**
+     * Adds a new job without results
+     */
+    void create(JobStatus status);
+
+    /**
+     * Replaces the status of a job
+     */
+    void update(JobStatus status);
+
+    /**
+     * Appends results of a job and then replaces its status
+     * @param status The status counting the appended results as completed
+     * @param results Results following the ones stored so far
+     */
+    void append(JobStatus status, List<ValidationResponse> results);
+
+    /**
+     * @return the status of the job, empty if there is no such job
+     */
+    Optional<JobStatus> status(String id);
+
+    /**
+     * @param offset Index of the first result
+     * @param limit Maximum number of results, no more than were reported completed after offset
+     * @return the results in submission order, empty if there is no such job
+     */
+    List<ValidationResponse> results(String id, int offset, int limit);
+
+    /**
+     * @return the rough size of the stored results of the job in bytes, 0 if there is no such job
+     */
+    long size(String id);
+
+    /**
+     * @return the status of every stored job
+     */
+    List<JobStatus> list();
+
+    /**
+     * Removes a job and its results, nothing happens if there is no such job
+     */
+    void delete(String id);
+}
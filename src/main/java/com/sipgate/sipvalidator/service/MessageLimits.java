@@ -0,0 +1,120 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.LimitViolation;
+
+/**
+ * Checks input against the configured size limits before anything is copied
+ * or parsed. Messages are checked in a single pass over their bytes that stops
+ * at the first exceeded limit.
+ */
+@Component
+public class MessageLimits {
+
+    public static final String REQUEST_SIZE = "request-size";
+    public static final String MESSAGE_SIZE = "message-size";
+    public static final String HEADER_COUNT = "header-count";
+    public static final String LINE_LENGTH = "line-length";
+    public static final String BODY_SIZE = "body-size";
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final int maxMessageSize;
+    private final int maxHeaderCount;
+    private final int maxLineLength;
+    private final int maxBodySize;
+
+    @Autowired
+    public MessageLimits(SipValidatorProperties properties) {
+        this(properties.getLimits());
+    }
+
+    private MessageLimits(SipValidatorProperties.Limits limits) {
+        this.maxMessageSize = limits.getMaxMessageSize();
+        this.maxHeaderCount = limits.getMaxHeaderCount();
+        this.maxLineLength = limits.getMaxLineLength();
+        this.maxBodySize = limits.getMaxBodySize();
+    }
+
+    /**
+     * @return limits with the default values of the configuration properties
+     */
+    public static MessageLimits defaults() {
+        return new MessageLimits(new SipValidatorProperties.Limits());
+    }
+
+    /**
+     * @return the largest message accepted, in bytes
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * Rejects message text that cannot fit the size limit, before it is encoded.
+     * A UTF-8 encoding has at least as many bytes as the text has chars.
+     * @return the violated limit, null if the text may be within the limits
+     */
+    public LimitViolation checkMessageText(String messageText) {
+        if (messageText.length() > maxMessageSize) {
+            return new LimitViolation(MESSAGE_SIZE, maxMessageSize, messageText.length());
+        }
+        return null;
+    }
+
+    /**
+     * Rejects a single header that is longer than a message line may be
+     * @return the violated limit, null if the header is within the limits
+     */
+    public LimitViolation checkHeaderText(String headerText) {
+        if (headerText.length() > maxLineLength) {
+            return new LimitViolation(LINE_LENGTH, maxLineLength, headerText.length());
+        }
+        return null;
+    }
+
+    /**
+     * Checks the size, the length of every line, the number of headers and
+     * the size of the body of a message
+     * @param message The message as received, line endings not yet normalized
+     * @return the first violated limit, null if the message is within all limits
+     */
+    public LimitViolation checkMessage(byte[] message) {
+        if (message.length > maxMessageSize) {
+            return new LimitViolation(MESSAGE_SIZE, maxMessageSize, message.length);
+        }
+        int lineStart = 0;
+        int headers = 0;
+        boolean startLine = true;
+        for (int i = 0; i < message.length; i++) {
+            if (message[i] != LF) {
+                continue;
+            }
+            int lineLength = (i > lineStart && message[i - 1] == CR ? i - 1 : i) - lineStart;
+            if (lineLength > maxLineLength) {
+                return new LimitViolation(LINE_LENGTH, maxLineLength, lineLength);
+            }
+            if (lineLength == 0) {
+                // Empty lines before the start line are ignored, the first one after it ends the headers
+                if (!startLine) {
+                    int bodySize = message.length - i - 1;
+                    return bodySize > maxBodySize ? new LimitViolation(BODY_SIZE, maxBodySize, bodySize) : null;
+                }
+            } else if (startLine) {
+                startLine = false;
+            } else if (message[lineStart] != ' ' && message[lineStart] != '\t' && ++headers > maxHeaderCount) {
+                return new LimitViolation(HEADER_COUNT, maxHeaderCount, headers);
+            }
+            lineStart = i + 1;
+        }
+        int lastLineLength = message.length - lineStart;
+        if (lastLineLength > maxLineLength) {
+            return new LimitViolation(LINE_LENGTH, maxLineLength, lastLineLength);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sipgate.sipvalidator.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Runs a task for every index of a range on a fork/join pool, splitting the
+ * range in halves until a part is small enough to run on one thread. Shared
+ * by the batch validation and the corpus command.
+ */
+public final class ParallelRange extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of indexes a single task handles before it stops splitting */
+    static final int SPLIT_THRESHOLD = 4;
+
+    /** Tasks are never serialized, RecursiveAction is Serializable only by inheritance */
+    private final transient IntConsumer task;
+    private final int from;
+    private final int to;
+
+    private ParallelRange(IntConsumer task, int from, int to) {
+        this.task = task;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Runs the task for the indexes 0 to size - 1 and waits until all have
+     * run. Ranges too small to split run on the calling thread.
+     */
+    public static void forEach(ForkJoinPool pool, int size, IntConsumer task) {
+        if (size <= SPLIT_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                task.accept(i);
+            }
+        } else {
+            pool.invoke(new ParallelRange(task, 0, size));
+        }
+    }
+
+    /**
+     * @return the results of the function for the indexes 0 to size - 1, in index order
+     */
+    public static <T> List<T> map(ForkJoinPool pool, int size, IntFunction<T> function) {
+        @SuppressWarnings("unchecked")
+        T[] results = (T[]) new Object[size];
+        forEach(pool, size, i -> results[i] = function.apply(i));
+        return Arrays.asList(results);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SPLIT_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParallelRange(task, from, middle),
+                  new ParallelRange(task, middle, to));
+    }
+}
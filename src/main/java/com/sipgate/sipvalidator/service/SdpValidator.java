@@ -0,0 +1,555 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks SDP bodies (RFC 4566, RTP payload types per RFC 3551) for the
+ * problems that break media setup:
+ * <ul>
+ * <li>codecs: RTP formats that are no payload type, dynamic payload types
+ *     without rtpmap, rtpmap and fmtp for payload types the media description
+ *     does not offer, static payload types mapped to another encoding and,
+ *     if a codec list is configured, media descriptions without any of them</li>
+ * <li>direction: more than one of sendrecv, sendonly, recvonly and inactive
+ *     at session level or in one media description</li>
+ * <li>address: connection lines that are not IN IP4 or IN IP6 with an address
+ *     of that type, and active media descriptions without connection address</li>
+ * </ul>
+ *
+ * The body is read in one pass over its bytes, in place. Only the v=, m=, c=
+ * and a= lines are looked at, and the state of a media description is kept in
+ * bit sets of its payload types, so checking a body takes a single small
+ * state object however many media descriptions it has. Strings are only
+ * built for the problems.
+ *
+ * Instances are immutable and shared by all request threads.
+ */
+public final class SdpValidator {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final int MAX_PAYLOAD_TYPE = 127;
+    private static final int FIRST_DYNAMIC_PAYLOAD_TYPE = 96;
+
+    /** Encodings of the static RTP payload types, RFC 3551 section 6 */
+    private static final String[] STATIC_ENCODINGS = new String[35];
+    /** The same in upper case, for comparing with rtpmap lines */
+    private static final byte[][] STATIC_NAMES = new byte[STATIC_ENCODINGS.length][];
+
+    static {
+        STATIC_ENCODINGS[0] = "PCMU";
+        STATIC_ENCODINGS[3] = "GSM";
+        STATIC_ENCODINGS[4] = "G723";
+        STATIC_ENCODINGS[5] = "DVI4";
+        STATIC_ENCODINGS[6] = "DVI4";
+        STATIC_ENCODINGS[7] = "LPC";
+        STATIC_ENCODINGS[8] = "PCMA";
+        STATIC_ENCODINGS[9] = "G722";
+        STATIC_ENCODINGS[10] = "L16";
+        STATIC_ENCODINGS[11] = "L16";
+        STATIC_ENCODINGS[12] = "QCELP";
+        STATIC_ENCODINGS[13] = "CN";
+        STATIC_ENCODINGS[14] = "MPA";
+        STATIC_ENCODINGS[15] = "G728";
+        STATIC_ENCODINGS[16] = "DVI4";
+        STATIC_ENCODINGS[17] = "DVI4";
+        STATIC_ENCODINGS[18] = "G729";
+        STATIC_ENCODINGS[25] = "CelB";
+        STATIC_ENCODINGS[26] = "JPEG";
+        STATIC_ENCODINGS[28] = "nv";
+        STATIC_ENCODINGS[31] = "H261";
+        STATIC_ENCODINGS[32] = "MPV";
+        STATIC_ENCODINGS[33] = "MP2T";
+        STATIC_ENCODINGS[34] = "H263";
+        for (int type = 0; type < STATIC_ENCODINGS.length; type++) {
+            if (STATIC_ENCODINGS[type] != null) {
+                STATIC_NAMES[type] = ascii(STATIC_ENCODINGS[type].toUpperCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private static final byte[] V0 = ascii("0");
+    private static final byte[] RTPMAP = ascii("rtpmap:");
+    private static final byte[] FMTP = ascii("fmtp:");
+    private static final byte[] RTP = ascii("RTP/");
+    private static final byte[] IN = ascii("IN");
+    private static final byte[] IP4 = ascii("IP4");
+    private static final byte[] IP6 = ascii("IP6");
+    private static final byte[][] DIRECTIONS = {ascii("sendrecv"), ascii("sendonly"), ascii("recvonly"), ascii("inactive")};
+    private static final byte[] DOUBLE_COLON = ascii("::");
+
+    /** Upper case names of the allowed encodings, empty if any is allowed */
+    private final byte[][] codecs;
+    /** Static payload types whose encoding is allowed */
+    private final long[] staticAllowed = new long[2];
+
+    /**
+     * @param codecs Names of the encodings media descriptions must offer at least one of,
+     *               e.g. PCMA or opus, case-insensitive. Empty to allow any.
+     */
+    public SdpValidator(List<String> codecs) {
+        this.codecs = new byte[codecs.size()][];
+        for (int i = 0; i < codecs.size(); i++) {
+            this.codecs[i] = ascii(codecs.get(i).trim().toUpperCase(Locale.ROOT));
+        }
+        for (int type = 0; type < STATIC_NAMES.length; type++) {
+            if (STATIC_NAMES[type] != null) {
+                byte[] name = STATIC_NAMES[type];
+                if (isAllowed(name, 0, name.length)) {
+                    staticAllowed[type >>> 6] |= 1L << type;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks an SDP body and adds an error to the result for every problem
+     * @param body Array holding the body, it is not modified
+     * @param offset Start of the body in the array
+     * @param length Length of the body
+     * @return the number of media descriptions
+     */
+    public int validate(byte[] body, int offset, int length, ValidationResult result) {
+        Parse parse = new Parse(body, result);
+        int end = offset + length;
+        int position = offset;
+        int lineNumber = 0;
+        while (position < end) {
+            int lineEnd = position;
+            while (lineEnd < end && body[lineEnd] != LF) {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > position && body[lineEnd - 1] == CR) {
+                lineEnd--;
+            }
+            lineNumber++;
+            if (lineEnd > position) {
+                parse.line(lineNumber, position, lineEnd);
+            }
+            position = next;
+        }
+        parse.finish();
+        return parse.mediaCount;
+    }
+
+    private boolean isAllowed(byte[] buffer, int start, int end) {
+        if (codecs.length == 0) {
+            return true;
+        }
+        for (byte[] codec : codecs) {
+            if (codec.length == end - start && equalsIgnoreCase(buffer, start, codec)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The state of one body while it is read
+     */
+    private final class Parse {
+        private final byte[] body;
+        private final ValidationResult result;
+
+        private boolean started;
+        private int mediaCount;
+        private boolean sessionConnection;
+        private boolean sessionDirection;
+
+        /** Line of the current m=, 0 at session level */
+        private int mediaLine;
+        private boolean mediaActive;
+        private boolean mediaRtp;
+        private boolean mediaConnection;
+        private boolean mediaDirection;
+        /** Payload types offered on the m= line */
+        private long formats0, formats1;
+        /** Payload types with an rtpmap */
+        private long mapped0, mapped1;
+        /** Payload types mapped to an allowed encoding */
+        private long allowed0, allowed1;
+
+        Parse(byte[] body, ValidationResult result) {
+            this.body = body;
+            this.result = result;
+        }
+
+        void line(int number, int start, int end) {
+            if (end - start < 2 || body[start + 1] != '=' || body[start] < 'a' || body[start] > 'z') {
+                started = true;
+                problem(ResultCode.SDP_SYNTAX, number, "not a <type>=<value> line: " + text(start, end));
+                return;
+            }
+            byte type = body[start];
+            if (!started) {
+                started = true;
+                if (type != 'v' || !equals(start + 2, end, V0)) {
+                    problem(ResultCode.SDP_SYNTAX, number, "the first line must be v=0");
+                }
+                return;
+            }
+            switch (type) {
+                case 'm' -> media(number, start + 2, end);
+                case 'c' -> connection(number, start + 2, end);
+                case 'a' -> attribute(number, start + 2, end);
+                default -> {
+                    // Other lines do not affect media setup
+                }
+            }
+        }
+
+        void finish() {
+            if (!started) {
+                problem(ResultCode.SDP_SYNTAX, 1, "the body is empty");
+                return;
+            }
+            finishMedia();
+        }
+
+        private void media(int number, int start, int end) {
+            finishMedia();
+            mediaCount++;
+            mediaLine = number;
+            mediaConnection = false;
+            mediaDirection = false;
+            formats0 = formats1 = mapped0 = mapped1 = allowed0 = allowed1 = 0;
+
+            // <media> <port>[/<number of ports>] <proto> <fmt> ...
+            int mediaEnd = tokenEnd(start, end);
+            int portStart = skipSpaces(mediaEnd, end);
+            int portEnd = tokenEnd(portStart, end);
+            int protoStart = skipSpaces(portEnd, end);
+            int protoEnd = tokenEnd(protoStart, end);
+            int position = skipSpaces(protoEnd, end);
+            if (mediaEnd == start || protoEnd == protoStart || position == end) {
+                problem(ResultCode.SDP_SYNTAX, number, "a media description needs media, port, protocol and formats");
+                mediaActive = false;
+                mediaRtp = false;
+                return;
+            }
+            int slash = indexOf(portStart, portEnd, (byte) '/');
+            long port = number(portStart, slash >= 0 ? slash : portEnd);
+            if (port < 0 || port > 65535) {
+                problem(ResultCode.SDP_ADDRESS, number, "invalid port " + text(portStart, portEnd));
+            }
+            mediaActive = port != 0;
+            mediaRtp = indexOf(protoStart, protoEnd, RTP) >= 0;
+
+            while (position < end) {
+                int formatEnd = tokenEnd(position, end);
+                if (mediaRtp) {
+                    long payloadType = number(position, formatEnd);
+                    if (payloadType < 0 || payloadType > MAX_PAYLOAD_TYPE) {
+                        problem(ResultCode.SDP_CODEC, number, "format " + text(position, formatEnd)
+                            + " is not an RTP payload type");
+                    } else if (payloadType < 64) {
+                        formats0 |= 1L << payloadType;
+                    } else {
+                        formats1 |= 1L << payloadType;
+                    }
+                }
+                position = skipSpaces(formatEnd, end);
+            }
+        }
+
+        private void finishMedia() {
+            if (mediaLine == 0) {
+                return;
+            }
+            if (mediaRtp) {
+                // Dynamic payload types are all in the upper word
+                long unmapped = formats1 & ~mapped1 & (-1L << (FIRST_DYNAMIC_PAYLOAD_TYPE - 64));
+                for (long bits = unmapped; bits != 0; bits &= bits - 1) {
+                    problem(ResultCode.SDP_CODEC, mediaLine, "dynamic payload type "
+                        + (64 + Long.numberOfTrailingZeros(bits)) + " has no rtpmap");
+                }
+                if (mediaActive && codecs.length > 0) {
+                    long usable0 = formats0 & (allowed0 | (staticAllowed[0] & ~mapped0));
+                    long usable1 = formats1 & (allowed1 | (staticAllowed[1] & ~mapped1));
+                    if (usable0 == 0 && usable1 == 0) {
+                        problem(ResultCode.SDP_CODEC, mediaLine, "none of the formats is an allowed codec");
+                    }
+                }
+            }
+            if (mediaActive && !mediaConnection && !sessionConnection) {
+                problem(ResultCode.SDP_ADDRESS, mediaLine, "media description without connection address");
+            }
+        }
+
+        private void connection(int number, int start, int end) {
+            if (mediaLine == 0) {
+                sessionConnection = true;
+            } else {
+                mediaConnection = true;
+            }
+            // <nettype> <addrtype> <connection-address>
+            int netEnd = tokenEnd(start, end);
+            int typeStart = skipSpaces(netEnd, end);
+            int typeEnd = tokenEnd(typeStart, end);
+            int addressStart = skipSpaces(typeEnd, end);
+            int addressEnd = tokenEnd(addressStart, end);
+            if (addressStart == addressEnd || skipSpaces(addressEnd, end) != end) {
+                problem(ResultCode.SDP_ADDRESS, number, "a connection needs network type, address type and address: "
+                    + text(start, end));
+                return;
+            }
+            if (!equals(start, netEnd, IN)) {
+                problem(ResultCode.SDP_ADDRESS, number, "network type " + text(start, netEnd) + " is not IN");
+                return;
+            }
+            // The TTL and number of addresses of multicast connections follow a slash
+            int slash = indexOf(addressStart, addressEnd, (byte) '/');
+            int hostEnd = slash >= 0 ? slash : addressEnd;
+            if (equals(typeStart, typeEnd, IP4)) {
+                if (!isIp4OrHostName(addressStart, hostEnd)) {
+                    problem(ResultCode.SDP_ADDRESS, number, text(addressStart, hostEnd) + " is no IP4 address");
+                }
+            } else if (equals(typeStart, typeEnd, IP6)) {
+                if (!isIp6(addressStart, hostEnd) && !isHostName(addressStart, hostEnd)) {
+                    problem(ResultCode.SDP_ADDRESS, number, text(addressStart, hostEnd) + " is no IP6 address");
+                }
+            } else {
+                problem(ResultCode.SDP_ADDRESS, number, "address type " + text(typeStart, typeEnd)
+                    + " is neither IP4 nor IP6");
+            }
+        }
+
+        private void attribute(int number, int start, int end) {
+            for (byte[] direction : DIRECTIONS) {
+                if (equals(start, end, direction)) {
+                    boolean seen = mediaLine == 0 ? sessionDirection : mediaDirection;
+                    if (seen) {
+                        problem(ResultCode.SDP_DIRECTION, number, text(start, end) + " conflicts with an earlier direction "
+                            + (mediaLine == 0 ? "at session level" : "of the media description in line " + mediaLine));
+                    }
+                    if (mediaLine == 0) {
+                        sessionDirection = true;
+                    } else {
+                        mediaDirection = true;
+                    }
+                    return;
+                }
+            }
+            boolean rtpmap = startsWith(start, end, RTPMAP);
+            if (!rtpmap && !startsWith(start, end, FMTP)) {
+                return;
+            }
+            if (mediaLine == 0) {
+                problem(ResultCode.SDP_CODEC, number, (rtpmap ? "rtpmap" : "fmtp") + " outside of a media description");
+                return;
+            }
+            if (!mediaRtp) {
+                // Formats of other protocols are no payload types
+                return;
+            }
+            int typeStart = start + (rtpmap ? RTPMAP.length : FMTP.length);
+            int typeEnd = tokenEnd(typeStart, end);
+            long payloadType = number(typeStart, typeEnd);
+            if (payloadType < 0 || payloadType > MAX_PAYLOAD_TYPE || !isFormat((int) payloadType)) {
+                problem(ResultCode.SDP_CODEC, number, (rtpmap ? "rtpmap" : "fmtp") + " for payload type "
+                    + text(typeStart, typeEnd) + ", which the media description in line " + mediaLine + " does not offer");
+                return;
+            }
+            if (rtpmap) {
+                rtpmap(number, (int) payloadType, skipSpaces(typeEnd, end), end);
+            }
+        }
+
+        /**
+         * Reads &lt;encoding name&gt;/&lt;clock rate&gt;[/&lt;encoding parameters&gt;]
+         */
+        private void rtpmap(int number, int payloadType, int start, int end) {
+            long bit = 1L << payloadType;
+            if (((payloadType < 64 ? mapped0 : mapped1) & bit) != 0) {
+                problem(ResultCode.SDP_CODEC, number, "second rtpmap for payload type " + payloadType);
+                return;
+            }
+            if (payloadType < 64) {
+                mapped0 |= bit;
+            } else {
+                mapped1 |= bit;
+            }
+            int nameEnd = indexOf(start, end, (byte) '/');
+            int rateEnd = nameEnd >= 0 ? indexOf(nameEnd + 1, end, (byte) '/') : -1;
+            long clockRate = nameEnd >= 0 ? number(nameEnd + 1, rateEnd >= 0 ? rateEnd : end) : -1;
+            if (nameEnd <= start || clockRate <= 0) {
+                problem(ResultCode.SDP_CODEC, number, "rtpmap for payload type " + payloadType
+                    + " needs encoding name and clock rate: " + text(start, end));
+                return;
+            }
+            byte[] staticName = payloadType < STATIC_NAMES.length ? STATIC_NAMES[payloadType] : null;
+            if (staticName != null && (staticName.length != nameEnd - start || !equalsIgnoreCase(body, start, staticName))) {
+                problem(ResultCode.SDP_CODEC, number, "payload type " + payloadType + " is "
+                    + STATIC_ENCODINGS[payloadType] + ", not " + text(start, nameEnd));
+            }
+            if (isAllowed(body, start, nameEnd)) {
+                if (payloadType < 64) {
+                    allowed0 |= bit;
+                } else {
+                    allowed1 |= bit;
+                }
+            }
+        }
+
+        private boolean isFormat(int payloadType) {
+            return ((payloadType < 64 ? formats0 : formats1) & (1L << payloadType)) != 0;
+        }
+
+        private boolean isIp4OrHostName(int start, int end) {
+            boolean numeric = true;
+            for (int i = start; i < end && numeric; i++) {
+                numeric = body[i] == '.' || (body[i] >= '0' && body[i] <= '9');
+            }
+            return numeric ? isIp4(start, end) : isHostName(start, end);
+        }
+
+        private boolean isIp4(int start, int end) {
+            int parts = 0;
+            int position = start;
+            while (position <= end) {
+                int partEnd = indexOf(position, end, (byte) '.');
+                if (partEnd < 0) {
+                    partEnd = end;
+                }
+                long part = number(position, partEnd);
+                if (part < 0 || part > 255 || partEnd - position > 3) {
+                    return false;
+                }
+                parts++;
+                position = partEnd + 1;
+            }
+            return parts == 4;
+        }
+
+        private boolean isIp6(int start, int end) {
+            int colons = 0;
+            for (int i = start; i < end; i++) {
+                byte c = body[i];
+                if (c == ':') {
+                    colons++;
+                } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '.')) {
+                    return false;
+                }
+            }
+            int compressed = indexOf(start, end, DOUBLE_COLON);
+            return colons >= 2 && colons <= 7
+                && (compressed < 0 || indexOf(compressed + 1, end, DOUBLE_COLON) < 0);
+        }
+
+        /**
+         * @return true for a domain name of letters, digits and hyphens, with at least one letter
+         */
+        private boolean isHostName(int start, int end) {
+            boolean letter = false;
+            for (int i = start; i < end; i++) {
+                byte c = body[i];
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    letter = true;
+                } else if (!((c >= '0' && c <= '9') || c == '-' || c == '.')) {
+                    return false;
+                }
+            }
+            return letter && body[start] != '.' && body[start] != '-';
+        }
+
+        private void problem(ResultCode code, int line, String description) {
+            result.addError(code, "line " + line + ": " + description);
+        }
+
+        private String text(int start, int end) {
+            return new String(body, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        private int tokenEnd(int position, int end) {
+            while (position < end && body[position] != ' ') {
+                position++;
+            }
+            return position;
+        }
+
+        private int skipSpaces(int position, int end) {
+            while (position < end && body[position] == ' ') {
+                position++;
+            }
+            return position;
+        }
+
+        private int indexOf(int start, int end, byte b) {
+            for (int i = start; i < end; i++) {
+                if (body[i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(int start, int end, byte[] bytes) {
+            for (int i = start; i <= end - bytes.length; i++) {
+                if (startsWith(i, end, bytes)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean startsWith(int start, int end, byte[] prefix) {
+            if (end - start < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (body[start + i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean equals(int start, int end, byte[] bytes) {
+            return end - start == bytes.length && startsWith(start, end, bytes);
+        }
+
+        /**
+         * @return the decimal number, -1 if the range is empty, has other characters or is too long
+         */
+        private long number(int start, int end) {
+            if (start >= end || end - start > 9) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte c = body[i];
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+
+    /**
+     * @param upperCase The name to compare with, in upper case
+     */
+    private static boolean equalsIgnoreCase(byte[] buffer, int start, byte[] upperCase) {
+        for (int i = 0; i < upperCase.length; i++) {
+            byte c = buffer[start + i];
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            if (c != upperCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
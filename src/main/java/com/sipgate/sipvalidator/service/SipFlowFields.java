@@ -0,0 +1,323 @@
+package com.sipgate.sipvalidator.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields that tie a SIP message to its call, transaction and
+ * dialog straight from the raw bytes, in one pass over the header section
+ * and without the full parser: start line, Call-ID, CSeq, the branch of the
+ * top Via and the From and To tags.
+ *
+ * Branch and tags are kept as 64 bit hashes, which is all that comparing
+ * them needs, and their position for descriptions. Meant for messages that
+ * already passed validation, a malformed header is read as far as it goes.
+ * Instances are reused from one message to the next and are not thread-safe.
+ */
+final class SipFlowFields {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] SIP_VERSION = "SIP/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CALL_ID = "call-id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CSEQ = "cseq".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VIA = "via".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FROM = "from".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TO = "to".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BRANCH = "branch".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TAG = "tag".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private byte[] message;
+    /** End of the parameter value last found by {@link #findParameter} */
+    private int parameterEnd;
+
+    boolean response;
+    /** Status code of a response, 0 for requests */
+    int statusCode;
+    /** Method of a request, null for responses */
+    String method;
+    String callId;
+    long cseq;
+    String cseqMethod;
+    /** Hash of the top Via branch, 0 if it has none */
+    long branch;
+    int branchStart;
+    int branchEnd;
+    /** Hash of the From tag, 0 if it has none */
+    long fromTag;
+    /** Hash of the To tag, 0 if it has none */
+    long toTag;
+    int toTagStart;
+    int toTagEnd;
+
+    /**
+     * Reads the fields of a message
+     * @return false if the start line, Call-ID or CSeq is missing
+     */
+    boolean read(byte[] message) {
+        this.message = message;
+        response = false;
+        statusCode = 0;
+        method = null;
+        callId = null;
+        cseq = -1;
+        cseqMethod = null;
+        branch = 0;
+        fromTag = 0;
+        toTag = 0;
+
+        int lineEnd = lineEnd(0);
+        if (!readStartLine(lineEnd)) {
+            return false;
+        }
+        boolean viaSeen = false;
+        int lineStart = lineEnd + 1;
+        while (lineStart < message.length && message[lineStart] != CR && message[lineStart] != LF) {
+            int valueEnd = lineEnd(lineStart);
+            // Folded values continue on lines starting with whitespace
+            while (valueEnd + 1 < message.length && (message[valueEnd + 1] == ' ' || message[valueEnd + 1] == '\t')) {
+                valueEnd = lineEnd(valueEnd + 1);
+            }
+            int colon = lineStart;
+            while (colon < valueEnd && message[colon] != ':') {
+                colon++;
+            }
+            int nameEnd = colon;
+            while (nameEnd > lineStart && (message[nameEnd - 1] == ' ' || message[nameEnd - 1] == '\t')) {
+                nameEnd--;
+            }
+            if (colon < valueEnd) {
+                int valueStart = colon + 1;
+                if (isName(lineStart, nameEnd, CALL_ID, 'i')) {
+                    readCallId(valueStart, valueEnd);
+                } else if (isName(lineStart, nameEnd, CSEQ, (char) 0)) {
+                    readCSeq(valueStart, valueEnd);
+                } else if (!viaSeen && isName(lineStart, nameEnd, VIA, 'v')) {
+                    viaSeen = true;
+                    int start = findParameter(valueStart, valueEnd, BRANCH, false);
+                    if (start >= 0) {
+                        branch = hash(start, parameterEnd);
+                        branchStart = start;
+                        branchEnd = parameterEnd;
+                    }
+                } else if (isName(lineStart, nameEnd, FROM, 'f')) {
+                    int start = findParameter(valueStart, valueEnd, TAG, true);
+                    fromTag = start >= 0 ? hash(start, parameterEnd) : 0;
+                } else if (isName(lineStart, nameEnd, TO, 't')) {
+                    int start = findParameter(valueStart, valueEnd, TAG, true);
+                    if (start >= 0) {
+                        toTag = hash(start, parameterEnd);
+                        toTagStart = start;
+                        toTagEnd = parameterEnd;
+                    }
+                }
+            }
+            lineStart = valueEnd + 1;
+        }
+        return callId != null && cseqMethod != null;
+    }
+
+    String branchText() {
+        return text(branchStart, branchEnd);
+    }
+
+    String toTagText() {
+        return text(toTagStart, toTagEnd);
+    }
+
+    private boolean readStartLine(int lineEnd) {
+        if (startsWith(0, lineEnd, SIP_VERSION)) {
+            int space = indexOf(' ', 0, lineEnd);
+            int code = 0;
+            int digits = 0;
+            for (int i = space + 1; space >= 0 && i < lineEnd && digits < 3; i++, digits++) {
+                byte b = message[i];
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+                code = code * 10 + (b - '0');
+            }
+            response = true;
+            statusCode = code;
+            return digits == 3;
+        }
+        int space = indexOf(' ', 0, lineEnd);
+        if (space <= 0) {
+            return false;
+        }
+        method = text(0, space);
+        return true;
+    }
+
+    private void readCallId(int start, int end) {
+        start = skipWhitespace(start, end);
+        while (end > start && isWhitespace(message[end - 1])) {
+            end--;
+        }
+        if (end > start) {
+            callId = text(start, end);
+        }
+    }
+
+    private void readCSeq(int start, int end) {
+        int i = skipWhitespace(start, end);
+        long number = 0;
+        int digitsStart = i;
+        while (i < end && message[i] >= '0' && message[i] <= '9' && i - digitsStart < 18) {
+            number = number * 10 + (message[i++] - '0');
+        }
+        if (i == digitsStart) {
+            return;
+        }
+        int methodStart = skipWhitespace(i, end);
+        int methodEnd = methodStart;
+        while (methodEnd < end && isTokenChar(message[methodEnd])) {
+            methodEnd++;
+        }
+        if (methodEnd > methodStart) {
+            cseq = number;
+            cseqMethod = text(methodStart, methodEnd);
+        }
+    }
+
+    /**
+     * Finds a header parameter. In From and To, parameters inside angle
+     * brackets belong to the URI and are skipped. In Via, only the first
+     * value of the header is searched.
+     * @return start of the parameter value, -1 if there is none, its end is left in {@link #parameterEnd}
+     */
+    private int findParameter(int start, int end, byte[] name, boolean address) {
+        boolean quoted = false;
+        boolean bracketed = false;
+        for (int i = start; i < end; i++) {
+            byte b = message[i];
+            if (quoted) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    quoted = false;
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == '<' && address) {
+                bracketed = true;
+            } else if (b == '>') {
+                bracketed = false;
+            } else if (b == ',' && !address) {
+                return -1;
+            } else if (b == ';' && !bracketed) {
+                int nameStart = skipWhitespace(i + 1, end);
+                int nameEnd = nameStart;
+                while (nameEnd < end && isTokenChar(message[nameEnd])) {
+                    nameEnd++;
+                }
+                int equals = skipWhitespace(nameEnd, end);
+                if (equalsIgnoreCase(nameStart, nameEnd, name) && equals < end && message[equals] == '=') {
+                    int valueStart = skipWhitespace(equals + 1, end);
+                    int valueEnd = valueStart;
+                    while (valueEnd < end && isTokenChar(message[valueEnd])) {
+                        valueEnd++;
+                    }
+                    if (valueEnd > valueStart) {
+                        parameterEnd = valueEnd;
+                        return valueStart;
+                    }
+                }
+                i = nameEnd - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return FNV-1a hash of the bytes, never 0 so that 0 can stand for absent
+     */
+    private long hash(int start, int end) {
+        long hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (message[i] & 0xff)) * FNV_PRIME;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    private boolean isName(int start, int end, byte[] name, char compact) {
+        if (end - start == 1) {
+            return compact != 0 && (message[start] | 0x20) == compact;
+        }
+        return equalsIgnoreCase(start, end, name);
+    }
+
+    /**
+     * @param lowerCase The expected name in lower case
+     */
+    private boolean equalsIgnoreCase(int start, int end, byte[] lowerCase) {
+        if (end - start != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            if ((message[start + i] | 0x20) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (message[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return position of the LF ending the line, the message length for the last line. A CR before it
+     *         is left to the callers, which treat it as whitespace.
+     */
+    private int lineEnd(int start) {
+        int i = start;
+        while (i < message.length && message[i] != LF) {
+            i++;
+        }
+        return i;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (message[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int start, int end) {
+        while (start < end && isWhitespace(message[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private String text(int start, int end) {
+        return new String(message, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == CR || b == LF;
+    }
+
+    /**
+     * token characters of RFC 3261 section 25.1
+     */
+    private static boolean isTokenChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+            || b == '-' || b == '.' || b == '!' || b == '%' || b == '*' || b == '_'
+            || b == '+' || b == '`' || b == '\'' || b == '~';
+    }
+}
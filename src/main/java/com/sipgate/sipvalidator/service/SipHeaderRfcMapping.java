@@ -1,114 +1,323 @@
 package com.sipgate.sipvalidator.service;
 
-import java.util.HashMap;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Mapping of SIP header names to their corresponding RFC specifications
+ * Mapping of SIP header names to their corresponding RFC specifications.
+ *
+ * The mapping is an immutable open addressing table built once at class
+ * initialization. Lookups fold ASCII case while hashing and comparing, so
+ * they never allocate, and accept any CharSequence or a slice of raw message
+ * bytes. Compact forms are stored as their own keys pointing to the
+ * RfcReference instance of the full name, and every key knows the lower
+ * case full name of its header, see {@link #getCanonicalName(CharSequence)}.
+ *
+ * Every distinct RfcReference has a small, stable id, its index in
+ * {@link #getReferences()}, which compact responses send instead of the
+ * reference itself. Ids follow the order of registration, so new headers
+ * must be added at the end to keep the ids of existing ones.
  */
-public class SipHeaderRfcMapping {
-    
-    private static final Map<String, RfcReference> headerToRfc = new HashMap<>();
-    
+public final class SipHeaderRfcMapping {
+
+    private static final String[] NAMES;
+    private static final RfcReference[] REFERENCES;
+    private static final String[] CANONICAL_NAMES;
+    private static final int MASK;
+    private static final List<RfcReference> REFERENCE_LIST;
+
     static {
+        Builder builder = new Builder();
+
         // Core SIP headers from RFC 3261
-        headerToRfc.put("accept", new RfcReference("RFC 3261", "20.1", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.1"));
-        headerToRfc.put("accept-encoding", new RfcReference("RFC 3261", "20.2", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.2"));
-        headerToRfc.put("accept-language", new RfcReference("RFC 3261", "20.3", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.3"));
-        headerToRfc.put("alert-info", new RfcReference("RFC 3261", "20.4", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.4"));
-        headerToRfc.put("allow", new RfcReference("RFC 3261", "20.5", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.5"));
-        headerToRfc.put("authentication-info", new RfcReference("RFC 3261", "20.6", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.6"));
-        headerToRfc.put("authorization", new RfcReference("RFC 3261", "20.7", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.7"));
-        headerToRfc.put("call-id", new RfcReference("RFC 3261", "20.8", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.8"));
-        headerToRfc.put("call-info", new RfcReference("RFC 3261", "20.9", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.9"));
-        headerToRfc.put("contact", new RfcReference("RFC 3261", "20.10", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.10"));
-        headerToRfc.put("content-disposition", new RfcReference("RFC 3261", "20.11", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.11"));
-        headerToRfc.put("content-encoding", new RfcReference("RFC 3261", "20.12", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.12"));
-        headerToRfc.put("content-language", new RfcReference("RFC 3261", "20.13", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.13"));
-        headerToRfc.put("content-length", new RfcReference("RFC 3261", "20.14", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.14"));
-        headerToRfc.put("content-type", new RfcReference("RFC 3261", "20.15", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.15"));
-        headerToRfc.put("cseq", new RfcReference("RFC 3261", "20.16", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.16"));
-        headerToRfc.put("date", new RfcReference("RFC 3261", "20.17", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.17"));
-        headerToRfc.put("error-info", new RfcReference("RFC 3261", "20.18", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.18"));
-        headerToRfc.put("expires", new RfcReference("RFC 3261", "20.19", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.19"));
-        headerToRfc.put("from", new RfcReference("RFC 3261", "20.20", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.20"));
-        headerToRfc.put("in-reply-to", new RfcReference("RFC 3261", "20.21", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.21"));
-        headerToRfc.put("max-forwards", new RfcReference("RFC 3261", "20.22", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.22"));
-        headerToRfc.put("min-expires", new RfcReference("RFC 3261", "20.23", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.23"));
-        headerToRfc.put("mime-version", new RfcReference("RFC 3261", "20.24", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.24"));
-        headerToRfc.put("organization", new RfcReference("RFC 3261", "20.25", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.25"));
-        headerToRfc.put("priority", new RfcReference("RFC 3261", "20.26", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.26"));
-        headerToRfc.put("proxy-authenticate", new RfcReference("RFC 3261", "20.27", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.27"));
-        headerToRfc.put("proxy-authorization", new RfcReference("RFC 3261", "20.28", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.28"));
-        headerToRfc.put("proxy-require", new RfcReference("RFC 3261", "20.29", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.29"));
-        headerToRfc.put("record-route", new RfcReference("RFC 3261", "20.30", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.30"));
-        headerToRfc.put("reply-to", new RfcReference("RFC 3261", "20.31", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.31"));
-        headerToRfc.put("require", new RfcReference("RFC 3261", "20.32", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.32"));
-        headerToRfc.put("retry-after", new RfcReference("RFC 3261", "20.33", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.33"));
-        headerToRfc.put("route", new RfcReference("RFC 3261", "20.34", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.34"));
-        headerToRfc.put("server", new RfcReference("RFC 3261", "20.35", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.35"));
-        headerToRfc.put("subject", new RfcReference("RFC 3261", "20.36", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.36"));
-        headerToRfc.put("supported", new RfcReference("RFC 3261", "20.37", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.37"));
-        headerToRfc.put("timestamp", new RfcReference("RFC 3261", "20.38", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.38"));
-        headerToRfc.put("to", new RfcReference("RFC 3261", "20.39", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.39"));
-        headerToRfc.put("unsupported", new RfcReference("RFC 3261", "20.40", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.40"));
-        headerToRfc.put("user-agent", new RfcReference("RFC 3261", "20.41", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.41"));
-        headerToRfc.put("via", new RfcReference("RFC 3261", "20.42", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.42"));
-        headerToRfc.put("warning", new RfcReference("RFC 3261", "20.43", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.43"));
-        headerToRfc.put("www-authenticate", new RfcReference("RFC 3261", "20.44", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.44"));
+        builder.add("accept", "RFC 3261", "20.1", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.1");
+        builder.add("accept-encoding", "RFC 3261", "20.2", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.2");
+        builder.add("accept-language", "RFC 3261", "20.3", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.3");
+        builder.add("alert-info", "RFC 3261", "20.4", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.4");
+        builder.add("allow", "RFC 3261", "20.5", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.5");
+        builder.add("authentication-info", "RFC 3261", "20.6", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.6");
+        builder.add("authorization", "RFC 3261", "20.7", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.7");
+        builder.add("call-id", "RFC 3261", "20.8", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.8");
+        builder.add("call-info", "RFC 3261", "20.9", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.9");
+        builder.add("contact", "RFC 3261", "20.10", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.10");
+        builder.add("content-disposition", "RFC 3261", "20.11", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.11");
+        builder.add("content-encoding", "RFC 3261", "20.12", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.12");
+        builder.add("content-language", "RFC 3261", "20.13", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.13");
+        builder.add("content-length", "RFC 3261", "20.14", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.14");
+        builder.add("content-type", "RFC 3261", "20.15", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.15");
+        builder.add("cseq", "RFC 3261", "20.16", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.16");
+        builder.add("date", "RFC 3261", "20.17", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.17");
+        builder.add("error-info", "RFC 3261", "20.18", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.18");
+        builder.add("expires", "RFC 3261", "20.19", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.19");
+        builder.add("from", "RFC 3261", "20.20", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.20");
+        builder.add("in-reply-to", "RFC 3261", "20.21", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.21");
+        builder.add("max-forwards", "RFC 3261", "20.22", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.22");
+        builder.add("min-expires", "RFC 3261", "20.23", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.23");
+        builder.add("mime-version", "RFC 3261", "20.24", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.24");
+        builder.add("organization", "RFC 3261", "20.25", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.25");
+        builder.add("priority", "RFC 3261", "20.26", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.26");
+        builder.add("proxy-authenticate", "RFC 3261", "20.27", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.27");
+        builder.add("proxy-authorization", "RFC 3261", "20.28", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.28");
+        builder.add("proxy-require", "RFC 3261", "20.29", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.29");
+        builder.add("record-route", "RFC 3261", "20.30", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.30");
+        builder.add("reply-to", "RFC 3261", "20.31", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.31");
+        builder.add("require", "RFC 3261", "20.32", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.32");
+        builder.add("retry-after", "RFC 3261", "20.33", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.33");
+        builder.add("route", "RFC 3261", "20.34", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.34");
+        builder.add("server", "RFC 3261", "20.35", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.35");
+        builder.add("subject", "RFC 3261", "20.36", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.36");
+        builder.add("supported", "RFC 3261", "20.37", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.37");
+        builder.add("timestamp", "RFC 3261", "20.38", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.38");
+        builder.add("to", "RFC 3261", "20.39", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.39");
+        builder.add("unsupported", "RFC 3261", "20.40", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.40");
+        builder.add("user-agent", "RFC 3261", "20.41", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.41");
+        builder.add("via", "RFC 3261", "20.42", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.42");
+        builder.add("warning", "RFC 3261", "20.43", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.43");
+        builder.add("www-authenticate", "RFC 3261", "20.44", "https://datatracker.ietf.org/doc/html/rfc3261#section-20.44");
 
         // Compact forms
-        headerToRfc.put("m", headerToRfc.get("contact"));
-        headerToRfc.put("f", headerToRfc.get("from"));
-        headerToRfc.put("i", headerToRfc.get("call-id"));
-        headerToRfc.put("l", headerToRfc.get("content-length"));
-        headerToRfc.put("c", headerToRfc.get("content-type"));
-        headerToRfc.put("t", headerToRfc.get("to"));
-        headerToRfc.put("v", headerToRfc.get("via"));
+        builder.alias("m", "contact");
+        builder.alias("f", "from");
+        builder.alias("i", "call-id");
+        builder.alias("l", "content-length");
+        builder.alias("c", "content-type");
+        builder.alias("t", "to");
+        builder.alias("v", "via");
+        builder.alias("e", "content-encoding");
+        builder.alias("k", "supported");
+        builder.alias("s", "subject");
 
         // Additional headers from other RFCs
-        headerToRfc.put("session-expires", new RfcReference("RFC 4028", "4", "https://datatracker.ietf.org/doc/html/rfc4028#section-4"));
-        headerToRfc.put("min-se", new RfcReference("RFC 4028", "4", "https://datatracker.ietf.org/doc/html/rfc4028#section-4"));
-        headerToRfc.put("replaces", new RfcReference("RFC 3891", "6.1", "https://datatracker.ietf.org/doc/html/rfc3891#section-6.1"));
-        headerToRfc.put("referred-by", new RfcReference("RFC 3892", "4", "https://datatracker.ietf.org/doc/html/rfc3892#section-4"));
-        headerToRfc.put("refer-to", new RfcReference("RFC 3515", "2.1", "https://datatracker.ietf.org/doc/html/rfc3515#section-2.1"));
-        headerToRfc.put("event", new RfcReference("RFC 6665", "8.1.1", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.1"));
-        headerToRfc.put("subscription-state", new RfcReference("RFC 6665", "8.1.2", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.2"));
-        headerToRfc.put("allow-events", new RfcReference("RFC 6665", "8.1.3", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.3"));
-        headerToRfc.put("rack", new RfcReference("RFC 3262", "7.1", "https://datatracker.ietf.org/doc/html/rfc3262#section-7.1"));
-        headerToRfc.put("rseq", new RfcReference("RFC 3262", "7.1", "https://datatracker.ietf.org/doc/html/rfc3262#section-7.1"));
-        headerToRfc.put("p-access-network-info", new RfcReference("RFC 3455", "4.4", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.4"));
-        headerToRfc.put("p-called-party-id", new RfcReference("RFC 3455", "4.1", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.1"));
-        headerToRfc.put("p-charging-function-addresses", new RfcReference("RFC 3455", "4.6", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.6"));
-        headerToRfc.put("p-charging-vector", new RfcReference("RFC 3455", "4.6", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.6"));
-        headerToRfc.put("service-route", new RfcReference("RFC 3608", "6.1.1", "https://datatracker.ietf.org/doc/html/rfc3608#section-6.1.1"));
-        headerToRfc.put("path", new RfcReference("RFC 3327", "4.1", "https://datatracker.ietf.org/doc/html/rfc3327#section-4.1"));
+        builder.add("session-expires", "RFC 4028", "4", "https://datatracker.ietf.org/doc/html/rfc4028#section-4");
+        builder.add("min-se", "RFC 4028", "4", "https://datatracker.ietf.org/doc/html/rfc4028#section-4");
+        builder.add("replaces", "RFC 3891", "6.1", "https://datatracker.ietf.org/doc/html/rfc3891#section-6.1");
+        builder.add("referred-by", "RFC 3892", "4", "https://datatracker.ietf.org/doc/html/rfc3892#section-4");
+        builder.add("refer-to", "RFC 3515", "2.1", "https://datatracker.ietf.org/doc/html/rfc3515#section-2.1");
+        builder.add("event", "RFC 6665", "8.1.1", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.1");
+        builder.add("subscription-state", "RFC 6665", "8.1.2", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.2");
+        builder.add("allow-events", "RFC 6665", "8.1.3", "https://datatracker.ietf.org/doc/html/rfc6665#section-8.1.3");
+        builder.add("rack", "RFC 3262", "7.1", "https://datatracker.ietf.org/doc/html/rfc3262#section-7.1");
+        builder.add("rseq", "RFC 3262", "7.1", "https://datatracker.ietf.org/doc/html/rfc3262#section-7.1");
+        builder.add("p-access-network-info", "RFC 3455", "4.4", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.4");
+        builder.add("p-called-party-id", "RFC 3455", "4.1", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.1");
+        builder.add("p-charging-function-addresses", "RFC 3455", "4.6", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.6");
+        builder.add("p-charging-vector", "RFC 3455", "4.6", "https://datatracker.ietf.org/doc/html/rfc3455#section-4.6");
+        builder.add("service-route", "RFC 3608", "6.1.1", "https://datatracker.ietf.org/doc/html/rfc3608#section-6.1.1");
+        builder.add("path", "RFC 3327", "4.1", "https://datatracker.ietf.org/doc/html/rfc3327#section-4.1");
+
+        // Compact forms of the additional headers
+        builder.alias("x", "session-expires");
+        builder.alias("b", "referred-by");
+        builder.alias("r", "refer-to");
+        builder.alias("o", "event");
+        builder.alias("u", "allow-events");
+
+        REFERENCE_LIST = List.copyOf(builder.references);
+        Map<String, RfcReference> entries = builder.entries;
+        int capacity = Integer.highestOneBit(entries.size() * 4 - 1);
+        NAMES = new String[capacity];
+        REFERENCES = new RfcReference[capacity];
+        CANONICAL_NAMES = new String[capacity];
+        MASK = capacity - 1;
+        for (Map.Entry<String, RfcReference> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            int slot = hash(name) & MASK;
+            while (NAMES[slot] != null) {
+                slot = (slot + 1) & MASK;
+            }
+            NAMES[slot] = name;
+            REFERENCES[slot] = entry.getValue();
+            CANONICAL_NAMES[slot] = builder.canonicalNames.get(name);
+        }
+    }
+
+    private SipHeaderRfcMapping() {
     }
-    
+
     /**
      * Get RFC reference for a SIP header
-     * @param headerName The name of the SIP header (case-insensitive)
+     * @param headerName The name of the SIP header (case-insensitive), full or compact form
      * @return RfcReference or null if not found
      */
-    public static RfcReference getRfcReference(String headerName) {
+    public static RfcReference getRfcReference(CharSequence headerName) {
+        int slot = slot(headerName);
+        return slot >= 0 ? REFERENCES[slot] : null;
+    }
+
+    /**
+     * Get the name of a SIP header in one fixed spelling, e.g. for metric tags
+     * @param headerName The name of the SIP header (case-insensitive), full or compact form
+     * @return the lower case full name, e.g. via for V, or null for headers without RFC reference
+     */
+    public static String getCanonicalName(CharSequence headerName) {
+        int slot = slot(headerName);
+        return slot >= 0 ? CANONICAL_NAMES[slot] : null;
+    }
+
+    /**
+     * Get RFC reference for a SIP header name given as US-ASCII bytes, e.g.
+     * directly from a message buffer
+     * @param buffer Bytes containing the header name
+     * @param offset Index of the first byte of the name
+     * @param length Number of bytes of the name
+     * @return RfcReference or null if not found
+     */
+    public static RfcReference getRfcReference(byte[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + toLowerCase(buffer[i] & 0xff);
+        }
+        int slot = mix(hash) & MASK;
+        String name;
+        while ((name = NAMES[slot]) != null) {
+            if (equalsIgnoreCase(name, buffer, offset, length)) {
+                return REFERENCES[slot];
+            }
+            slot = (slot + 1) & MASK;
+        }
+        return null;
+    }
+
+    /**
+     * @return all distinct references, each at the index of its id
+     */
+    public static List<RfcReference> getReferences() {
+        return REFERENCE_LIST;
+    }
+
+    /**
+     * @return the id of a reference returned by this mapping, -1 for other instances
+     */
+    public static int getReferenceId(RfcReference reference) {
+        return reference.id;
+    }
+
+    /**
+     * @return the slot of the header name in the table, -1 if it is not in the table
+     */
+    private static int slot(CharSequence headerName) {
         if (headerName == null) {
-            return null;
+            return -1;
         }
-        return headerToRfc.get(headerName.toLowerCase());
+        int slot = hash(headerName) & MASK;
+        String name;
+        while ((name = NAMES[slot]) != null) {
+            if (equalsIgnoreCase(name, headerName)) {
+                return slot;
+            }
+            slot = (slot + 1) & MASK;
+        }
+        return -1;
     }
-    
+
+    private static int hash(CharSequence name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + toLowerCase(name.charAt(i));
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spreads the bits of the polynomial hash, which clusters badly for short names
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * @param lowerCase A key of the table, which is stored in lower case
+     */
+    private static boolean equalsIgnoreCase(String lowerCase, CharSequence name) {
+        if (lowerCase.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) != toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(String lowerCase, byte[] buffer, int offset, int length) {
+        if (lowerCase.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (lowerCase.charAt(i) != toLowerCase(buffer[offset + i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the entries of the table during class initialization
+     */
+    private static final class Builder {
+        private final Map<String, RfcReference> entries = new LinkedHashMap<>();
+        private final Map<String, String> canonicalNames = new LinkedHashMap<>();
+        private final List<RfcReference> references = new ArrayList<>();
+
+        void add(String name, String rfc, String section, String url) {
+            RfcReference reference = new RfcReference(references.size(), rfc, section, url);
+            references.add(reference);
+            entries.put(name, reference);
+            canonicalNames.put(name, name);
+        }
+
+        void alias(String compactForm, String name) {
+            entries.put(compactForm, entries.get(name));
+            canonicalNames.put(compactForm, name);
+        }
+    }
+
     /**
      * Class to hold RFC reference information
      */
-    public static class RfcReference {
+    public static final class RfcReference {
         private final String rfc;
         private final String section;
         private final String url;
+        /** Built once, the instances are shared by all results and written with every header */
+        private final String displayText;
+        private final int id;
         
         public RfcReference(String rfc, String section, String url) {
+            this(-1, rfc, section, url);
+        }
+
+        private RfcReference(int id, String rfc, String section, String url) {
+            this.id = id;
             this.rfc = rfc;
             this.section = section;
             this.url = url;
+            this.displayText = rfc + " Section " + section;
+        }
+
+        /**
+         * Resolves a deserialized reference to the registered instance, so it keeps its id
+         */
+        @JsonCreator
+        public static RfcReference of(@JsonProperty("rfc") String rfc, @JsonProperty("section") String section,
+                                      @JsonProperty("url") String url) {
+            for (RfcReference reference : REFERENCE_LIST) {
+                if (reference.url.equals(url) && reference.rfc.equals(rfc) && reference.section.equals(section)) {
+                    return reference;
+                }
+            }
+            return new RfcReference(rfc, section, url);
         }
         
         public String getRfc() {
@@ -124,7 +333,7 @@ public class SipHeaderRfcMapping {
         }
         
         public String getDisplayText() {
-            return rfc + " Section " + section;
+            return displayText;
         }
     }
 }
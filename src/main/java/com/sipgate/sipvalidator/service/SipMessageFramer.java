@@ -0,0 +1,301 @@
+package com.sipgate.sipvalidator.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a byte stream of concatenated SIP messages into single messages.
+ *
+ * A message ends after its Content-Length worth of body bytes following the
+ * empty line that terminates the header section. Without a Content-Length
+ * header the message ends at that empty line. Empty lines between messages
+ * (e.g. keep-alives) are skipped.
+ *
+ * Only the message currently being framed is buffered, so memory use is
+ * bounded by the configured maximum message size regardless of stream length.
+ * Instances are not thread-safe.
+ */
+public class SipMessageFramer {
+
+    /**
+     * Receives the framed messages
+     */
+    public interface Listener {
+        /**
+         * Called with the raw bytes of one complete message
+         */
+        void onMessage(byte[] message);
+
+        /**
+         * Called when a message exceeded the maximum size and was dropped
+         * @param discardedBytes Number of bytes that were thrown away
+         */
+        void onOversized(long discardedBytes);
+    }
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+
+    private final int maxMessageSize;
+    private final Listener listener;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    /** Position up to which the buffer has been searched for the end of the headers */
+    private int scanned;
+    /** Length of the header section including the empty line, -1 while unknown */
+    private int headerLength = -1;
+    private int contentLength;
+    /** True while the remainder of an oversized message is being skipped */
+    private boolean discarding;
+    private long discarded;
+    /** Bytes of an oversized message still to be skipped, -1 to skip until the next empty line */
+    private long skipBytes = -1;
+    /** 1 if the last skipped byte ended a line, used to detect the empty line */
+    private int skipLineState;
+
+    public SipMessageFramer(int maxMessageSize, Listener listener) {
+        this.maxMessageSize = maxMessageSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the stream to its end, framing messages as they arrive
+     */
+    public void consume(InputStream in) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            feed(chunk, 0, read);
+        }
+        finish();
+    }
+
+    /**
+     * Appends data to the stream and emits all messages completed by it
+     */
+    public void feed(byte[] data, int offset, int count) {
+        int end = offset + count;
+        while (offset < end) {
+            if (discarding) {
+                offset = skipOversized(data, offset, end);
+                continue;
+            }
+            if (length == 0) {
+                // Skip line breaks between messages
+                while (offset < end && (data[offset] == CR || data[offset] == LF)) {
+                    offset++;
+                }
+                if (offset == end) {
+                    return;
+                }
+            }
+            int take = Math.min(end - offset, maxMessageSize - length);
+            if (take == 0) {
+                startDiscarding();
+                continue;
+            }
+            append(data, offset, take);
+            offset += take;
+            while (length > 0 && emitMessage()) {
+                // keep emitting, the chunk may contain several messages
+            }
+        }
+    }
+
+    /**
+     * Signals the end of the stream. A trailing message without terminating
+     * empty line is emitted as it is, so the parser can report what is missing.
+     */
+    public void finish() {
+        if (discarding) {
+            stopDiscarding();
+        } else if (length > 0) {
+            listener.onMessage(Arrays.copyOf(buffer, length));
+        }
+        reset();
+    }
+
+    /**
+     * Emits the first buffered message if it is complete
+     * @return true if a message was emitted
+     */
+    private boolean emitMessage() {
+        if (headerLength < 0 && !findHeaderEnd()) {
+            return false;
+        }
+        int total = headerLength + contentLength;
+        if (total > maxMessageSize) {
+            discarded = length;
+            int remaining = total - length;
+            reset();
+            discarding = true;
+            // Skip exactly the announced body instead of searching for the next message
+            skipBytes = remaining;
+            return false;
+        }
+        if (length < total) {
+            return false;
+        }
+        listener.onMessage(Arrays.copyOf(buffer, total));
+        int rest = length - total;
+        System.arraycopy(buffer, total, buffer, 0, rest);
+        length = 0;
+        headerLength = -1;
+        contentLength = 0;
+        scanned = 0;
+        // Drop separators before the next message
+        int start = 0;
+        while (start < rest && (buffer[start] == CR || buffer[start] == LF)) {
+            start++;
+        }
+        if (start < rest) {
+            System.arraycopy(buffer, start, buffer, 0, rest - start);
+            length = rest - start;
+        }
+        return length > 0;
+    }
+
+    private void startDiscarding() {
+        discarded = length;
+        reset();
+        discarding = true;
+        skipBytes = -1;
+        skipLineState = 0;
+    }
+
+    private int skipOversized(byte[] data, int offset, int end) {
+        if (skipBytes >= 0) {
+            int skip = (int) Math.min(skipBytes, end - offset);
+            skipBytes -= skip;
+            discarded += skip;
+            offset += skip;
+            if (skipBytes == 0) {
+                stopDiscarding();
+            }
+            return offset;
+        }
+        // The message is too large to find its Content-Length, resynchronise at the next empty line
+        while (offset < end) {
+            byte b = data[offset++];
+            discarded++;
+            if (b == LF) {
+                if (skipLineState == 1) {
+                    stopDiscarding();
+                    return offset;
+                }
+                skipLineState = 1;
+            } else if (b != CR) {
+                skipLineState = 0;
+            }
+        }
+        return offset;
+    }
+
+    private void stopDiscarding() {
+        listener.onOversized(discarded);
+        discarding = false;
+        discarded = 0;
+        skipBytes = -1;
+        skipLineState = 0;
+    }
+
+    /**
+     * Searches the buffered bytes for the empty line ending the header section
+     * and reads the Content-Length once it is found.
+     */
+    private boolean findHeaderEnd() {
+        for (int i = Math.max(scanned, 1); i < length; i++) {
+            if (buffer[i] != LF) {
+                continue;
+            }
+            // An empty line is LF LF or LF CR LF
+            if (buffer[i - 1] == LF || (buffer[i - 1] == CR && i >= 2 && buffer[i - 2] == LF)) {
+                headerLength = i + 1;
+                contentLength = Math.max(parseContentLength(buffer, headerLength), 0);
+                return true;
+            }
+        }
+        scanned = length;
+        return false;
+    }
+
+    /**
+     * Reads the value of the Content-Length (or compact "l") header
+     * @return the content length, 0 if the header is malformed and -1 if it is missing
+     */
+    static int parseContentLength(byte[] data, int headerLength) {
+        int lineStart = 0;
+        while (lineStart < headerLength) {
+            int lineEnd = lineStart;
+            while (lineEnd < headerLength && data[lineEnd] != LF) {
+                lineEnd++;
+            }
+            int colon = lineStart;
+            while (colon < lineEnd && data[colon] != ':') {
+                colon++;
+            }
+            if (colon < lineEnd && isContentLengthName(data, lineStart, colon)) {
+                long value = 0;
+                boolean digits = false;
+                for (int i = colon + 1; i < lineEnd; i++) {
+                    byte b = data[i];
+                    if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        digits = true;
+                        if (value > Integer.MAX_VALUE) {
+                            return Integer.MAX_VALUE;
+                        }
+                    } else if (digits || (b != ' ' && b != '\t')) {
+                        break;
+                    }
+                }
+                return (int) value;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isContentLengthName(byte[] data, int start, int end) {
+        while (end > start && (data[end - 1] == ' ' || data[end - 1] == '\t')) {
+            end--;
+        }
+        int nameLength = end - start;
+        if (nameLength == 1) {
+            return (data[start] | 0x20) == 'l';
+        }
+        if (nameLength != CONTENT_LENGTH.length) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if ((data[start + i] | 0x20) != CONTENT_LENGTH[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(byte[] data, int offset, int count) {
+        if (length + count > buffer.length) {
+            int capacity = Math.min(maxMessageSize, Math.max(buffer.length * 2, length + count));
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+        System.arraycopy(data, offset, buffer, length, count);
+        length += count;
+    }
+
+    private void reset() {
+        length = 0;
+        scanned = 0;
+        headerLength = -1;
+        contentLength = 0;
+        if (buffer.length > INITIAL_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sipgate.sipvalidator.service;
+
+/**
+ * Brings raw message bytes into the form the JAIN-SIP parser expects: CRLF as
+ * line separator and a terminating CRLF. Works directly on the encoded bytes,
+ * which is safe for UTF-8 because CR and LF never occur inside multi-byte
+ * sequences.
+ */
+final class SipMessageNormalizer {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] SIP_VERSION = {'S', 'I', 'P', '/', '2', '.', '0'};
+
+    private SipMessageNormalizer() {
+    }
+
+    /**
+     * Replaces every bare LF with CRLF and appends a CRLF if the message does
+     * not end with one. Bare CRs are left as they are.
+     * @return the input array itself if it is already normalized, otherwise a new array
+     */
+    static byte[] normalize(byte[] message) {
+        int bareLineFeeds = 0;
+        for (int i = 0; i < message.length; i++) {
+            if (message[i] == LF && (i == 0 || message[i - 1] != CR)) {
+                bareLineFeeds++;
+            }
+        }
+        int length = message.length;
+        boolean terminated = length > 0 && message[length - 1] == LF;
+        if (bareLineFeeds == 0 && terminated) {
+            return message;
+        }
+
+        byte[] normalized = new byte[length + bareLineFeeds + (terminated ? 0 : 2)];
+        int out = 0;
+        int copyFrom = 0;
+        for (int i = 0; i < length; i++) {
+            if (message[i] == LF && (i == 0 || message[i - 1] != CR)) {
+                System.arraycopy(message, copyFrom, normalized, out, i - copyFrom);
+                out += i - copyFrom;
+                normalized[out++] = CR;
+                copyFrom = i;
+            }
+        }
+        System.arraycopy(message, copyFrom, normalized, out, length - copyFrom);
+        out += length - copyFrom;
+        if (!terminated) {
+            normalized[out++] = CR;
+            normalized[out] = LF;
+        }
+        return normalized;
+    }
+
+    /**
+     * Tells responses from requests by their start line, which for a response
+     * begins with the SIP version. Leading whitespace is ignored.
+     */
+    static boolean isResponse(byte[] message) {
+        int start = 0;
+        while (start < message.length && (message[start] & 0xff) <= ' ') {
+            start++;
+        }
+        if (message.length - start < SIP_VERSION.length) {
+            return false;
+        }
+        for (int i = 0; i < SIP_VERSION.length; i++) {
+            if (message[start + i] != SIP_VERSION[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
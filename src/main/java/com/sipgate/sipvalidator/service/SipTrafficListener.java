@@ -0,0 +1,348 @@
+package com.sipgate.sipvalidator.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates SIP traffic received on a UDP and a TCP port, e.g. from a mirror
+ * port, and reports the results through the log and the validation metrics.
+ * Nothing is ever sent back to the peers.
+ *
+ * One thread receives datagrams and one thread serves all TCP connections
+ * through a selector. Each datagram and each TCP stream is framed by
+ * Content-Length, and the messages are handed to a fixed number of workers
+ * through a bounded queue. When the workers fall behind, messages are dropped
+ * and counted instead of blocking the receivers, so memory use stays bounded
+ * by the queue capacity plus one buffered message per TCP connection.
+ *
+ * Results are logged by this class: invalid messages at INFO with their first
+ * error, valid ones at TRACE.
+ */
+@Component
+@ConditionalOnProperty(prefix = "sipvalidator.listener", name = "enabled", havingValue = "true")
+public class SipTrafficListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SipTrafficListener.class);
+
+    private static final String UDP = "udp";
+    private static final String TCP = "tcp";
+    /** Requested socket receive buffer for UDP, absorbs bursts the kernel would otherwise drop unseen */
+    private static final int UDP_RECEIVE_BUFFER = 4 * 1024 * 1024;
+
+    private final SipValidatorService validatorService;
+    private final SipValidatorProperties.Listener config;
+    private final BlockingQueue<ReceivedMessage> queue;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final Counter udpReceived;
+    private final Counter tcpReceived;
+    private final Counter udpQueueFull;
+    private final Counter tcpQueueFull;
+    private final Counter udpOversized;
+    private final Counter tcpOversized;
+    private final Counter connectionsRejected;
+
+    private volatile boolean running;
+    private DatagramChannel udpChannel;
+    private ServerSocketChannel tcpChannel;
+    private Selector selector;
+
+    public SipTrafficListener(SipValidatorService validatorService, SipValidatorProperties properties,
+                              MeterRegistry registry) {
+        this.validatorService = validatorService;
+        this.config = properties.getListener();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        this.udpReceived = receivedCounter(registry, UDP);
+        this.tcpReceived = receivedCounter(registry, TCP);
+        this.udpQueueFull = droppedCounter(registry, UDP, "queue-full");
+        this.tcpQueueFull = droppedCounter(registry, TCP, "queue-full");
+        this.udpOversized = droppedCounter(registry, UDP, "oversized");
+        this.tcpOversized = droppedCounter(registry, TCP, "oversized");
+        this.connectionsRejected = Counter.builder("sipvalidator.listener.connections.rejected")
+            .description("TCP connections closed because the connection limit was reached")
+            .register(registry);
+        Gauge.builder("sipvalidator.listener.queue", queue, BlockingQueue::size)
+            .description("Received messages waiting for validation")
+            .register(registry);
+    }
+
+    /**
+     * Binds the configured ports and starts receiving
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        for (int i = 0; i < config.getWorkers(); i++) {
+            startThread("sip-listener-worker-" + i, this::work);
+        }
+        if (config.getUdpPort() > 0) {
+            udpChannel = DatagramChannel.open();
+            udpChannel.setOption(StandardSocketOptions.SO_RCVBUF, UDP_RECEIVE_BUFFER);
+            udpChannel.bind(new InetSocketAddress(config.getBindAddress(), config.getUdpPort()));
+            startThread("sip-listener-udp", this::receiveDatagrams);
+            log.info("Validating SIP traffic received on udp:{}", udpChannel.getLocalAddress());
+        }
+        if (config.getTcpPort() > 0) {
+            selector = Selector.open();
+            tcpChannel = ServerSocketChannel.open();
+            tcpChannel.bind(new InetSocketAddress(config.getBindAddress(), config.getTcpPort()));
+            tcpChannel.configureBlocking(false);
+            tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            startThread("sip-listener-tcp", this::serveConnections);
+            log.info("Validating SIP traffic received on tcp:{}", tcpChannel.getLocalAddress());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        closeQuietly(udpChannel);
+        if (selector != null) {
+            selector.wakeup();
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * @return the bound UDP address, null if UDP is disabled
+     */
+    public InetSocketAddress getUdpAddress() throws IOException {
+        return udpChannel != null ? (InetSocketAddress) udpChannel.getLocalAddress() : null;
+    }
+
+    /**
+     * @return the bound TCP address, null if TCP is disabled
+     */
+    public InetSocketAddress getTcpAddress() throws IOException {
+        return tcpChannel != null ? (InetSocketAddress) tcpChannel.getLocalAddress() : null;
+    }
+
+    private void receiveDatagrams() {
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        // A datagram carries one message, bytes beyond its Content-Length are framed as a message of their own
+        DatagramFraming framing = new DatagramFraming();
+        SipMessageFramer framer = new SipMessageFramer(config.getMaxMessageSize(), framing);
+        while (running) {
+            try {
+                buffer.clear();
+                framing.source = udpChannel.receive(buffer);
+                udpReceived.increment();
+                framer.feed(buffer.array(), 0, buffer.position());
+                framer.finish();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Receiving a datagram failed", e);
+            }
+        }
+    }
+
+    private void serveConnections() {
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key, buffer);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            if (running) {
+                log.error("TCP listener failed, no more connections are accepted", e);
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = tcpChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        // The server socket is registered as well
+        if (selector.keys().size() > config.getMaxConnections()) {
+            connectionsRejected.increment();
+            closeQuietly(channel);
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel.getRemoteAddress()));
+    }
+
+    private void read(SelectionKey key, ByteBuffer buffer) {
+        Connection connection = (Connection) key.attachment();
+        int read;
+        try {
+            buffer.clear();
+            read = ((SocketChannel) key.channel()).read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read > 0) {
+            connection.framer.feed(buffer.array(), 0, read);
+        } else if (read < 0) {
+            connection.framer.finish();
+            key.cancel();
+            closeQuietly(key.channel());
+        }
+    }
+
+    private void work() {
+        while (running) {
+            ReceivedMessage received;
+            try {
+                received = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                report(received, validatorService.validateMessage(received.message()));
+            } catch (RuntimeException e) {
+                log.error("Validating a message from {}:{} failed", received.transport(), received.source(), e);
+            }
+        }
+    }
+
+    private void report(ReceivedMessage received, ValidationResult result) {
+        if (result.isValid()) {
+            log.trace("Valid SIP message from {}:{}", received.transport(), received.source());
+        } else if (log.isInfoEnabled()) {
+            String error = result.getErrorEntries().isEmpty() ? "" : result.getErrorEntries().get(0).render();
+            log.info("Invalid SIP message from {}:{}: {}", received.transport(), received.source(), error);
+        }
+    }
+
+    private void enqueue(ReceivedMessage received, Counter queueFull) {
+        if (!queue.offer(received)) {
+            queueFull.increment();
+        }
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private static Counter receivedCounter(MeterRegistry registry, String transport) {
+        return Counter.builder("sipvalidator.listener.received")
+            .description("Datagrams and TCP messages received by the listener")
+            .tag("transport", transport)
+            .register(registry);
+    }
+
+    private static Counter droppedCounter(MeterRegistry registry, String transport, String reason) {
+        return Counter.builder("sipvalidator.listener.dropped")
+            .description("Received messages that were not validated")
+            .tag("transport", transport)
+            .tag("reason", reason)
+            .register(registry);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Closing {} failed", closeable, e);
+        }
+    }
+
+    /**
+     * A framed message together with where it came from
+     */
+    private record ReceivedMessage(String transport, SocketAddress source, byte[] message) {
+    }
+
+    /**
+     * Frames the datagram most recently received from the given source
+     */
+    private class DatagramFraming implements SipMessageFramer.Listener {
+        private SocketAddress source;
+
+        @Override
+        public void onMessage(byte[] message) {
+            enqueue(new ReceivedMessage(UDP, source, message), udpQueueFull);
+        }
+
+        @Override
+        public void onOversized(long discardedBytes) {
+            udpOversized.increment();
+        }
+    }
+
+    /**
+     * State of one TCP connection, only used by the selector thread
+     */
+    private class Connection implements SipMessageFramer.Listener {
+        private final SocketAddress source;
+        private final SipMessageFramer framer;
+
+        Connection(SocketAddress source) {
+            this.source = source;
+            this.framer = new SipMessageFramer(config.getMaxMessageSize(), this);
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            tcpReceived.increment();
+            enqueue(new ReceivedMessage(TCP, source, message), tcpQueueFull);
+        }
+
+        @Override
+        public void onOversized(long discardedBytes) {
+            tcpReceived.increment();
+            tcpOversized.increment();
+        }
+    }
+}
@@ -1,34 +1,113 @@
 package com.sipgate.sipvalidator.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.stereotype.Service;
 
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
 import com.sipgate.sipvalidator.model.HeaderInfo;
+import com.sipgate.sipvalidator.model.LimitViolation;
+import com.sipgate.sipvalidator.model.PolicyViolation;
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.model.ResultMessage;
+import com.sipgate.sipvalidator.service.ValidationCache.CachedValidation;
 import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
 
-import gov.nist.javax.sip.message.MessageFactoryImpl;
-import javax.sip.message.MessageFactory;
-import javax.sip.message.Message;
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.message.SIPRequest;
+import gov.nist.javax.sip.message.SIPResponse;
+import gov.nist.javax.sip.parser.StringMsgParser;
 import javax.sip.message.Request;
 import javax.sip.message.Response;
 
 import gov.nist.javax.sip.header.HeaderFactoryImpl;
+import javax.sip.header.ContentTypeHeader;
 import javax.sip.header.HeaderFactory;
 import javax.sip.header.Header;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Iterator;
+import java.util.function.Supplier;
 
+/**
+ * Validates SIP messages and headers with the JAIN-SIP (NIST) parser.
+ *
+ * One instance is shared by all request threads without any locking. This is
+ * safe because the parser objects used here keep no per-parse state:
+ * StringMsgParser has no instance fields and creates a fresh lexer and header
+ * parser for every message. HeaderFactoryImpl only holds a configuration flag
+ * and parses through the static StringMsgParser.parseSIPHeader. The static
+ * lexer keyword tables are ConcurrentHashMaps, built completely before they
+ * are published with putIfAbsent, and ParserFactory only reads its table
+ * after class initialization. Metrics and cache are thread-safe as well.
+ * ConcurrentValidationTest checks multi-threaded results against
+ * single-threaded ones in every build.
+ *
+ * Parsed messages are also checked against the configured HeaderPolicy. Its
+ * violations make the message invalid and are listed in the result. The
+ * policy is read once per message, and cached results are keyed by the
+ * policy they were checked against, so a reload takes effect right away.
+ *
+ * With sipvalidator.sdp.enabled, application/sdp bodies of parsed messages
+ * are checked by SdpValidator as well, straight from the body array the
+ * parser filled. Their problems make the message invalid, too.
+ */
 @Service
+@ImportRuntimeHints(JainSipRuntimeHints.class)
 public class SipValidatorService {
 
-    private final MessageFactory messageFactory;
+    /** Stateless, see the class comment, and therefore shared */
+    private final StringMsgParser messageParser;
     private final HeaderFactory headerFactory;
+    private final ValidationMetrics metrics;
+    private final ValidationCache cache;
+    private final MessageLimits limits;
+    private final Supplier<HeaderPolicy> policy;
+    /** Null if SDP bodies are not checked */
+    private final SdpValidator sdp;
 
+    /**
+     * Creates a service with default limits and without result cache whose
+     * metrics are not published, for use outside the Spring context
+     */
     public SipValidatorService() {
-        this.messageFactory = new MessageFactoryImpl();
+        this(ValidationMetrics.noop(), ValidationCache.disabled(), MessageLimits.defaults());
+    }
+
+    /**
+     * Creates a service without header policy
+     */
+    public SipValidatorService(ValidationMetrics metrics, ValidationCache cache, MessageLimits limits) {
+        this(metrics, cache, limits, () -> HeaderPolicy.NONE, null);
+    }
+
+    /**
+     * Creates a service without header policy that checks SDP bodies
+     */
+    public SipValidatorService(ValidationMetrics metrics, ValidationCache cache, MessageLimits limits,
+                               SdpValidator sdp) {
+        this(metrics, cache, limits, () -> HeaderPolicy.NONE, sdp);
+    }
+
+    @Autowired
+    public SipValidatorService(ValidationMetrics metrics, ValidationCache cache, MessageLimits limits,
+                               HeaderPolicyService policyService, SipValidatorProperties properties) {
+        this(metrics, cache, limits, policyService::current, properties.getSdp().isEnabled()
+            ? new SdpValidator(properties.getSdp().getCodecs()) : null);
+    }
+
+    private SipValidatorService(ValidationMetrics metrics, ValidationCache cache, MessageLimits limits,
+                                Supplier<HeaderPolicy> policy, SdpValidator sdp) {
+        this.messageParser = new StringMsgParser();
         this.headerFactory = new HeaderFactoryImpl();
+        this.metrics = metrics;
+        this.cache = cache;
+        this.limits = limits;
+        this.policy = policy;
+        this.sdp = sdp;
     }
 
     /** 
@@ -37,31 +116,129 @@ public class SipValidatorService {
      * @return ValidationResult with success/failure status and messages
      */
     public ValidationResult validateMessage(String messageText) {
+        LimitViolation violation = limits.checkMessageText(messageText);
+        if (violation != null) {
+            return reject(violation, System.nanoTime());
+        }
+        return validateMessage(messageText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Validates a complete SIP message given as UTF-8 encoded bytes
+     * @param message The complete message, the array is not modified
+     * @return ValidationResult with success/failure status and messages.
+     *         Results served from the cache are unmodifiable.
+     */
+    public ValidationResult validateMessage(byte[] message) {
+        long start = System.nanoTime();
+        metrics.recordMessageSize(message.length);
+        LimitViolation violation = limits.checkMessage(message);
+        if (violation != null) {
+            return reject(violation, start);
+        }
+
+        // Make sure CRLF is used as line separator and the message is terminated with CRLF as per SIP spec
+        byte[] normalized = SipMessageNormalizer.normalize(message);
+
+        HeaderPolicy currentPolicy = policy.get();
+        CachedValidation validation = cache.getMessage(normalized, currentPolicy,
+            content -> parseMessage(content, null, currentPolicy));
+        recordMessageValidation(validation, start);
+        return validation.result();
+    }
+
+    /**
+     * Validates a complete SIP message and reports on each header separately.
+     * Unlike {@link #validateMessage(String)}, headers that fail to parse make
+     * the message invalid instead of being skipped, and every header line is
+     * listed with its validity, header class, line number and error position.
+     * The analysis takes the same single parse, but results are not cached.
+     * @param messageText The complete message text (e.g., "INVITE sip:...")
+     * @return ValidationResult with success/failure status, messages and per-header results
+     */
+    public ValidationResult validateMessageDetailed(String messageText) {
+        long start = System.nanoTime();
+        LimitViolation violation = limits.checkMessageText(messageText);
+        if (violation != null) {
+            return reject(violation, start);
+        }
+        byte[] message = messageText.getBytes(StandardCharsets.UTF_8);
+        metrics.recordMessageSize(message.length);
+        violation = limits.checkMessage(message);
+        if (violation != null) {
+            return reject(violation, start);
+        }
+
+        CachedValidation validation = parseMessage(SipMessageNormalizer.normalize(message), new HeaderReport(),
+            policy.get());
+        recordMessageValidation(validation, start);
+        return validation.result();
+    }
+
+    /**
+     * Records the metrics of a validation, also for results served from the cache
+     */
+    private void recordMessageValidation(CachedValidation validation, long start) {
+        for (String headerName : validation.result().getHeaderNames()) {
+            metrics.recordHeaderSeen(headerName);
+        }
+        if (validation.errorCategory() != null) {
+            metrics.recordError(validation.errorCategory());
+        }
+        for (PolicyViolation violation : validation.result().getPolicyViolations()) {
+            metrics.recordPolicyViolation(violation.getRule());
+        }
+        for (ResultMessage error : validation.result().getErrorEntries()) {
+            if (ValidationMetrics.SDP_CODES.contains(error.code())) {
+                metrics.recordSdpProblem(error.code());
+            }
+        }
+        metrics.recordMessageValidation(validation.type(), validation.result().isValid(), start);
+    }
+
+    /**
+     * Describes a message that was not parsed because it exceeds a size limit
+     */
+    private ValidationResult reject(LimitViolation violation, long start) {
+        metrics.recordRejected(violation.getLimit());
+        metrics.recordMessageValidation(ValidationMetrics.TYPE_UNKNOWN, false, start);
+        return ValidationResult.rejected(violation);
+    }
+
+    /**
+     * Parses a normalized message and describes the outcome
+     * @param report Collects per-header results, null to skip headers that fail to parse like MessageFactoryImpl does
+     * @param policy Rules the parsed message is checked against
+     */
+    private CachedValidation parseMessage(byte[] message, HeaderReport report, HeaderPolicy policy) {
         ValidationResult result = new ValidationResult();
+        String type = ValidationMetrics.TYPE_UNKNOWN;
         
         try {
-             // Make sure CRLF is used as line separator and the message is terminated with CRLF as per SIP spec
-            messageText = messageText.replaceAll("\\r?\\n", "\r\n");
-            if (!messageText.endsWith("\r\n")) {
-                messageText = messageText + "\r\n";
-            }          
-
             // If the first line starts with "SIP/2.0", it's a response. Otherwise, it's a request.
-            String firstLine = messageText.split("\\r\\n", 2)[0].trim();  
+            boolean expectResponse = SipMessageNormalizer.isResponse(message);
 
-            Object sipMessage;
-            if ( !firstLine.startsWith("SIP/2.0") ) {
-                sipMessage = ((MessageFactoryImpl)messageFactory).createRequest(messageText);
-            } else {
-                sipMessage = ((MessageFactoryImpl)messageFactory).createResponse(messageText);
+            // The bytes go to the parser directly, MessageFactoryImpl would only encode a String again.
+            // Like MessageFactoryImpl, requests are parsed strictly (rejecting trailing garbage) and responses are not.
+            SIPMessage sipMessage = messageParser.parseSIPMessage(message, true, !expectResponse, report);
+            if (sipMessage == null || (sipMessage instanceof SIPResponse) != expectResponse) {
+                throw new ParseException(new String(message, StandardCharsets.UTF_8), 0);
+            }
+
+            if (report != null) {
+                return describeMessage(message, sipMessage, report, policy, result);
             }
 
+            type = sipMessage instanceof SIPResponse response
+                ? ValidationMetrics.responseType(response.getStatusCode())
+                : ValidationMetrics.requestType(((SIPRequest) sipMessage).getMethod());
+
             // If we get here, message passed basic parsing
             result.setValid(true);
-            result.addMessage("Message successfully parsed");
+            result.addMessage(ResultCode.MESSAGE_PARSED);
             
             // Add message type information
-            result.addMessage("Message type: " + sipMessage.getClass().getSimpleName());
+            result.addMessage(ResultCode.MESSAGE_TYPE, sipMessage.getClass().getSimpleName());
             
             // Extract headers from the SIP message and add RFC references
             if (sipMessage instanceof Request) {
@@ -71,15 +248,86 @@ public class SipValidatorService {
                 Response response = (Response) sipMessage;
                 extractHeadersFromMessage(response, result);
             }
-            
-            return result;
+
+            boolean keptPolicy = applyPolicy(policy, sipMessage, result);
+            boolean validSdp = checkSdp(message, sipMessage, result);
+            return new CachedValidation(type, !keptPolicy ? ValidationMetrics.POLICY
+                : validSdp ? null : ValidationMetrics.SDP, result);
         } catch (ParseException e) {
-            return result.addError("Parse error: " + e.getMessage());
+            result.addError(ResultCode.PARSE_ERROR, e.getMessage());
+            return new CachedValidation(type, ValidationMetrics.errorCategory(e), result);
         } catch (Exception e) {
-            return result.addError("Validation error: " + e.getMessage());
+            result.addError(ResultCode.VALIDATION_ERROR, e.getMessage());
+            return new CachedValidation(type, ValidationMetrics.errorCategory(e), result);
         }
     }
-    
+
+    /**
+     * Builds the per-header result of a message parsed with a HeaderReport
+     */
+    private CachedValidation describeMessage(byte[] message, SIPMessage sipMessage, HeaderReport report,
+                                             HeaderPolicy policy, ValidationResult result) {
+        ParseException startLineError = report.getStartLineError();
+        String type = ValidationMetrics.TYPE_UNKNOWN;
+        if (startLineError == null) {
+            type = sipMessage instanceof SIPResponse response
+                ? ValidationMetrics.responseType(response.getStatusCode())
+                : ValidationMetrics.requestType(((SIPRequest) sipMessage).getMethod());
+        }
+
+        result.setValid(true);
+        report.describe(message, sipMessage, result);
+        result.addMessage(result.isValid() ? ResultCode.MESSAGE_PARSED : ResultCode.MESSAGE_PARSED_WITH_ERRORS);
+        result.addMessage(ResultCode.MESSAGE_TYPE, sipMessage.getClass().getSimpleName());
+        result.addMessage(ResultCode.HEADER_COUNT, Integer.toString(result.getHeaderCount()));
+
+        ParseException error = startLineError != null ? startLineError : report.getFirstHeaderError();
+        boolean keptPolicy = applyPolicy(policy, sipMessage, result);
+        boolean validSdp = checkSdp(message, sipMessage, result);
+        String errorCategory = error != null ? ValidationMetrics.errorCategory(error)
+            : !keptPolicy ? ValidationMetrics.POLICY : validSdp ? null : ValidationMetrics.SDP;
+        return new CachedValidation(type, errorCategory, result);
+    }
+
+    /**
+     * Adds the policy violations of a parsed message to its result
+     * @return true if the message keeps the policy
+     */
+    private boolean applyPolicy(HeaderPolicy policy, SIPMessage sipMessage, ValidationResult result) {
+        List<PolicyViolation> violations = policy.evaluate(sipMessage);
+        for (PolicyViolation violation : violations) {
+            result.addPolicyViolation(violation);
+        }
+        return violations.isEmpty();
+    }
+
+    /**
+     * Checks the body of a parsed message if it is SDP and SDP checks are enabled.
+     * The parser keeps the body in an array of its own, which getRawContent
+     * returns without copying, and the check reads it in place.
+     * The parser replaces the Content-Length of leniently parsed responses by
+     * the length of everything after the header section, so the declared
+     * length is read from the message itself.
+     * @return false if the body has problems
+     */
+    private boolean checkSdp(byte[] message, SIPMessage sipMessage, ValidationResult result) {
+        ContentTypeHeader contentType = sipMessage.getContentTypeHeader();
+        if (sdp == null || contentType == null || !"application".equalsIgnoreCase(contentType.getContentType())
+                || !"sdp".equalsIgnoreCase(contentType.getContentSubType())) {
+            return true;
+        }
+        byte[] body = sipMessage.getRawContent();
+        int length = body != null ? body.length : 0;
+        int declaredLength = SipMessageFramer.parseContentLength(message, message.length - length);
+        if (declaredLength >= 0) {
+            length = Math.min(length, declaredLength);
+        }
+        int errors = result.getErrorEntries().size();
+        int media = sdp.validate(body != null ? body : new byte[0], 0, length, result);
+        result.addMessage(ResultCode.SDP_CHECKED, Integer.toString(media));
+        return result.getErrorEntries().size() == errors;
+    }
+
     /**
      * Extract headers from a SIP message and add RFC information
      */
@@ -97,21 +345,13 @@ public class SipValidatorService {
             if (headerNames != null) {
                 while (headerNames.hasNext()) {
                     String headerName = headerNames.next();
-                    RfcReference rfcRef = SipHeaderRfcMapping.getRfcReference(headerName);
-                    
-                    HeaderInfo headerInfo = new HeaderInfo(
-                        headerName,
-                        headerName,
-                        "SIP Header",
-                        rfcRef
-                    );
-                    result.addHeader(headerInfo);
+                    result.addHeaderName(headerName);
                 }
                 
-                result.addMessage("Found " + result.getHeaders().size() + " headers in the message");
+                result.addMessage(ResultCode.HEADER_COUNT, Integer.toString(result.getHeaderCount()));
             }
         } catch (Exception e) {
-            result.addMessage("Could not extract headers: " + e.getMessage());
+            result.addMessage(ResultCode.HEADERS_UNREADABLE, e.getMessage());
         }
     }
 
@@ -121,18 +361,39 @@ public class SipValidatorService {
      * @return ValidationResult with success/failure status and messages
      */
     public ValidationResult validateHeader(String headerText) {
+        long start = System.nanoTime();
+        LimitViolation violation = limits.checkHeaderText(headerText);
+        if (violation != null) {
+            metrics.recordRejected(violation.getLimit());
+            metrics.recordHeaderValidation(ValidationMetrics.TYPE_UNKNOWN, false, start);
+            return ValidationResult.rejected(violation);
+        }
+        CachedValidation validation = cache.getHeader(headerText, this::parseHeader);
+        if (validation.errorCategory() != null) {
+            metrics.recordError(validation.errorCategory());
+        }
+        metrics.recordHeaderValidation(validation.type(), validation.result().isValid(), start);
+        return validation.result();
+    }
+
+    /**
+     * Parses a single header and describes the outcome
+     */
+    private CachedValidation parseHeader(String headerText) {
         ValidationResult result = new ValidationResult();
+        String type = ValidationMetrics.TYPE_UNKNOWN;
         
         try {
             Header header = ((HeaderFactoryImpl)headerFactory).createHeader(headerText);
+            type = header.getClass().getSimpleName();
             
             // If we get here, header passed basic parsing
             result.setValid(true);
-            result.addMessage("Header successfully parsed");
+            result.addMessage(ResultCode.HEADER_PARSED);
             
             // Add header type information
-            result.addMessage("Header type: " + header.getClass().getSimpleName());
-            result.addMessage("Header canonical name: " + header.getName());
+            result.addMessage(ResultCode.HEADER_TYPE, header.getClass().getSimpleName());
+            result.addMessage(ResultCode.HEADER_CANONICAL_NAME, header.getName());
             
             // Create HeaderInfo with RFC reference
             String headerName = header.getName();
@@ -146,62 +407,213 @@ public class SipValidatorService {
             result.addHeader(headerInfo);
             
             if (rfcRef != null) {
-                result.addMessage("RFC Reference: " + rfcRef.getDisplayText());
+                result.addMessage(ResultCode.RFC_REFERENCE, rfcRef.getDisplayText());
             } else {
-                result.addMessage("No RFC reference found for header: " + headerName);
+                result.addMessage(ResultCode.NO_RFC_REFERENCE, headerName);
             }
             
-            return result;
+            return new CachedValidation(type, null, result);
         } catch (ParseException e) {
-            return result.addError("Parse error: " + e.getMessage());
+            result.addError(ResultCode.PARSE_ERROR, e.getMessage());
+            return new CachedValidation(type, ValidationMetrics.errorCategory(e), result);
         } catch (Exception e) {
-            return result.addError("Validation error: " + e.getMessage());
+            result.addError(ResultCode.VALIDATION_ERROR, e.getMessage());
+            return new CachedValidation(type, ValidationMetrics.errorCategory(e), result);
         }
     }
 
     /**
-     * Result class to hold validation outcomes
+     * Result class to hold validation outcomes. Messages and errors are kept
+     * as codes with their detail and only rendered into sentences when asked
+     * for, see ResultCode. Headers of the plain message validation are kept
+     * by name only, their HeaderInfo is built on demand with the shared
+     * RfcReference of the name.
      */
     public static class ValidationResult {
+        /** Type of the headers listed by the plain message validation */
+        static final String MESSAGE_HEADER_TYPE = "SIP Header";
+
         private boolean valid = false;
-        private List<String> messages = new ArrayList<>();
-        private List<String> errors = new ArrayList<>();
-        private List<HeaderInfo> headers = new ArrayList<>();
+        private List<ResultMessage> messages = new ArrayList<>(4);
+        private List<ResultMessage> errors = new ArrayList<>(0);
+        /** Headers of the plain message validation */
+        private List<String> headerNames = new ArrayList<>();
+        /** Headers of the header and detailed message validation */
+        private List<HeaderInfo> headers = new ArrayList<>(0);
+        private List<PolicyViolation> policyViolations = new ArrayList<>(0);
+        private LimitViolation rejection;
+        /** Set on snapshots, whose mutators throw UnsupportedOperationException */
+        private boolean unmodifiable;
+
+        /**
+         * @return an invalid result for input that was rejected without parsing
+         */
+        public static ValidationResult rejected(LimitViolation violation) {
+            ValidationResult result = new ValidationResult();
+            result.addError(ResultCode.LIMIT_EXCEEDED, violation.describe());
+            result.setRejection(violation);
+            return result;
+        }
 
         public boolean isValid() {
             return valid;
         }
 
         public void setValid(boolean valid) {
+            checkModifiable();
             this.valid = valid;
         }
 
+        /**
+         * @return the messages rendered as sentences, a new list on every call
+         */
         public List<String> getMessages() {
-            return messages;
+            return render(messages);
         }
 
+        /**
+         * @return the errors rendered as sentences, a new list on every call
+         */
         public List<String> getErrors() {
+            return render(errors);
+        }
+
+        public List<ResultMessage> getMessageEntries() {
+            return messages;
+        }
+
+        public List<ResultMessage> getErrorEntries() {
             return errors;
         }
 
+        /**
+         * @return one HeaderInfo per header, built on every call for the plain message validation
+         */
         public List<HeaderInfo> getHeaders() {
-            return headers;
+            if (headerNames.isEmpty()) {
+                return headers;
+            }
+            List<HeaderInfo> infos = new ArrayList<>(headerNames.size());
+            for (String name : headerNames) {
+                infos.add(new HeaderInfo(name, name, MESSAGE_HEADER_TYPE, SipHeaderRfcMapping.getRfcReference(name)));
+            }
+            return infos;
         }
 
-        public ValidationResult addMessage(String message) {
-            this.messages.add(message);
+        /**
+         * @return the names of the headers as given in the message
+         */
+        public List<String> getHeaderNames() {
+            if (!headerNames.isEmpty() || headers.isEmpty()) {
+                return headerNames;
+            }
+            List<String> names = new ArrayList<>(headers.size());
+            for (HeaderInfo header : headers) {
+                names.add(header.getName());
+            }
+            return names;
+        }
+
+        public int getHeaderCount() {
+            return headerNames.size() + headers.size();
+        }
+
+        public List<PolicyViolation> getPolicyViolations() {
+            return policyViolations;
+        }
+
+        /**
+         * @return the exceeded limit if the input was rejected without parsing, otherwise null
+         */
+        public LimitViolation getRejection() {
+            return rejection;
+        }
+
+        public void setRejection(LimitViolation rejection) {
+            checkModifiable();
+            this.rejection = rejection;
+        }
+
+        public ValidationResult addMessage(ResultCode code) {
+            checkModifiable();
+            this.messages.add(ResultMessage.of(code));
+            return this;
+        }
+
+        public ValidationResult addMessage(ResultCode code, String detail) {
+            checkModifiable();
+            this.messages.add(new ResultMessage(code, detail));
             return this;
         }
 
-        public ValidationResult addError(String error) {
-            this.errors.add(error);
+        public ValidationResult addError(ResultCode code, String detail) {
+            checkModifiable();
+            this.errors.add(new ResultMessage(code, detail));
             this.valid = false;
             return this;
         }
 
         public ValidationResult addHeader(HeaderInfo header) {
+            checkModifiable();
             this.headers.add(header);
             return this;
         }
+
+        /**
+         * Adds a header of the plain message validation, see getHeaders
+         */
+        public ValidationResult addHeaderName(String name) {
+            checkModifiable();
+            this.headerNames.add(name);
+            return this;
+        }
+
+        /**
+         * Adds a broken policy rule, which also makes the result invalid
+         */
+        public ValidationResult addPolicyViolation(PolicyViolation violation) {
+            checkModifiable();
+            this.policyViolations.add(violation);
+            return addError(ResultCode.POLICY_VIOLATION, violation.getRule() + ": " + violation.getDescription());
+        }
+
+        /**
+         * @return an unmodifiable copy of this result, safe to share between threads.
+         *         Headers are copied as well, so later changes to this result do not show.
+         *         Its setters and add methods throw UnsupportedOperationException.
+         */
+        public ValidationResult snapshot() {
+            if (unmodifiable) {
+                return this;
+            }
+            ValidationResult copy = new ValidationResult();
+            copy.valid = valid;
+            copy.messages = List.copyOf(messages);
+            copy.errors = List.copyOf(errors);
+            copy.headerNames = List.copyOf(headerNames);
+            List<HeaderInfo> headerCopies = new ArrayList<>(headers.size());
+            for (HeaderInfo header : headers) {
+                headerCopies.add(header.unmodifiableCopy());
+            }
+            copy.headers = List.copyOf(headerCopies);
+            copy.policyViolations = List.copyOf(policyViolations);
+            copy.rejection = rejection;
+            copy.unmodifiable = true;
+            return copy;
+        }
+
+        private void checkModifiable() {
+            if (unmodifiable) {
+                throw new UnsupportedOperationException("Snapshot of a validation result");
+            }
+        }
+
+        private static List<String> render(List<ResultMessage> entries) {
+            List<String> rendered = new ArrayList<>(entries.size());
+            for (ResultMessage entry : entries) {
+                rendered.add(entry.render());
+            }
+            return rendered;
+        }
     }
-}
\ No newline at end of file
+}
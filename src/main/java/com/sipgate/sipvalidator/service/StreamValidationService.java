@@ -0,0 +1,222 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.stereotype.Service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.LimitViolation;
+import com.sipgate.sipvalidator.model.SequenceViolation;
+import com.sipgate.sipvalidator.model.ValidationRequest;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Validates an arbitrarily long stream of messages while it is being read and
+ * writes one NDJSON result line per message. Only one message is held in
+ * memory at a time. Optionally, valid messages are also checked for call flow
+ * problems across the stream by a DialogSequenceValidator, whose state is
+ * bounded by "sipvalidator.sequence.max-calls".
+ */
+@Service
+public class StreamValidationService {
+
+    /**
+     * Framing of the input stream
+     */
+    public enum Format {
+        /** One JSON ValidationRequest per line */
+        NDJSON,
+        /** Raw SIP messages, framed by Content-Length or the empty line after the headers */
+        SIP
+    }
+
+    private static final byte LF = '\n';
+
+    private final SipValidatorService validatorService;
+    private final ObjectMapper objectMapper;
+    private final ValidationMetrics metrics;
+    private final int maxMessageSize;
+    private final SipValidatorProperties.Sequence sequenceConfig;
+
+    public StreamValidationService(SipValidatorService validatorService, ObjectMapper objectMapper,
+                                   ValidationMetrics metrics, SipValidatorProperties properties) {
+        this.validatorService = validatorService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.maxMessageSize = properties.getStream().getMaxMessageSize();
+        this.sequenceConfig = properties.getSequence();
+    }
+
+    /**
+     * Reads messages from the input until it ends and writes a result line for each
+     * @param in The request body
+     * @param format How messages are delimited in the body
+     * @param sequence Whether to check the call flow across the messages as well
+     * @param out Receives one JSON ValidationResponse per line, in input order
+     */
+    public void validate(InputStream in, Format format, boolean sequence, OutputStream out) throws IOException {
+        ResultWriter writer = new ResultWriter(out, sequence
+            ? new DialogSequenceValidator(sequenceConfig.getMaxCalls(), sequenceConfig.getIdleTimeout())
+            : null);
+        try {
+            if (format == Format.NDJSON) {
+                readLines(in, writer);
+            } else {
+                SipMessageFramer framer = new SipMessageFramer(maxMessageSize, writer);
+                framer.consume(in);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    /**
+     * Splits the input into lines without buffering more than one line
+     */
+    private void readLines(InputStream in, ResultWriter writer) throws IOException {
+        byte[] chunk = new byte[8192];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        boolean overlong = false;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = chunk[i];
+                if (b == LF) {
+                    if (overlong) {
+                        writer.onOversized(lineLength);
+                    } else {
+                        writer.onJsonLine(line, lineLength);
+                    }
+                    lineLength = 0;
+                    overlong = false;
+                } else if (overlong) {
+                    lineLength++;
+                } else if (lineLength == maxMessageSize) {
+                    overlong = true;
+                    lineLength++;
+                    line = new byte[1024];
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, Math.min(maxMessageSize, line.length * 2));
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+        }
+        if (overlong) {
+            writer.onOversized(lineLength);
+        } else {
+            writer.onJsonLine(line, lineLength);
+        }
+    }
+
+    /**
+     * Validates framed input and writes the result lines
+     */
+    private class ResultWriter implements SipMessageFramer.Listener {
+        private final OutputStream out;
+        /** Null unless the call flow is checked */
+        private final DialogSequenceValidator sequenceValidator;
+        private long count;
+
+        ResultWriter(OutputStream out, DialogSequenceValidator sequenceValidator) {
+            this.out = out;
+            this.sequenceValidator = sequenceValidator;
+        }
+
+        void onJsonLine(byte[] line, int length) {
+            if (isBlank(line, length)) {
+                return;
+            }
+            ValidationRequest request;
+            try {
+                request = objectMapper.readValue(line, 0, length, ValidationRequest.class);
+            } catch (JacksonException e) {
+                write(error(null, "Invalid JSON line: " + e.getOriginalMessage()));
+                return;
+            }
+            String messageText = request.getMessageText();
+            ValidationResponse response;
+            if (messageText != null && !messageText.isEmpty()) {
+                response = ValidationResponse.of(request.isDetailed()
+                    ? validatorService.validateMessageDetailed(messageText)
+                    : validatorService.validateMessage(messageText));
+                if (sequenceValidator != null && response.isValid()) {
+                    checkSequence(messageText.getBytes(StandardCharsets.UTF_8), response);
+                }
+            } else {
+                response = error(null, "Request must include messageText");
+            }
+            response.setId(request.getId() != null ? request.getId() : String.valueOf(count + 1));
+            write(response);
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            ValidationResponse response = ValidationResponse.of(validatorService.validateMessage(message));
+            if (sequenceValidator != null && response.isValid()) {
+                checkSequence(message, response);
+            }
+            response.setId(String.valueOf(count + 1));
+            write(response);
+        }
+
+        @Override
+        public void onOversized(long discardedBytes) {
+            LimitViolation violation = new LimitViolation(MessageLimits.MESSAGE_SIZE, maxMessageSize, discardedBytes);
+            metrics.recordRejected(violation.getLimit());
+            ValidationResponse response = ValidationResponse.of(ValidationResult.rejected(violation));
+            response.setId(String.valueOf(count + 1));
+            write(response);
+        }
+
+        private void checkSequence(byte[] message, ValidationResponse response) {
+            List<SequenceViolation> violations = sequenceValidator.check(message);
+            if (!violations.isEmpty()) {
+                for (SequenceViolation violation : violations) {
+                    metrics.recordSequenceViolation(violation.getType());
+                }
+                response.setSequenceViolations(violations);
+            }
+        }
+
+        private ValidationResponse error(String id, String error) {
+            ValidationResponse response = new ValidationResponse();
+            response.setId(id != null ? id : String.valueOf(count + 1));
+            response.setValid(false);
+            response.getErrors().add(error);
+            return response;
+        }
+
+        private void write(ValidationResponse response) {
+            count++;
+            try {
+                out.write(objectMapper.writeValueAsBytes(response));
+                out.write(LF);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean isBlank(byte[] line, int length) {
+            for (int i = 0; i < length; i++) {
+                if (line[i] != ' ' && line[i] != '\t' && line[i] != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of validation results, keyed by the normalized message bytes
+ * together with the header policy they were checked against, or the header
+ * text. Cached results are immutable snapshots shared between
+ * callers. Hit, miss and eviction counts are published as cache metrics
+ * named "sipvalidator.validation".
+ */
+@Component
+public class ValidationCache {
+
+    /** Rough per-entry overhead of key, result object and cache node, in bytes */
+    private static final int ENTRY_OVERHEAD = 256;
+    /** Rough size of one HeaderInfo or message line of a cached result, in bytes */
+    private static final int LINE_WEIGHT = 64;
+
+    private final Cache<Object, CachedValidation> cache;
+
+    @Autowired
+    public ValidationCache(SipValidatorProperties properties, MeterRegistry registry) {
+        SipValidatorProperties.Cache config = properties.getCache();
+        if (!config.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(config.getMaximumWeight())
+            .weigher(ValidationCache::weigh)
+            .expireAfterWrite(config.getTtl())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "sipvalidator.validation");
+    }
+
+    private ValidationCache() {
+        this.cache = null;
+    }
+
+    /**
+     * @return a cache that never stores anything
+     */
+    public static ValidationCache disabled() {
+        return new ValidationCache();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the cached validation of a message or computes and caches it
+     * @param normalized The message after line ending normalization
+     * @param policy The policy the loader checks against. Results checked against
+     *               another policy are not returned, and age out of the cache.
+     * @param loader Validates the message on a cache miss
+     */
+    CachedValidation getMessage(byte[] normalized, HeaderPolicy policy, Function<byte[], CachedValidation> loader) {
+        if (cache == null) {
+            return loader.apply(normalized);
+        }
+        MessageKey key = new MessageKey(normalized, policy);
+        CachedValidation cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = loader.apply(normalized).snapshot();
+            // The caller may still own the array, so the stored key gets its own copy
+            cache.put(new MessageKey(normalized.clone(), policy, key.hash), cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the cached validation of a header or computes and caches it
+     * @param headerText The header as given by the client
+     * @param loader Validates the header on a cache miss
+     */
+    CachedValidation getHeader(String headerText, Function<String, CachedValidation> loader) {
+        if (cache == null) {
+            return loader.apply(headerText);
+        }
+        return cache.get(headerText, key -> loader.apply(headerText).snapshot());
+    }
+
+    private static int weigh(Object key, CachedValidation value) {
+        int keySize = key instanceof MessageKey messageKey ? messageKey.content.length : ((String) key).length();
+        return (int) Math.min(Integer.MAX_VALUE, keySize + weighResult(value.result()));
+    }
+
+    /**
+     * @return the rough heap size of a result in bytes, without the input it was validated from
+     */
+    static long weighResult(ValidationResult result) {
+        int lines = result.getHeaderCount() + result.getMessageEntries().size() + result.getErrorEntries().size();
+        return ENTRY_OVERHEAD + (long) lines * LINE_WEIGHT;
+    }
+
+    /**
+     * A validation outcome together with what the metrics need to know about it
+     * @param type Metrics type tag of the validated message or header
+     * @param errorCategory Metrics category of the failure, null if the input is valid
+     * @param result The validation result
+     */
+    record CachedValidation(String type, String errorCategory, ValidationResult result) {
+
+        CachedValidation snapshot() {
+            return new CachedValidation(type, errorCategory, result.snapshot());
+        }
+    }
+
+    /**
+     * Message bytes compared by content, with the hash computed only once, and
+     * the policy instance they were checked against
+     */
+    private static final class MessageKey {
+        private final byte[] content;
+        private final HeaderPolicy policy;
+        private final int hash;
+
+        MessageKey(byte[] content, HeaderPolicy policy) {
+            this(content, policy, Arrays.hashCode(content));
+        }
+
+        MessageKey(byte[] content, HeaderPolicy policy, int hash) {
+            this.content = content;
+            this.policy = policy;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof MessageKey key && key.hash == hash && key.policy == policy
+                && Arrays.equals(key.content, content);
+        }
+    }
+}
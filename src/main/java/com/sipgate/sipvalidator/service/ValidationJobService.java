@@ -0,0 +1,435 @@
+package com.sipgate.sipvalidator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.JobStatus.State;
+import com.sipgate.sipvalidator.model.ValidationRequest;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates large submissions asynchronously. A submitted job gets an id
+ * right away and waits in a bounded queue for one of a fixed number of
+ * workers. When the queue is full, or the messages of the queued and running
+ * jobs would take up more than "sipvalidator.jobs.max-queued-size",
+ * submissions are refused instead of piling up, which callers report as 503
+ * so clients back off.
+ *
+ * A worker validates its job in chunks on the batch pool and appends each
+ * chunk's results to the {@link JobStore}, so clients can page through or
+ * stream the results of a running job. Finished jobs are removed once their
+ * ttl has passed, and earlier, oldest first, while the stored jobs hold more
+ * results than "sipvalidator.jobs.max-retained-results" or a larger size
+ * than "sipvalidator.jobs.max-retained-size". A submission counts with all of
+ * its messages right away, and is refused if removing finished jobs does not
+ * make room for it.
+ */
+@Service
+public class ValidationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ValidationJobService.class);
+
+    /** Number of results written to a stream at once */
+    private static final int STREAM_PAGE = 1000;
+    /** How long a stream waits for progress before it checks the job again */
+    private static final long PROGRESS_WAIT_MILLIS = 1000;
+    private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+    private static final String INTERRUPTED = "Interrupted by a shutdown";
+
+    private final BatchValidationService batchValidationService;
+    private final JobStore store;
+    private final ObjectMapper objectMapper;
+    private final SipValidatorProperties.Jobs config;
+    private final int chunkSize;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper;
+    private final ConcurrentMap<String, RunningJob> running = new ConcurrentHashMap<>();
+    private final Counter rejected;
+    /** Total length of the messages of queued and running jobs */
+    private final AtomicLong queuedSize = new AtomicLong();
+
+    public ValidationJobService(BatchValidationService batchValidationService, JobStore store,
+                                ObjectMapper objectMapper, SipValidatorProperties properties,
+                                MeterRegistry registry) {
+        this.batchValidationService = batchValidationService;
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.config = properties.getJobs();
+        this.chunkSize = Math.max(1, Math.min(config.getChunkSize(), batchValidationService.getMaxSize()));
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(config.getQueueCapacity()),
+            task -> new Thread(task, "validation-job-" + threads.incrementAndGet()));
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "validation-job-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.rejected = Counter.builder("sipvalidator.jobs.rejected")
+            .description("Job submissions refused because the queue or the retained results were full")
+            .register(registry);
+        Gauge.builder("sipvalidator.jobs.queue", executor, pool -> pool.getQueue().size())
+            .description("Submitted jobs waiting for a worker")
+            .register(registry);
+
+        failInterruptedJobs();
+        sweeper.scheduleWithFixedDelay(this::expire,
+            SWEEP_INTERVAL.toMillis(), SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the maximum number of messages of a job
+     */
+    public int getMaxSize() {
+        return config.getMaxSize();
+    }
+
+    /**
+     * Queues a job validating the given messages
+     * @return the status of the queued job
+     * @throws IllegalArgumentException if more than {@link #getMaxSize()} messages are given
+     * @throws RejectedExecutionException if the queue is full or there is no room for the results
+     */
+    public JobStatus submit(List<ValidationRequest> requests) {
+        if (requests.size() > config.getMaxSize()) {
+            throw new IllegalArgumentException(
+                "Job contains " + requests.size() + " messages, maximum is " + config.getMaxSize());
+        }
+        long size = 0;
+        for (ValidationRequest request : requests) {
+            size += request.getMessageText() != null ? request.getMessageText().length() : 0;
+        }
+
+        JobStatus status = new JobStatus();
+        status.setId(UUID.randomUUID().toString());
+        status.setState(State.QUEUED);
+        status.setTotal(requests.size());
+        status.setSubmitted(Instant.now());
+
+        JobStatus queued = status.copy();
+        RunningJob job = new RunningJob(status, requests, size);
+        admit(queued, size);
+        running.put(status.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            running.remove(status.getId());
+            store.delete(status.getId());
+            queuedSize.addAndGet(-size);
+            rejected.increment();
+            throw new RejectedExecutionException("Too many queued jobs, try again later", e);
+        }
+        return queued;
+    }
+
+    /**
+     * Stores a new job if there is room for its messages and results
+     * @throws RejectedExecutionException if there is no room
+     */
+    private synchronized void admit(JobStatus status, long size) {
+        // A single job larger than the limit is still accepted while nothing else is queued
+        long queued = queuedSize.get();
+        if (queued > 0 && queued + size > config.getMaxQueuedSize()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many queued messages, try again later");
+        }
+        if (!enforceRetention(status.getTotal())) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many retained results, try again later");
+        }
+        queuedSize.addAndGet(size);
+        store.create(status);
+    }
+
+    public Optional<JobStatus> status(String id) {
+        return store.status(id);
+    }
+
+    /**
+     * @return the status of the job together with up to limit results from offset, empty if there is no such job
+     */
+    public Optional<JobResults> results(String id, int offset, int limit) {
+        return store.status(id).map(status -> new JobResults(status,
+            store.results(id, offset, Math.max(0, Math.min(limit, status.getCompleted() - offset)))));
+    }
+
+    /**
+     * Writes the results of a job from offset as NDJSON, waiting for the
+     * results of a running job until it finishes
+     * @return false if there is no such job
+     */
+    public boolean streamResults(String id, int offset, OutputStream out) throws IOException {
+        Optional<JobStatus> status = store.status(id);
+        if (status.isEmpty()) {
+            return false;
+        }
+        int position = offset;
+        while (status.isPresent()) {
+            int available = status.get().getCompleted() - position;
+            if (available > 0) {
+                for (ValidationResponse result : store.results(id, position, Math.min(available, STREAM_PAGE))) {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                    position++;
+                }
+                out.flush();
+            } else if (status.get().getState().isFinished()) {
+                break;
+            } else {
+                RunningJob job = running.get(id);
+                if (job == null) {
+                    break;
+                }
+                try {
+                    job.awaitProgress(position, PROGRESS_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            status = store.status(id);
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the job if it has not finished yet and removes it with its results
+     * @return false if there is no such job
+     */
+    public boolean delete(String id) {
+        if (store.status(id).isEmpty()) {
+            return false;
+        }
+        RunningJob job = running.get(id);
+        if (job != null) {
+            synchronized (job) {
+                job.cancelled = true;
+                store.delete(id);
+                job.notifyAll();
+            }
+        } else {
+            store.delete(id);
+        }
+        return true;
+    }
+
+    private void run(RunningJob job) {
+        JobStatus status = job.status;
+        try {
+            if (!write(job, () -> {
+                status.setState(State.RUNNING);
+                store.update(status);
+            })) {
+                return;
+            }
+            List<ValidationRequest> requests = job.requests;
+            for (int from = 0; from < requests.size(); from += chunkSize) {
+                if (executor.isShutdown()) {
+                    finish(job, State.FAILED, INTERRUPTED);
+                    return;
+                }
+                List<ValidationResponse> results = batchValidationService.validateRequests(
+                    requests.subList(from, Math.min(from + chunkSize, requests.size())));
+                if (!write(job, () -> {
+                    for (ValidationResponse result : results) {
+                        if (result.isValid()) {
+                            status.setValid(status.getValid() + 1);
+                        } else {
+                            status.setInvalid(status.getInvalid() + 1);
+                        }
+                    }
+                    status.setCompleted(status.getCompleted() + results.size());
+                    store.append(status, results);
+                })) {
+                    return;
+                }
+            }
+            finish(job, State.COMPLETED, null);
+        } catch (RuntimeException e) {
+            if (executor.isShutdown()) {
+                // The batch pool may have been shut down first
+                finish(job, State.FAILED, INTERRUPTED);
+                return;
+            }
+            log.error("Validation job {} failed", status.getId(), e);
+            finish(job, State.FAILED, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        } finally {
+            running.remove(status.getId());
+            job.requests = null;
+            queuedSize.addAndGet(-job.size);
+        }
+    }
+
+    private void finish(RunningJob job, State state, String error) {
+        boolean written = write(job, () -> {
+            job.status.setState(state);
+            job.status.setFinished(Instant.now());
+            job.status.setError(error);
+            store.update(job.status);
+        });
+        if (written) {
+            enforceRetention(0);
+        }
+    }
+
+    /**
+     * Changes the stored job unless it was deleted, and wakes up waiting streams
+     * @return false if the job was deleted
+     */
+    private boolean write(RunningJob job, Runnable update) {
+        synchronized (job) {
+            if (job.cancelled) {
+                return false;
+            }
+            update.run();
+            job.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Removes finished jobs whose ttl has passed, then enforces the result limit
+     */
+    void expire() {
+        try {
+            Instant expired = Instant.now().minus(config.getTtl());
+            for (JobStatus status : store.list()) {
+                if (status.getState().isFinished() && status.getFinished().isBefore(expired)) {
+                    store.delete(status.getId());
+                }
+            }
+            enforceRetention(0);
+        } catch (RuntimeException e) {
+            log.warn("Removing expired validation jobs failed", e);
+        }
+    }
+
+    /**
+     * Removes finished jobs, oldest first, until the results of all stored
+     * jobs fit the retention limits. Unfinished jobs count with all of their
+     * messages, their results are still to come.
+     * @param reserved Number of results of a job about to be submitted
+     * @return false if the results do not fit even without finished jobs
+     */
+    private synchronized boolean enforceRetention(int reserved) {
+        List<JobStatus> jobs = store.list();
+        Map<String, Long> sizes = new HashMap<>();
+        long results = reserved;
+        long size = 0;
+        for (JobStatus status : jobs) {
+            long jobSize = store.size(status.getId());
+            sizes.put(status.getId(), jobSize);
+            results += status.getState().isFinished() ? status.getCompleted() : status.getTotal();
+            size += jobSize;
+        }
+        List<JobStatus> finished = jobs.stream()
+            .filter(status -> status.getState().isFinished())
+            .sorted(Comparator.comparing(JobStatus::getFinished))
+            .toList();
+        for (JobStatus status : finished) {
+            if (results <= config.getMaxRetainedResults() && size <= config.getMaxRetainedSize()) {
+                break;
+            }
+            store.delete(status.getId());
+            results -= status.getCompleted();
+            size -= sizes.get(status.getId());
+        }
+        return results <= config.getMaxRetainedResults() && size <= config.getMaxRetainedSize();
+    }
+
+    /**
+     * Jobs left unfinished by a previous run, with a persistent store, can never finish
+     */
+    private void failInterruptedJobs() {
+        for (JobStatus status : store.list()) {
+            if (!status.getState().isFinished()) {
+                status.setState(State.FAILED);
+                status.setFinished(Instant.now());
+                status.setError(INTERRUPTED);
+                store.update(status);
+            }
+        }
+    }
+
+    /**
+     * Stops the workers after their current chunk and fails all unfinished jobs
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        sweeper.shutdownNow();
+        executor.shutdown();
+        executor.getQueue().clear();
+        for (RunningJob job : running.values()) {
+            synchronized (job) {
+                if (job.status.getState() == State.QUEUED) {
+                    finish(job, State.FAILED, INTERRUPTED);
+                }
+            }
+        }
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A page of results together with the status it was read with
+     */
+    public record JobResults(JobStatus status, List<ValidationResponse> results) {
+    }
+
+    /**
+     * A queued or running job. Its status is only changed by the worker while
+     * holding the monitor of this object, deletion takes the same monitor.
+     */
+    private static final class RunningJob {
+        private final JobStatus status;
+        private List<ValidationRequest> requests;
+        /** Total length of the messages, counted in queuedSize until the job has run */
+        private final long size;
+        private boolean cancelled;
+
+        RunningJob(JobStatus status, List<ValidationRequest> requests, long size) {
+            this.status = status;
+            this.requests = requests;
+            this.size = size;
+        }
+
+        synchronized void awaitProgress(int completed, long timeoutMillis) throws InterruptedException {
+            if (!cancelled && status.getCompleted() <= completed && !status.getState().isFinished()) {
+                wait(timeoutMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.sipgate.sipvalidator.service;
+
+import org.springframework.stereotype.Component;
+
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.model.SequenceViolation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.text.ParseException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the validator. Meters are created once per tag
+ * combination and cached, so recording only costs a map lookup. All tag
+ * values come from bounded sets to keep the number of time series small.
+ */
+@Component
+public class ValidationMetrics {
+
+    /** Type tag of messages and headers that could not be parsed */
+    public static final String TYPE_UNKNOWN = "unknown";
+    /** Error category of messages that parse but break the header policy */
+    public static final String POLICY = "policy";
+    /** Error category of messages whose SDP body has problems */
+    public static final String SDP = "sdp";
+
+    private static final String TYPE_OTHER = "other";
+
+    private static final Set<String> METHODS = Set.of(
+        "INVITE", "ACK", "BYE", "CANCEL", "OPTIONS", "REGISTER", "PRACK", "SUBSCRIBE",
+        "NOTIFY", "PUBLISH", "INFO", "REFER", "MESSAGE", "UPDATE");
+
+    /** Result codes of SDP problems, see SdpValidator */
+    static final Set<ResultCode> SDP_CODES = EnumSet.of(
+        ResultCode.SDP_SYNTAX, ResultCode.SDP_CODEC, ResultCode.SDP_DIRECTION, ResultCode.SDP_ADDRESS);
+
+    private static final String[] RESPONSE_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx", "6xx"};
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Timer[]> messageTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer[]> headerTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> headerCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> policyCounters = new ConcurrentHashMap<>();
+    private final Map<SequenceViolation.Type, Counter> sequenceCounters = new EnumMap<>(SequenceViolation.Type.class);
+    private final Map<ResultCode, Counter> sdpCounters = new EnumMap<>(ResultCode.class);
+    private final Counter otherHeaderCounter;
+    private final DistributionSummary messageSize;
+
+    public ValidationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.otherHeaderCounter = headerCounter(TYPE_OTHER);
+        this.messageSize = DistributionSummary.builder("sipvalidator.message.size")
+            .description("Size of validated SIP messages")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(64.0)
+            .maximumExpectedValue(1024.0 * 1024.0)
+            .register(registry);
+        for (SequenceViolation.Type type : SequenceViolation.Type.values()) {
+            sequenceCounters.put(type, Counter.builder("sipvalidator.sequence.violations")
+                .description("Call flow problems found in message streams")
+                .tag("type", type.name().toLowerCase().replace('_', '-'))
+                .register(registry));
+        }
+        for (ResultCode code : SDP_CODES) {
+            sdpCounters.put(code, Counter.builder("sipvalidator.sdp.problems")
+                .description("Problems found in SDP bodies")
+                .tag("kind", code.name().substring("SDP_".length()).toLowerCase())
+                .register(registry));
+        }
+    }
+
+    /**
+     * @return metrics that are not published anywhere, for use outside the Spring context
+     */
+    public static ValidationMetrics noop() {
+        return new ValidationMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Records the duration and outcome of one message validation
+     * @param type Request method or response class, see {@link #requestType(String)} and {@link #responseType(int)}
+     * @param valid Outcome of the validation
+     * @param startNanos Value of {@link System#nanoTime()} when the validation started
+     */
+    public void recordMessageValidation(String type, boolean valid, long startNanos) {
+        record(messageTimers, "message", type, valid, startNanos);
+    }
+
+    /**
+     * Records the duration and outcome of one header validation
+     * @param type Simple class name of the parsed header
+     * @param valid Outcome of the validation
+     * @param startNanos Value of {@link System#nanoTime()} when the validation started
+     */
+    public void recordHeaderValidation(String type, boolean valid, long startNanos) {
+        record(headerTimers, "header", type, valid, startNanos);
+    }
+
+    public void recordMessageSize(int bytes) {
+        messageSize.record(bytes);
+    }
+
+    /**
+     * Counts a failed validation by the kind of problem that caused it
+     * @param category Error category as returned by {@link #errorCategory(Exception)}
+     */
+    public void recordError(String category) {
+        errorCounters.computeIfAbsent(category, key -> Counter.builder("sipvalidator.errors")
+            .description("Failed validations by error category")
+            .tag("category", key)
+            .register(registry))
+            .increment();
+    }
+
+    /**
+     * Counts input rejected for exceeding a size limit. Rejections are also
+     * counted as errors of category limit-exceeded.
+     * @param limit Name of the limit, one of the constants in {@link MessageLimits}
+     */
+    public void recordRejected(String limit) {
+        recordError("limit-exceeded");
+        rejectedCounters.computeIfAbsent(limit, key -> Counter.builder("sipvalidator.rejected")
+            .description("Input rejected without parsing because it exceeds a size limit")
+            .tag("limit", key)
+            .register(registry))
+            .increment();
+    }
+
+    /**
+     * Counts a broken header policy rule
+     * @param rule Name of the rule, the names come from the configuration
+     */
+    public void recordPolicyViolation(String rule) {
+        policyCounters.computeIfAbsent(rule, key -> Counter.builder("sipvalidator.policy.violations")
+            .description("Messages breaking a header policy rule")
+            .tag("rule", key)
+            .register(registry))
+            .increment();
+    }
+
+    /**
+     * Counts a problem found in an SDP body
+     * @param code One of the SDP result codes, e.g. SDP_CODEC
+     */
+    public void recordSdpProblem(ResultCode code) {
+        sdpCounters.get(code).increment();
+    }
+
+    /**
+     * Counts a call flow problem found by a DialogSequenceValidator
+     */
+    public void recordSequenceViolation(SequenceViolation.Type type) {
+        sequenceCounters.get(type).increment();
+    }
+
+    /**
+     * Counts a header seen in a parsed message. The name tag is the canonical
+     * name, so compact forms and every spelling of a header share one counter,
+     * and headers without RFC reference are counted together as other.
+     * @param headerName Name as given in the message
+     */
+    public void recordHeaderSeen(CharSequence headerName) {
+        String canonicalName = SipHeaderRfcMapping.getCanonicalName(headerName);
+        if (canonicalName == null) {
+            otherHeaderCounter.increment();
+            return;
+        }
+        Counter counter = headerCounters.get(canonicalName);
+        if (counter == null) {
+            counter = headerCounters.computeIfAbsent(canonicalName, this::headerCounter);
+        }
+        counter.increment();
+    }
+
+    /**
+     * @return the method tag value, other for extension methods
+     */
+    public static String requestType(String method) {
+        return METHODS.contains(method) ? method : TYPE_OTHER;
+    }
+
+    /**
+     * @return the response class tag value, e.g. 2xx
+     */
+    public static String responseType(int statusCode) {
+        int statusClass = statusCode / 100;
+        return statusClass >= 1 && statusClass <= 6 ? RESPONSE_CLASSES[statusClass - 1] : TYPE_OTHER;
+    }
+
+    /**
+     * Maps an exception to a small, fixed set of error categories
+     */
+    public static String errorCategory(Exception e) {
+        if (!(e instanceof ParseException)) {
+            return "internal";
+        }
+        String message = e.getMessage();
+        if (message == null) {
+            return "syntax";
+        }
+        if (message.contains("End of buffer")) {
+            return "truncated";
+        }
+        if (message.contains("Extraneous characters")) {
+            return "trailing-data";
+        }
+        if (message.contains("URI")) {
+            return "bad-uri";
+        }
+        if (message.contains("For input string")) {
+            return "bad-number";
+        }
+        return "syntax";
+    }
+
+    private void record(ConcurrentMap<String, Timer[]> timers, String kind, String type, boolean valid, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        Timer[] byOutcome = timers.get(type);
+        if (byOutcome == null) {
+            byOutcome = timers.computeIfAbsent(type, key -> new Timer[] {
+                timer(kind, key, "valid"),
+                timer(kind, key, "invalid")
+            });
+        }
+        byOutcome[valid ? 0 : 1].record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String kind, String type, String outcome) {
+        return Timer.builder("sipvalidator.validation")
+            .description("Time spent validating SIP messages and headers")
+            .tag("kind", kind)
+            .tag("type", type)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private Counter headerCounter(String name) {
+        return Counter.builder("sipvalidator.headers")
+            .description("Headers seen in validated messages")
+            .tag("name", name)
+            .register(registry);
+    }
+}
@@ -0,0 +1,110 @@
+package com.sipgate.sipvalidator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+
+import java.util.List;
+
+/**
+ * Validates a few sample messages and headers while the context starts, if
+ * "sipvalidator.warm-up.enabled" is set. This loads and initializes the
+ * JAIN-SIP lexers, parsers and header classes before the first request
+ * instead of during it, and makes a CDS training run that exits on refresh
+ * record those classes in the archive.
+ *
+ * The samples go through a service of their own so they do not show up in
+ * the metrics or the result cache. The property is checked at runtime, as
+ * conditions on beans are fixed by AOT processing.
+ */
+@Component
+public class ValidatorWarmUp implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ValidatorWarmUp.class);
+
+    private static final List<String> MESSAGES = List.of(
+        """
+        INVITE sip:bob@biloxi.example.com SIP/2.0
+        Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds;rport
+        Max-Forwards: 70
+        To: Bob <sip:bob@biloxi.example.com>
+        From: Alice <sip:alice@atlanta.example.com>;tag=1928301774
+        Call-ID: a84b4c76e66710@pc33.atlanta.example.com
+        CSeq: 314159 INVITE
+        Contact: <sip:alice@pc33.atlanta.example.com>
+        Record-Route: <sip:p1.example.com;lr>
+        Route: <sip:p2.example.com;lr>
+        Allow: INVITE, ACK, CANCEL, OPTIONS, BYE, REFER, NOTIFY
+        Supported: replaces, timer
+        Require: 100rel
+        Session-Expires: 1800;refresher=uac
+        P-Asserted-Identity: <sip:alice@atlanta.example.com>
+        User-Agent: Example UA/1.0
+        Content-Type: application/sdp
+        Content-Length: 10
+
+        v=0
+        s=-
+        """,
+        """
+        REGISTER sip:registrar.biloxi.example.com SIP/2.0
+        Via: SIP/2.0/TCP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7
+        Max-Forwards: 70
+        To: Bob <sip:bob@biloxi.example.com>
+        From: Bob <sip:bob@biloxi.example.com>;tag=456248
+        Call-ID: 843817637684230@998sdasdh09
+        CSeq: 1826 REGISTER
+        Contact: <sip:bob@192.0.2.4>;expires=7200
+        Authorization: Digest username="bob", realm="biloxi.example.com", nonce="ea9c8e88df84f1cec4341ae6cbe5a359", uri="sip:biloxi.example.com", response="dfe56131d1958046689d83306477ecc"
+        Expires: 7200
+        Content-Length: 0
+
+        """,
+        """
+        SIP/2.0 401 Unauthorized
+        Via: SIP/2.0/UDP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7;received=192.0.2.4
+        To: Bob <sip:bob@biloxi.example.com>;tag=2493k59kd
+        From: Bob <sip:bob@biloxi.example.com>;tag=456248
+        Call-ID: 843817637684230@998sdasdh09
+        CSeq: 1826 REGISTER
+        WWW-Authenticate: Digest realm="biloxi.example.com", qop="auth", nonce="ea9c8e88df84f1cec4341ae6cbe5a359", algorithm=MD5
+        Server: Example Registrar/1.0
+        Content-Length: 0
+
+        """,
+        "INVITE sip:bob@biloxi.example.com SIP/2.0\nVia: SIP/2.0/UDP pc33.atlanta.example.com\nCSeq: x\n\n");
+
+    private static final List<String> HEADERS = List.of(
+        "Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776asdhds",
+        "Max-Forwards: 70",
+        "Event: presence;id=1",
+        "Subscription-State: active;expires=600",
+        "Refer-To: <sip:carol@chicago.example.com>",
+        "Max-Forwards: x");
+
+    private final boolean enabled;
+
+    public ValidatorWarmUp(SipValidatorProperties properties) {
+        this.enabled = properties.getWarmUp().isEnabled();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        SipValidatorService validatorService = new SipValidatorService();
+        for (String message : MESSAGES) {
+            validatorService.validateMessage(message);
+            validatorService.validateMessageDetailed(message);
+        }
+        for (String header : HEADERS) {
+            validatorService.validateHeader(header);
+        }
+        log.info("Validator warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+}
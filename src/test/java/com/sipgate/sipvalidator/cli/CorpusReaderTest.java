@@ -0,0 +1,260 @@
+package com.sipgate.sipvalidator.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CorpusReaderTest {
+
+    private static final int MAX_FILE_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsAtMostMaxFileSizeOfDirectoryFiles() throws IOException {
+        Path corpus = Files.createDirectories(directory.resolve("corpus/sub"));
+        Files.writeString(corpus.resolve("small.sip"), "small");
+        Files.write(corpus.resolve("huge.sip"), content(10 * MAX_FILE_SIZE));
+
+        Map<String, byte[]> files = read(directory.resolve("corpus"));
+
+        assertThat(files).containsOnlyKeys("sub/small.sip", "sub/huge.sip");
+        assertThat(files.get("sub/small.sip")).asString(StandardCharsets.UTF_8).isEqualTo("small");
+        assertThat(files.get("sub/huge.sip")).isEqualTo(content(MAX_FILE_SIZE));
+    }
+
+    @Test
+    void readsAtMostMaxFileSizeOfZipEntries() throws IOException {
+        Path archive = directory.resolve("corpus.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.putNextEntry(new ZipEntry("dir/huge.sip"));
+            zip.write(content(10 * MAX_FILE_SIZE));
+            zip.putNextEntry(new ZipEntry("small.sip"));
+            zip.write("small".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Map<String, byte[]> files = read(archive);
+
+        assertThat(files).containsOnlyKeys("dir/huge.sip", "small.sip");
+        assertThat(files.get("dir/huge.sip")).isEqualTo(content(MAX_FILE_SIZE));
+    }
+
+    @Test
+    void readsAtMostMaxFileSizeOfTarEntriesAndSkipsTheRest() throws IOException {
+        Tar tar = new Tar()
+            .file("huge.sip", content(10 * MAX_FILE_SIZE + 7))
+            .file("next.sip", content(3));
+
+        Map<String, byte[]> files = read(tar.write(directory.resolve("corpus.tar")));
+
+        assertThat(files.get("huge.sip")).isEqualTo(content(MAX_FILE_SIZE));
+        assertThat(files.get("next.sip")).isEqualTo(content(3));
+    }
+
+    @Test
+    void readsTarEntriesOfEverySizeAroundTheBlockSize() throws IOException {
+        Tar tar = new Tar();
+        int[] sizes = {0, 1, 511, 512, 513, 1023, 1024};
+        for (int size : sizes) {
+            tar.file("file-" + size, content(size));
+        }
+
+        Map<String, byte[]> files = read(tar.write(directory.resolve("corpus.tar")));
+
+        assertThat(files).hasSize(sizes.length);
+        for (int size : sizes) {
+            assertThat(files.get("file-" + size)).as("file of %d bytes", size).isEqualTo(content(size));
+        }
+    }
+
+    @Test
+    void joinsUstarPrefixAndName() throws IOException {
+        Tar tar = new Tar().entry("file.sip", "some/deep/directory", (byte) '0', content(5));
+
+        assertThat(read(tar.write(directory.resolve("corpus.tar")))).containsOnlyKeys("some/deep/directory/file.sip");
+    }
+
+    @Test
+    void usesGnuLongNameForTheFollowingEntryOnly() throws IOException {
+        String longName = "directory/".repeat(20) + "message.sip";
+        byte[] nameContent = (longName + "\0").getBytes(StandardCharsets.UTF_8);
+        Tar tar = new Tar()
+            .entry("././@LongLink", "", (byte) 'L', nameContent)
+            .file(longName.substring(0, 99), content(4))
+            .file("short.sip", content(2));
+
+        Map<String, byte[]> files = read(tar.write(directory.resolve("corpus.tar")));
+
+        assertThat(files).containsOnlyKeys(longName, "short.sip");
+        assertThat(files.get(longName)).isEqualTo(content(4));
+    }
+
+    @Test
+    void skipsEntriesOtherThanRegularFiles() throws IOException {
+        Tar tar = new Tar()
+            .entry("dir/", "", (byte) '5', new byte[0])
+            .entry("pax", "", (byte) 'x', content(600))
+            .entry("link", "", (byte) '2', new byte[0])
+            .entry("old.sip", "", (byte) 0, content(10))
+            .file("new.sip", content(20));
+
+        Map<String, byte[]> files = read(tar.write(directory.resolve("corpus.tar")));
+
+        assertThat(files).containsOnlyKeys("old.sip", "new.sip");
+        assertThat(files.get("old.sip")).isEqualTo(content(10));
+    }
+
+    @Test
+    void readsGzipCompressedTar() throws IOException {
+        byte[] tar = new Tar().file("a.sip", content(700)).bytes();
+        Path archive = directory.resolve("corpus.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            out.write(tar);
+        }
+
+        assertThat(read(archive).get("a.sip")).isEqualTo(content(700));
+    }
+
+    @Test
+    void endsAtEndOfFileWithoutEndBlocks() throws IOException {
+        byte[] tar = new Tar().file("a.sip", content(10)).bytes();
+        Path archive = directory.resolve("corpus.tar");
+        Files.write(archive, Arrays.copyOf(tar, 2 * Tar.BLOCK));
+
+        assertThat(read(archive)).containsOnlyKeys("a.sip");
+    }
+
+    @Test
+    void reportsTruncatedContent() throws IOException {
+        byte[] tar = new Tar().file("a.sip", content(10)).file("b.sip", content(1000)).bytes();
+        Path archive = directory.resolve("corpus.tar");
+        // The header of b.sip and half of its content
+        Files.write(archive, Arrays.copyOf(tar, 3 * Tar.BLOCK + 500));
+
+        assertTruncated(archive, "a.sip");
+    }
+
+    @Test
+    void reportsTruncatedContentOfSkippedEntries() throws IOException {
+        byte[] tar = new Tar().file("a.sip", content(10)).entry("pax", "", (byte) 'x', content(1000)).bytes();
+        Path archive = directory.resolve("corpus.tar");
+        Files.write(archive, Arrays.copyOf(tar, 3 * Tar.BLOCK));
+
+        assertTruncated(archive, "a.sip");
+    }
+
+    @Test
+    void reportsTruncatedHeader() throws IOException {
+        byte[] tar = new Tar().file("a.sip", content(10)).file("b.sip", content(10)).bytes();
+        Path archive = directory.resolve("corpus.tar");
+        Files.write(archive, Arrays.copyOf(tar, 2 * Tar.BLOCK + 100));
+
+        assertTruncated(archive, "a.sip");
+    }
+
+    private static void assertTruncated(Path archive, String complete) throws IOException {
+        try (CorpusReader reader = CorpusReader.open(archive, MAX_FILE_SIZE)) {
+            Iterator<CorpusFile> files = reader.files();
+            assertThat(files.next().name()).isEqualTo(complete);
+            assertThatThrownBy(files::hasNext)
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("truncated");
+        }
+    }
+
+    private static Map<String, byte[]> read(Path corpus) throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        try (CorpusReader reader = CorpusReader.open(corpus, MAX_FILE_SIZE)) {
+            Iterator<CorpusFile> iterator = reader.files();
+            while (iterator.hasNext()) {
+                CorpusFile file = iterator.next();
+                files.put(file.name().replace('\\', '/'), file.content());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Distinct content of the given size, so misplaced reads show
+     */
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    /**
+     * Writes ustar archives
+     */
+    private static final class Tar {
+        static final int BLOCK = 512;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Tar file(String name, byte[] content) {
+            return entry(name, "", (byte) '0', content);
+        }
+
+        Tar entry(String name, String prefix, byte type, byte[] content) {
+            byte[] header = new byte[BLOCK];
+            put(header, 0, name);
+            put(header, 100, "0000644");
+            put(header, 108, "0000000");
+            put(header, 116, "0000000");
+            put(header, 124, String.format("%011o", content.length));
+            put(header, 136, "00000000000");
+            header[156] = type;
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            put(header, 345, prefix);
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            put(header, 148, String.format("%06o", checksum));
+            header[154] = 0;
+            out.writeBytes(header);
+            out.writeBytes(content);
+            out.writeBytes(new byte[(BLOCK - content.length % BLOCK) % BLOCK]);
+            return this;
+        }
+
+        byte[] bytes() {
+            ByteArrayOutputStream archive = new ByteArrayOutputStream();
+            archive.writeBytes(out.toByteArray());
+            archive.writeBytes(new byte[2 * BLOCK]);
+            return archive.toByteArray();
+        }
+
+        Path write(Path file) throws IOException {
+            return Files.write(file, bytes());
+        }
+
+        private static void put(byte[] header, int offset, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.sipgate.sipvalidator.controller;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.service.MessageLimits;
+import com.sipgate.sipvalidator.service.ValidationMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestSizeFilterTest {
+
+    private static final int MAX_REQUEST_SIZE = 100;
+
+    private SimpleMeterRegistry registry;
+    private RequestSizeFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getLimits().setMaxRequestSize(MAX_REQUEST_SIZE);
+        registry = new SimpleMeterRegistry();
+        filter = new RequestSizeFilter(properties, new ValidationMetrics(registry), JsonMapper.builder().build());
+    }
+
+    @Test
+    void rejectsDeclaredContentLengthOverLimit() throws Exception {
+        MockHttpServletRequest request = request("/api/sip/validate/message", MAX_REQUEST_SIZE + 1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(response.getHeader("Connection")).isEqualTo("close");
+        assertThat(response.getContentAsString()).contains("\"limit\":\"request-size\"", "\"actual\":101");
+        assertThat(chain.getRequest()).isNull();
+        assertThat(rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void passesDeclaredContentLengthAtLimit() throws Exception {
+        MockHttpServletRequest request = request("/api/sip/validate/message", MAX_REQUEST_SIZE);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+        assertThat(rejected()).isZero();
+    }
+
+    @Test
+    void rejectsChunkedBodyOverLimit() throws Exception {
+        HttpServletRequest request = chunked(request("/api/sip/validate/batch", 10 * MAX_REQUEST_SIZE));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        // Reading stops one byte after the limit
+        assertThat(response.getContentAsString()).contains("\"limit\":\"request-size\"", "\"actual\":101");
+        assertThat(chain.getRequest()).isNull();
+        assertThat(rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void passesBufferedChunkedBodyWithinLimit() throws Exception {
+        HttpServletRequest request = chunked(request("/api/sip/validate/message", MAX_REQUEST_SIZE));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        HttpServletRequest passed = (HttpServletRequest) chain.getRequest();
+        assertThat(passed.getContentLengthLong()).isEqualTo(MAX_REQUEST_SIZE);
+        assertThat(passed.getInputStream().readAllBytes()).hasSize(MAX_REQUEST_SIZE);
+        assertThat(passed.getReader().readLine()).hasSize(MAX_REQUEST_SIZE);
+
+        List<String> events = new ArrayList<>();
+        ServletInputStream in = passed.getInputStream();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() {
+                events.add("available " + in.isReady());
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("all read");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+        assertThat(events).containsExactly("available true", "all read");
+    }
+
+    @Test
+    void doesNotLimitStreamingEndpoints() throws Exception {
+        MockHttpServletRequest request = request("/api/sip/validate/stream", MAX_REQUEST_SIZE + 1);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    private double rejected() {
+        Counter counter = registry.find("sipvalidator.rejected").tag("limit", MessageLimits.REQUEST_SIZE).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static MockHttpServletRequest request(String path, int size) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContent("x".repeat(size).getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    /**
+     * The request without Content-Length, like one with a chunked body
+     */
+    private static HttpServletRequest chunked(HttpServletRequest request) {
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.HeaderInfo;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Validates thousands of mixed messages from many threads through one shared
+ * SipValidatorService, and so one shared StringMsgParser, and through
+ * BatchValidationService, and checks that every result equals the result of
+ * the same message validated on a single thread
+ */
+class ConcurrentValidationTest {
+
+    private static final int MESSAGE_COUNT = 3000;
+    private static final int THREADS = 8;
+
+    private static final List<String> CORPUS = List.of(
+        "request-invite", "request-register", "request-options", "request-bye",
+        "response-180-ringing", "response-200-invite", "response-401-unauthorized",
+        "malformed-cseq", "malformed-max-forwards", "malformed-request-line",
+        "malformed-status-line", "malformed-garbage");
+
+    /** Identity hash codes of char arrays that the parser puts into some error messages */
+    private static final Pattern ARRAY_IDENTITY = Pattern.compile("\\[C@[0-9a-f]+");
+
+    private static List<String> messages;
+    private static List<String> expected;
+
+    @BeforeAll
+    static void validateOnSingleThread() {
+        messages = mixed(MESSAGE_COUNT);
+        SipValidatorService reference = new SipValidatorService();
+        expected = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            expected.add(fingerprint(reference.validateMessage(message)));
+        }
+        // The corpus has to cover both outcomes to mean anything
+        assertThat(expected).anyMatch(result -> result.startsWith("true|"));
+        assertThat(expected).anyMatch(result -> result.startsWith("false|"));
+    }
+
+    @ParameterizedTest(name = "cached={0}")
+    @ValueSource(booleans = {false, true})
+    void sharedServiceMatchesSingleThreadedResults(boolean cached) throws Exception {
+        SipValidatorService service = service(cached);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> mismatches = new ConcurrentLinkedQueue<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                // Threads start at different offsets so they work on different messages at the same time
+                int offset = thread * (MESSAGE_COUNT / THREADS);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < MESSAGE_COUNT; i++) {
+                        int index = (offset + i) % MESSAGE_COUNT;
+                        String actual = fingerprint(service.validateMessage(messages.get(index)));
+                        if (!actual.equals(expected.get(index))) {
+                            mismatches.add(index + ": " + actual + "\nexpected: " + expected.get(index));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(mismatches).isEmpty();
+    }
+
+    @Test
+    void batchValidationMatchesSingleThreadedResults() {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getBatch().setParallelism(THREADS);
+        properties.getBatch().setMaxSize(MESSAGE_COUNT);
+        BatchValidationService batch = new BatchValidationService(service(false), properties);
+        try {
+            List<ValidationResult> results = batch.validateMessages(messages);
+
+            assertThat(results).hasSize(MESSAGE_COUNT);
+            for (int i = 0; i < MESSAGE_COUNT; i++) {
+                assertThat(fingerprint(results.get(i))).as("message %d", i).isEqualTo(expected.get(i));
+            }
+        } finally {
+            batch.shutdown();
+        }
+    }
+
+    private static SipValidatorService service(boolean cached) {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getCache().setEnabled(cached);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new SipValidatorService(new ValidationMetrics(registry), new ValidationCache(properties, registry),
+            new MessageLimits(properties));
+    }
+
+    private static String fingerprint(ValidationResult result) {
+        StringBuilder sb = new StringBuilder().append(result.isValid()).append('|');
+        result.getMessages().forEach(message -> sb.append(message).append(';'));
+        sb.append('|');
+        result.getErrors().forEach(error -> sb.append(ARRAY_IDENTITY.matcher(error).replaceAll("[C@")).append(';'));
+        sb.append('|');
+        for (HeaderInfo header : result.getHeaders()) {
+            sb.append(header.getName()).append(':').append(header.getType()).append(':')
+              .append(header.getRfcReference() != null ? header.getRfcReference().getUrl() : "-").append(';');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The corpus messages and INVITEs with SDP bodies of different sizes,
+     * repeated with a different Call-ID each time
+     */
+    private static List<String> mixed(int count) {
+        List<String> templates = new ArrayList<>();
+        for (String name : CORPUS) {
+            templates.add(load("/corpus/" + name + ".sip"));
+        }
+        for (int streams = 10; streams <= 50; streams += 10) {
+            templates.add(invite(streams));
+        }
+        List<String> mixed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mixed.add(templates.get(i % templates.size()).replace("a84b4c76e66710", "a84b4c76e66710-" + i));
+        }
+        return mixed;
+    }
+
+    private static String invite(int mediaStreams) {
+        StringBuilder sdp = new StringBuilder("v=0\r\no=alice 2890844526 2890844526 IN IP4 pc33.example.com\r\n"
+            + "s=-\r\nc=IN IP4 192.0.2.101\r\nt=0 0\r\n");
+        for (int i = 0; i < mediaStreams; i++) {
+            sdp.append("m=audio ").append(49170 + 2 * i).append(" RTP/AVP 0 8\r\na=sendrecv\r\n");
+        }
+        return SipValidatorServiceTest.INVITE
+            .replace("Content-Length: 0\r\n", "Content-Type: application/sdp\r\nContent-Length: " + sdp.length() + "\r\n")
+            + sdp;
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = ConcurrentValidationTest.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing corpus resource " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.SequenceViolation;
+import com.sipgate.sipvalidator.model.SequenceViolation.Type;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DialogSequenceValidatorTest {
+
+    private DialogSequenceValidator validator = new DialogSequenceValidator(100, Duration.ofMinutes(5));
+    private long now;
+
+    @Test
+    void reportsCSeqThatDecreasesOrRepeatsButNotRetransmissions() {
+        assertThat(check(Message.request("INVITE").branch("b1").cseq(2))).isEmpty();
+        // Retransmission, same branch and CSeq
+        assertThat(check(Message.request("INVITE").branch("b1").cseq(2))).isEmpty();
+
+        assertThat(check(Message.request("OPTIONS").branch("b2").cseq(1))).containsExactly(Type.CSEQ_DECREASED);
+        assertThat(check(Message.request("OPTIONS").branch("b3").cseq(2))).containsExactly(Type.CSEQ_NOT_INCREMENTED);
+        assertThat(check(Message.request("OPTIONS").branch("b4").cseq(3))).isEmpty();
+
+        // The other side counts on its own
+        assertThat(check(Message.request("OPTIONS").branch("b5").from("bob").cseq(1))).isEmpty();
+    }
+
+    @Test
+    void reportsAckWithOtherCSeqThanItsInvite() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+        check(Message.response(486, "INVITE").branch("b1").cseq(1).to("callee"));
+
+        // ACK of the non-2xx response, in the INVITE transaction
+        assertThat(check(Message.request("ACK").branch("b1").cseq(2).to("callee"))).containsExactly(Type.CSEQ_MISMATCH);
+        assertThat(check(Message.request("ACK").branch("b1").cseq(1).to("callee"))).isEmpty();
+        // ACK of a 2xx response, a transaction of its own with the CSeq of the last INVITE
+        assertThat(check(Message.request("ACK").branch("b2").cseq(5).to("callee"))).containsExactly(Type.CSEQ_MISMATCH);
+        assertThat(check(Message.request("ACK").branch("b3").cseq(1).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void reportsCancelWithOtherCSeqThanItsInviteAndCancelOfNoInvite() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+
+        assertThat(check(Message.request("CANCEL").branch("b1").cseq(1))).isEmpty();
+        assertThat(check(Message.request("CANCEL").branch("b1").cseq(3))).containsExactly(Type.CSEQ_MISMATCH);
+        assertThat(check(Message.request("CANCEL").branch("b7").cseq(1))).containsExactly(Type.UNMATCHED_CANCEL);
+        // The response to the CANCEL matches the CANCEL transaction
+        assertThat(check(Message.response(200, "CANCEL").branch("b1").cseq(1).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void reportsResponsesThatMatchNoRequest() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+
+        assertThat(check(Message.response(200, "OPTIONS").branch("b1").cseq(1).to("callee")))
+            .containsExactly(Type.UNMATCHED_RESPONSE);
+        assertThat(check(Message.response(200, "INVITE").branch("b9").cseq(1).to("callee")))
+            .containsExactly(Type.UNMATCHED_RESPONSE);
+        assertThat(check(Message.response(200, "INVITE").branch("b1").cseq(4).to("callee")))
+            .containsExactly(Type.CSEQ_MISMATCH);
+    }
+
+    @Test
+    void reportsResponsesWithoutToTagExceptTrying() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+
+        assertThat(check(Message.response(100, "INVITE").branch("b1").cseq(1))).isEmpty();
+        assertThat(check(Message.response(180, "INVITE").branch("b1").cseq(1))).containsExactly(Type.MISSING_TO_TAG);
+        assertThat(check(Message.response(180, "INVITE").branch("b1").cseq(1).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void reportsChangedToTagOfFinalResponsesToNonInviteOnly() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+        check(Message.request("OPTIONS").branch("b2").cseq(2));
+
+        // A forked INVITE gets final responses from several dialogs
+        assertThat(check(Message.response(200, "INVITE").branch("b1").cseq(1).to("first"))).isEmpty();
+        assertThat(check(Message.response(200, "INVITE").branch("b1").cseq(1).to("second"))).isEmpty();
+
+        assertThat(check(Message.response(200, "OPTIONS").branch("b2").cseq(2).to("first"))).isEmpty();
+        assertThat(check(Message.response(200, "OPTIONS").branch("b2").cseq(2).to("first"))).isEmpty();
+        assertThat(check(Message.response(200, "OPTIONS").branch("b2").cseq(2).to("other")))
+            .containsExactly(Type.TO_TAG_CHANGED);
+    }
+
+    @Test
+    void reportsRequestsToUnknownDialogs() {
+        check(Message.request("INVITE").branch("b1").cseq(1));
+        check(Message.response(200, "INVITE").branch("b1").cseq(1).to("callee"));
+
+        assertThat(check(Message.request("BYE").branch("b2").cseq(2).to("stranger"))).containsExactly(Type.UNKNOWN_DIALOG);
+        assertThat(check(Message.request("BYE").branch("b3").cseq(3).to("callee"))).isEmpty();
+        // The callee sends with the caller's From tag as To tag
+        assertThat(check(Message.request("BYE").branch("b4").cseq(1).from("callee").to("caller"))).isEmpty();
+    }
+
+    @Test
+    void doesNotReportWhatDependsOnMessagesBeforeAPartialCall() {
+        // The capture starts with a response, the request was missed
+        assertThat(check(Message.response(200, "INVITE").call("late").branch("b1").cseq(1).to("callee"))).isEmpty();
+        assertThat(check(Message.response(200, "OPTIONS").call("late").branch("b2").cseq(2).to("callee"))).isEmpty();
+        assertThat(check(Message.request("CANCEL").call("late").branch("b3").cseq(1))).isEmpty();
+        assertThat(check(Message.request("BYE").call("late").branch("b4").cseq(2).to("stranger"))).isEmpty();
+        // What a single message shows is still reported
+        assertThat(check(Message.response(180, "INVITE").call("late").branch("b1").cseq(1)))
+            .containsExactly(Type.MISSING_TO_TAG);
+
+        // A call first seen in a dialog is partial as well
+        assertThat(check(Message.request("BYE").call("in-dialog").branch("b1").cseq(7).to("callee"))).isEmpty();
+        assertThat(check(Message.response(200, "INFO").call("in-dialog").branch("b2").cseq(6).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void evictsIdleCalls() {
+        validator = new DialogSequenceValidator(100, Duration.ofSeconds(1));
+        check(Message.request("INVITE").call("first").branch("b1").cseq(1));
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertThat(check(Message.response(200, "OPTIONS").call("first").branch("b2").cseq(1).to("callee")))
+            .containsExactly(Type.UNMATCHED_RESPONSE);
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        check(Message.request("INVITE").call("second").branch("b1").cseq(1));
+
+        assertThat(validator.getEvictedCalls()).isEqualTo(1);
+        assertThat(validator.getTrackedCalls()).isEqualTo(1);
+        // Seen again after eviction, the call starts over as a partial one
+        assertThat(check(Message.response(200, "OPTIONS").call("first").branch("b3").cseq(1).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyActiveCallAtMaximum() {
+        validator = new DialogSequenceValidator(2, Duration.ofMinutes(5));
+        check(Message.request("INVITE").call("first").branch("b1").cseq(1));
+        check(Message.request("INVITE").call("second").branch("b1").cseq(1));
+        // Activity on the first call makes the second the least recently active
+        check(Message.response(100, "INVITE").call("first").branch("b1").cseq(1));
+
+        check(Message.request("INVITE").call("third").branch("b1").cseq(1));
+
+        assertThat(validator.getTrackedCalls()).isEqualTo(2);
+        assertThat(validator.getEvictedCalls()).isEqualTo(1);
+        assertThat(check(Message.response(200, "OPTIONS").call("first").branch("b9").cseq(1).to("callee")))
+            .containsExactly(Type.UNMATCHED_RESPONSE);
+        assertThat(check(Message.response(200, "OPTIONS").call("second").branch("b9").cseq(1).to("callee"))).isEmpty();
+    }
+
+    @Test
+    void matchesMessagesWithCompactAndFoldedHeaders() {
+        String invite = "INVITE sip:bob@example.com SIP/2.0\r\n"
+            + "v: SIP/2.0/UDP pc33.example.com\r\n ;branch=z9hG4bKcompact\r\n"
+            + "f: <sip:alice@example.com;tag=uri-parameter>;tag=caller\r\n"
+            + "t: <sip:bob@example.com>\r\n"
+            + "i: compact-call\r\n"
+            + "CSeq:\r\n\t5 INVITE\r\n"
+            + "l: 0\r\n\r\n";
+        assertThat(validator.check(invite.getBytes(StandardCharsets.US_ASCII), now)).isEmpty();
+
+        assertThat(check(Message.response(200, "INVITE").call("compact-call").branch("z9hG4bKcompact").cseq(5)
+            .to("callee"))).isEmpty();
+        assertThat(check(Message.request("BYE").call("compact-call").branch("b2").cseq(5).to("callee")))
+            .containsExactly(Type.CSEQ_NOT_INCREMENTED);
+    }
+
+    @Test
+    void readsFieldsOfCompactAndFoldedHeaders() {
+        String message = "SIP/2.0 200 OK\r\n"
+            + "V: SIP/2.0/UDP proxy.example.com;branch=z9hG4bKtop, SIP/2.0/UDP pc33.example.com;branch=second\r\n"
+            + "v: SIP/2.0/UDP pc33.example.com;branch=third\r\n"
+            + "F: \"Alice; tag=quoted\" <sip:alice@example.com>\r\n ;tag=caller\r\n"
+            + "T: <sip:bob@example.com>;tag=callee\r\n"
+            + "I:  folded-\r\n"
+            + "CSeq: 42\r\n INVITE\r\n\r\n";
+        SipFlowFields fields = new SipFlowFields();
+
+        assertThat(fields.read(message.getBytes(StandardCharsets.US_ASCII))).isTrue();
+
+        assertThat(fields.response).isTrue();
+        assertThat(fields.statusCode).isEqualTo(200);
+        assertThat(fields.callId).isEqualTo("folded-");
+        assertThat(fields.cseq).isEqualTo(42);
+        assertThat(fields.cseqMethod).isEqualTo("INVITE");
+        assertThat(fields.branchText()).isEqualTo("z9hG4bKtop");
+        assertThat(fields.toTagText()).isEqualTo("callee");
+        assertThat(fields.fromTag).isNotZero().isNotEqualTo(fields.toTag);
+    }
+
+    @Test
+    void skipsMessagesWithoutCallIdOrCSeq() {
+        String message = "OPTIONS sip:bob@example.com SIP/2.0\r\nCall-ID: no-cseq\r\n\r\n";
+
+        assertThat(validator.check(message.getBytes(StandardCharsets.US_ASCII), now)).isEmpty();
+        assertThat(validator.getTrackedCalls()).isZero();
+    }
+
+    private List<Type> check(Message message) {
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        return validator.check(message.bytes(), now).stream().map(SequenceViolation::getType).toList();
+    }
+
+    /**
+     * A message of the call between caller and callee, requests are sent by the caller by default
+     */
+    private static final class Message {
+        private final String startLine;
+        private final String cseqMethod;
+        private String callId = "call-1";
+        private String branch;
+        private String fromTag = "caller";
+        private String toTag;
+        private long cseq = 1;
+
+        private Message(String startLine, String cseqMethod) {
+            this.startLine = startLine;
+            this.cseqMethod = cseqMethod;
+        }
+
+        static Message request(String method) {
+            return new Message(method + " sip:bob@example.com SIP/2.0", method);
+        }
+
+        static Message response(int status, String method) {
+            return new Message("SIP/2.0 " + status + " Reason", method);
+        }
+
+        Message call(String callId) {
+            this.callId = callId;
+            return this;
+        }
+
+        Message branch(String branch) {
+            this.branch = branch;
+            return this;
+        }
+
+        Message from(String tag) {
+            this.fromTag = tag;
+            return this;
+        }
+
+        Message to(String tag) {
+            this.toTag = tag;
+            return this;
+        }
+
+        Message cseq(long cseq) {
+            this.cseq = cseq;
+            return this;
+        }
+
+        byte[] bytes() {
+            String text = startLine + "\r\n"
+                + "Via: SIP/2.0/UDP pc33.example.com;branch=" + branch + "\r\n"
+                + "From: <sip:" + fromTag + "@example.com>;tag=" + fromTag + "\r\n"
+                + "To: <sip:other@example.com>" + (toTag != null ? ";tag=" + toTag : "") + "\r\n"
+                + "Call-ID: " + callId + "\r\n"
+                + "CSeq: " + cseq + " " + cseqMethod + "\r\n"
+                + "Content-Length: 0\r\n\r\n";
+            return text.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
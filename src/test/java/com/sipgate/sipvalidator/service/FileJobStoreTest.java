@@ -0,0 +1,86 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.JobStatus.State;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileJobStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesStatusAndResultsAcrossInstances() {
+        FileJobStore store = new FileJobStore(directory, JsonMapper.builder().build());
+        JobStatus status = status("0f6e2d3c-1111-2222-3333-444455556666");
+        store.create(status);
+
+        SipValidatorService service = new SipValidatorService();
+        ValidationResponse valid = ValidationResponse.of(service.validateMessage(SipValidatorServiceTest.INVITE));
+        valid.setId("first");
+        ValidationResponse invalid = ValidationResponse.of(service.validateMessage("not a SIP message"));
+        invalid.setId("second");
+        status.setState(State.COMPLETED);
+        status.setCompleted(2);
+        status.setValid(1);
+        status.setInvalid(1);
+        status.setFinished(status.getSubmitted().plusSeconds(1));
+        store.append(status, List.of(valid, invalid));
+
+        // A new instance reads what the first one wrote, like after a restart
+        FileJobStore reopened = new FileJobStore(directory, JsonMapper.builder().build());
+        JobStatus read = reopened.status(status.getId()).orElseThrow();
+        assertThat(read.getState()).isEqualTo(State.COMPLETED);
+        assertThat(read.getCompleted()).isEqualTo(2);
+        assertThat(read.getSubmitted()).isEqualTo(status.getSubmitted());
+        assertThat(read.getFinished()).isEqualTo(status.getFinished());
+        assertThat(reopened.list()).extracting(JobStatus::getId).containsExactly(status.getId());
+        assertThat(reopened.size(status.getId())).isPositive();
+
+        List<ValidationResponse> results = reopened.results(status.getId(), 0, 10);
+        assertThat(results).extracting(ValidationResponse::getId).containsExactly("first", "second");
+        assertThat(results.get(0).isValid()).isTrue();
+        assertThat(results.get(0).getMessages()).isEqualTo(valid.getMessages());
+        assertThat(results.get(0).getHeaders()).extracting(header -> header.getName())
+            .isEqualTo(valid.getHeaders().stream().map(header -> header.getName()).toList());
+        assertThat(results.get(1).isValid()).isFalse();
+        assertThat(results.get(1).getErrors()).isEqualTo(invalid.getErrors());
+        assertThat(reopened.results(status.getId(), 1, 10)).extracting(ValidationResponse::getId)
+            .containsExactly("second");
+
+        reopened.delete(status.getId());
+        assertThat(reopened.status(status.getId())).isEmpty();
+        assertThat(reopened.results(status.getId(), 0, 10)).isEmpty();
+        assertThat(reopened.size(status.getId())).isZero();
+    }
+
+    @Test
+    void treatsIdsThatAreNoGeneratedIdsAsUnknown() {
+        FileJobStore store = new FileJobStore(directory, JsonMapper.builder().build());
+
+        assertThat(store.status("../etc/passwd")).isEmpty();
+        assertThat(store.results("../etc/passwd", 0, 10)).isEmpty();
+        assertThat(store.size("../etc/passwd")).isZero();
+    }
+
+    private static JobStatus status(String id) {
+        JobStatus status = new JobStatus();
+        status.setId(id);
+        status.setState(State.QUEUED);
+        status.setTotal(2);
+        status.setSubmitted(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        return status;
+    }
+}
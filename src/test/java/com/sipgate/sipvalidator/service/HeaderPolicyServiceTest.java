@@ -0,0 +1,144 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.PolicyViolation;
+
+import gov.nist.javax.sip.message.SIPMessage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HeaderPolicyServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private SipValidatorProperties properties;
+    private HeaderPolicyService service;
+    private SIPMessage invite;
+    /** Modification times are set explicitly, file systems may not tell writes in quick succession apart */
+    private Instant version = Instant.parse("2026-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("policy.properties");
+        properties = new SipValidatorProperties();
+        properties.getPolicy().setRules(List.of(HeaderPolicyTest.rule("Max-Forwards", rule -> rule.setRequired(true))));
+        properties.getPolicy().setFile(file.toString());
+        // The reload thread must not interfere, the tests reload themselves
+        properties.getPolicy().setReloadInterval(Duration.ofHours(1));
+        invite = HeaderPolicyTest.parse(SipValidatorServiceTest.INVITE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void combinesConfiguredRulesWithTheFile() throws IOException {
+        write("rules[0].header=User-Agent\nrules[0].required=true\n");
+        service = new HeaderPolicyService(properties);
+
+        assertThat(violations()).containsExactly("User-Agent");
+        assertThat(service.reloadIfChanged()).isFalse();
+    }
+
+    @Test
+    void readsYamlFiles() throws IOException {
+        file = dir.resolve("policy.yaml");
+        properties.getPolicy().setFile(file.toString());
+        write("rules:\n  - name: short-call-id\n    header: Call-ID\n    pattern: \"[0-9a-f]{1,8}@.*\"\n");
+        service = new HeaderPolicyService(properties);
+
+        assertThat(violations()).containsExactly("short-call-id");
+    }
+
+    @Test
+    void picksUpAChangedFile() throws IOException {
+        write("rules[0].header=User-Agent\nrules[0].required=true\n");
+        service = new HeaderPolicyService(properties);
+        HeaderPolicy before = service.current();
+
+        write("rules[0].header=Contact\nrules[0].forbidden=true\n");
+
+        assertThat(service.reloadIfChanged()).isTrue();
+        assertThat(service.current()).isNotSameAs(before);
+        assertThat(violations()).containsExactly("Contact");
+        assertThat(service.reloadIfChanged()).isFalse();
+    }
+
+    @Test
+    void keepsThePreviousPolicyWhenTheFileIsInvalid() throws IOException {
+        write("rules[0].header=User-Agent\nrules[0].required=true\n");
+        service = new HeaderPolicyService(properties);
+        HeaderPolicy before = service.current();
+
+        write("rules[0].header=Call-ID\nrules[0].pattern=[a-\n");
+
+        assertThat(service.reloadIfChanged()).isFalse();
+        assertThat(service.current()).isSameAs(before);
+        // The broken version is not read again, only the next change is
+        assertThat(service.reloadIfChanged()).isFalse();
+
+        write("rules[0].header=Contact\nrules[0].forbidden=true\n");
+        assertThat(service.reloadIfChanged()).isTrue();
+        assertThat(violations()).containsExactly("Contact");
+    }
+
+    @Test
+    void fallsBackToTheConfiguredRulesWhenTheFileIsDeleted() throws IOException {
+        write("rules[0].header=User-Agent\nrules[0].required=true\n");
+        service = new HeaderPolicyService(properties);
+
+        Files.delete(file);
+
+        assertThat(service.reloadIfChanged()).isTrue();
+        assertThat(violations()).isEmpty();
+        assertThat(service.current().isEmpty()).isFalse();
+        SIPMessage withoutMaxForwards = HeaderPolicyTest.parse(
+            SipValidatorServiceTest.INVITE.replace("Max-Forwards: 70\r\n", ""));
+        assertThat(service.current().evaluate(withoutMaxForwards))
+            .extracting(PolicyViolation::getRule).containsExactly("Max-Forwards");
+
+        // A file created later is read as well
+        write("rules[0].header=User-Agent\nrules[0].required=true\n");
+        assertThat(service.reloadIfChanged()).isTrue();
+        assertThat(violations()).containsExactly("User-Agent");
+    }
+
+    @Test
+    void failsTheStartupWithInvalidRules() throws IOException {
+        write("rules[0].header=Call-ID\nrules[0].pattern=[a-\n");
+
+        assertThatThrownBy(() -> new HeaderPolicyService(properties))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Policy rule Call-ID has an invalid pattern");
+    }
+
+    private List<String> violations() {
+        return service.current().evaluate(invite).stream().map(PolicyViolation::getRule).toList();
+    }
+
+    private void write(String content) throws IOException {
+        Files.writeString(file, content);
+        version = version.plusSeconds(1);
+        Files.setLastModifiedTime(file, FileTime.from(version));
+    }
+}
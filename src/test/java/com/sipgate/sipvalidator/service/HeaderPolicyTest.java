@@ -0,0 +1,200 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties.Policy.Rule;
+import com.sipgate.sipvalidator.config.SipValidatorProperties.Policy.Target;
+import com.sipgate.sipvalidator.model.PolicyViolation;
+
+import gov.nist.javax.sip.message.SIPMessage;
+import gov.nist.javax.sip.parser.StringMsgParser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HeaderPolicyTest {
+
+    private static final String RESPONSE = "SIP/2.0 200 OK\r\n"
+        + "Via: SIP/2.0/UDP pc33.example.com;branch=z9hG4bK776asdhds\r\n"
+        + "To: Bob <sip:bob@example.com>;tag=a6c85cf\r\n"
+        + "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+        + "Call-ID: a84b4c76e66710@pc33.example.com\r\n"
+        + "CSeq: 314159 INVITE\r\n"
+        + "Content-Length: 0\r\n"
+        + "\r\n";
+
+    @Test
+    void emptyRuleListCompilesToNone() {
+        assertThat(HeaderPolicy.compile(List.of())).isSameAs(HeaderPolicy.NONE);
+        assertThat(HeaderPolicy.NONE.isEmpty()).isTrue();
+        assertThat(HeaderPolicy.NONE.evaluate(parse(SipValidatorServiceTest.INVITE))).isEmpty();
+    }
+
+    @Test
+    void reportsMissingRequiredAndPresentForbiddenHeaders() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(
+            rule("Max-Forwards", r -> r.setRequired(true)),
+            rule("user-agent", r -> r.setRequired(true)),
+            rule("Contact", r -> {
+                r.setName("no-contact");
+                r.setForbidden(true);
+            })));
+
+        List<PolicyViolation> violations = policy.evaluate(parse(SipValidatorServiceTest.INVITE));
+
+        assertThat(violations).extracting(PolicyViolation::getRule, PolicyViolation::getHeader,
+                PolicyViolation::getDescription)
+            .containsExactly(
+                tuple("no-contact", "Contact", "Contact is not allowed"),
+                tuple("user-agent", "user-agent", "user-agent is missing"));
+        assertThat(violations.get(0).describe()).isEqualTo("Policy no-contact: Contact is not allowed");
+    }
+
+    @Test
+    void checksNumericRanges() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(rule("Max-Forwards", r -> {
+            r.setMin(10L);
+            r.setMax(69L);
+        })));
+
+        assertThat(descriptions(policy, SipValidatorServiceTest.INVITE))
+            .containsExactly("Max-Forwards value 70 is above the maximum of 69");
+        assertThat(descriptions(policy, withMaxForwards("9"))).containsExactly("Max-Forwards value 9 is below the minimum of 10");
+        assertThat(descriptions(policy, withMaxForwards("10"))).isEmpty();
+        assertThat(descriptions(policy, withMaxForwards("69"))).isEmpty();
+
+        HeaderPolicy numericCallId = HeaderPolicy.compile(List.of(rule("Call-ID", r -> r.setMin(0L))));
+        assertThat(descriptions(numericCallId, SipValidatorServiceTest.INVITE))
+            .containsExactly("Call-ID value a84b4c76e66710@pc33.example.com is not a number");
+    }
+
+    @Test
+    void patternMustMatchTheWholeValue() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(rule("Call-ID", r -> r.setPattern("[0-9a-f]+"))));
+
+        assertThat(descriptions(policy, SipValidatorServiceTest.INVITE))
+            .containsExactly("Call-ID value a84b4c76e66710@pc33.example.com does not match [0-9a-f]+");
+        assertThat(descriptions(HeaderPolicy.compile(List.of(rule("Call-ID", r -> r.setPattern("[0-9a-f]+@.*")))),
+            SipValidatorServiceTest.INVITE)).isEmpty();
+    }
+
+    @Test
+    void appliesRulesToTheirTargetOnly() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(
+            rule("Max-Forwards", r -> {
+                r.setName("requests-need-max-forwards");
+                r.setRequired(true);
+                r.setTarget(Target.REQUESTS);
+            }),
+            rule("Contact", r -> {
+                r.setName("responses-need-contact");
+                r.setRequired(true);
+                r.setTarget(Target.RESPONSES);
+            })));
+
+        assertThat(rules(policy, SipValidatorServiceTest.INVITE)).isEmpty();
+        assertThat(rules(policy, SipValidatorServiceTest.INVITE.replace("Max-Forwards: 70\r\n", "")
+            .replace("Contact: <sip:alice@pc33.example.com>\r\n", "")))
+            .containsExactly("requests-need-max-forwards");
+        assertThat(rules(policy, RESPONSE)).containsExactly("responses-need-contact");
+    }
+
+    @Test
+    void filtersByMethodAndTakesTheMethodOfResponsesFromCSeq() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(rule("Subject", r -> {
+            r.setRequired(true);
+            r.setMethods(List.of(" invite", "MESSAGE"));
+        })));
+
+        assertThat(rules(policy, SipValidatorServiceTest.INVITE)).containsExactly("Subject");
+        assertThat(rules(policy, SipValidatorServiceTest.INVITE.replace("INVITE sip:", "OPTIONS sip:")
+            .replace("314159 INVITE", "314159 OPTIONS"))).isEmpty();
+        assertThat(rules(policy, RESPONSE)).containsExactly("Subject");
+        assertThat(rules(policy, RESPONSE.replace("314159 INVITE", "314159 BYE"))).isEmpty();
+    }
+
+    @Test
+    void checksEveryValueOfAHeaderList() {
+        HeaderPolicy policy = HeaderPolicy.compile(List.of(rule("Via", r -> r.setPattern("SIP/2\\.0/UDP .*"))));
+        String twoVias = SipValidatorServiceTest.INVITE.replace("Max-Forwards:",
+            "Via: SIP/2.0/TCP proxy.example.com;branch=z9hG4bK1, SIP/2.0/UDP edge.example.com;branch=z9hG4bK2\r\n"
+                + "Max-Forwards:");
+
+        assertThat(descriptions(policy, SipValidatorServiceTest.INVITE)).isEmpty();
+        assertThat(descriptions(policy, twoVias)).singleElement()
+            .satisfies(description -> assertThat(description).startsWith("Via value SIP/2.0/TCP proxy.example.com"));
+    }
+
+    @Test
+    void tracksMoreThan64RequiredHeaders() {
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            String header = "X-Required-" + i;
+            rules.add(rule(header, r -> r.setRequired(true)));
+        }
+        HeaderPolicy policy = HeaderPolicy.compile(rules);
+        StringBuilder headers = new StringBuilder();
+        for (int i = 0; i < 70; i++) {
+            if (i != 3 && i != 66) {
+                headers.append("X-Required-").append(i).append(": 1\r\n");
+            }
+        }
+
+        assertThat(rules(policy, SipValidatorServiceTest.INVITE.replace("Contact:", headers + "Contact:")))
+            .containsExactly("X-Required-3", "X-Required-66");
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule(" ", r -> r.setRequired(true)))))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("has no header");
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule(null, r -> r.setRequired(true)))))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("has no header");
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule("Contact", r -> {
+            r.setRequired(true);
+            r.setForbidden(true);
+        })))).isInstanceOf(IllegalArgumentException.class).hasMessage("Policy rule Contact both requires and forbids Contact");
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule("Max-Forwards", r -> {
+            r.setMin(70L);
+            r.setMax(10L);
+        })))).isInstanceOf(IllegalArgumentException.class).hasMessage("Policy rule Max-Forwards has min greater than max");
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule("Contact", r -> r.setName("empty")))))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Policy rule empty checks nothing");
+        assertThatThrownBy(() -> HeaderPolicy.compile(List.of(rule("Call-ID", r -> r.setPattern("[a-")))))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageStartingWith("Policy rule Call-ID has an invalid pattern");
+    }
+
+    static Rule rule(String header, Consumer<Rule> settings) {
+        Rule rule = new Rule();
+        rule.setHeader(header);
+        settings.accept(rule);
+        return rule;
+    }
+
+    private static String withMaxForwards(String value) {
+        return SipValidatorServiceTest.INVITE.replace("Max-Forwards: 70", "Max-Forwards: " + value);
+    }
+
+    private static List<String> rules(HeaderPolicy policy, String message) {
+        return policy.evaluate(parse(message)).stream().map(PolicyViolation::getRule).toList();
+    }
+
+    private static List<String> descriptions(HeaderPolicy policy, String message) {
+        return policy.evaluate(parse(message)).stream().map(PolicyViolation::getDescription).toList();
+    }
+
+    static SIPMessage parse(String message) {
+        try {
+            return new StringMsgParser().parseSIPMessage(message.getBytes(StandardCharsets.UTF_8), true, false, null);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
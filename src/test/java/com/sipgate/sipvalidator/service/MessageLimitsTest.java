@@ -0,0 +1,127 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.LimitViolation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageLimitsTest {
+
+    private static final String START_LINE = "INVITE sip:bob@example.com SIP/2.0\r\n";
+
+    @Test
+    void acceptsMessageOfMaximumSize() {
+        MessageLimits limits = limits(100, 256, 8192, 1024);
+        byte[] message = message(START_LINE, "Call-ID: a@b\r\n", "\r\n", "x".repeat(100 - 52));
+
+        assertThat(message).hasSize(100);
+        assertThat(limits.checkMessage(message)).isNull();
+    }
+
+    @Test
+    void rejectsMessageOneByteOverMaximumSize() {
+        MessageLimits limits = limits(100, 256, 8192, 1024);
+
+        assertViolation(limits.checkMessage(message(START_LINE, "Call-ID: a@b\r\n", "\r\n", "x".repeat(49))),
+            MessageLimits.MESSAGE_SIZE, 100, 101);
+    }
+
+    @Test
+    void acceptsMaximumHeaderCount() {
+        MessageLimits limits = limits(1024, 3, 8192, 1024);
+
+        assertThat(limits.checkMessage(message(START_LINE, "A: 1\r\n", "B: 2\r\n", "C: 3\r\n", "\r\n"))).isNull();
+    }
+
+    @Test
+    void rejectsOneHeaderOverMaximumCount() {
+        MessageLimits limits = limits(1024, 3, 8192, 1024);
+
+        assertViolation(limits.checkMessage(message(START_LINE, "A: 1\r\n", "B: 2\r\n", "C: 3\r\n", "D: 4\r\n", "\r\n")),
+            MessageLimits.HEADER_COUNT, 3, 4);
+    }
+
+    @Test
+    void doesNotCountFoldedLinesAsHeaders() {
+        MessageLimits limits = limits(1024, 3, 8192, 1024);
+
+        assertThat(limits.checkMessage(message(START_LINE, "A: 1\r\n", " folded\r\n", "\tfolded\r\n", "B: 2\r\n",
+            "C: 3\r\n", "\r\n"))).isNull();
+    }
+
+    @Test
+    void acceptsLineOfMaximumLength() {
+        MessageLimits limits = limits(1024, 256, 40, 1024);
+        String header = "Subject: " + "x".repeat(40 - 9);
+
+        assertThat(limits.checkMessage(message(START_LINE, header + "\r\n", "\r\n"))).isNull();
+        assertThat(limits.checkMessage(message(START_LINE, header + "\n", "\n"))).isNull();
+    }
+
+    @Test
+    void rejectsLineOneByteOverMaximumLength() {
+        MessageLimits limits = limits(1024, 256, 40, 1024);
+        String header = "Subject: " + "x".repeat(41 - 9);
+
+        assertViolation(limits.checkMessage(message(START_LINE, header + "\r\n", "\r\n")),
+            MessageLimits.LINE_LENGTH, 40, 41);
+        assertViolation(limits.checkMessage(message(START_LINE, header)), MessageLimits.LINE_LENGTH, 40, 41);
+    }
+
+    @Test
+    void acceptsBodyOfMaximumSize() {
+        MessageLimits limits = limits(1024, 256, 8192, 10);
+
+        assertThat(limits.checkMessage(message(START_LINE, "Content-Length: 10\r\n", "\r\n", "0123456789"))).isNull();
+    }
+
+    @Test
+    void rejectsBodyOneByteOverMaximumSize() {
+        MessageLimits limits = limits(1024, 256, 8192, 10);
+
+        assertViolation(limits.checkMessage(message(START_LINE, "Content-Length: 11\r\n", "\r\n", "0123456789A")),
+            MessageLimits.BODY_SIZE, 10, 11);
+    }
+
+    @Test
+    void doesNotCheckLinesOfTheBody() {
+        MessageLimits limits = limits(1024, 1, 20, 1024);
+
+        assertThat(limits.checkMessage(message(START_LINE.substring(0, 18) + "\r\n", "A: 1\r\n", "\r\n",
+            "a line of the body that is longer than a header may be\r\nB: 2\r\n"))).isNull();
+    }
+
+    @Test
+    void checksTextAndHeaderLengthBeforeEncoding() {
+        MessageLimits limits = limits(10, 256, 5, 1024);
+
+        assertThat(limits.checkMessageText("x".repeat(10))).isNull();
+        assertViolation(limits.checkMessageText("x".repeat(11)), MessageLimits.MESSAGE_SIZE, 10, 11);
+        assertThat(limits.checkHeaderText("x".repeat(5))).isNull();
+        assertViolation(limits.checkHeaderText("x".repeat(6)), MessageLimits.LINE_LENGTH, 5, 6);
+    }
+
+    static MessageLimits limits(int messageSize, int headerCount, int lineLength, int bodySize) {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getLimits().setMaxMessageSize(messageSize);
+        properties.getLimits().setMaxHeaderCount(headerCount);
+        properties.getLimits().setMaxLineLength(lineLength);
+        properties.getLimits().setMaxBodySize(bodySize);
+        return new MessageLimits(properties);
+    }
+
+    private static byte[] message(String... lines) {
+        return String.join("", lines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertViolation(LimitViolation violation, String limit, long maximum, long actual) {
+        assertThat(violation).isNotNull();
+        assertThat(violation.getLimit()).isEqualTo(limit);
+        assertThat(violation.getMaximum()).isEqualTo(maximum);
+        assertThat(violation.getActual()).isEqualTo(actual);
+    }
+}
@@ -0,0 +1,254 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.model.ResultMessage;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SdpValidatorTest {
+
+    private static final String SESSION = "v=0\r\n"
+        + "o=alice 2890844526 2890844526 IN IP4 pc33.example.com\r\n"
+        + "s=-\r\n"
+        + "c=IN IP4 192.0.2.101\r\n"
+        + "t=0 0\r\n";
+
+    private final SdpValidator anyCodec = new SdpValidator(List.of());
+
+    @Test
+    void acceptsValidBody() {
+        String body = SESSION
+            + "a=sendrecv\r\n"
+            + "m=audio 49170 RTP/AVP 0 8 101\r\n"
+            + "a=rtpmap:8 PCMA/8000\r\n"
+            + "a=rtpmap:101 telephone-event/8000\r\n"
+            + "a=fmtp:101 0-15\r\n"
+            + "a=recvonly\r\n"
+            + "m=video 51372 RTP/AVP 96\r\n"
+            + "c=IN IP6 2001:db8::1\r\n"
+            + "a=rtpmap:96 H264/90000\r\n";
+
+        ValidationResult result = new ValidationResult();
+        assertThat(anyCodec.validate(bytes(body), 0, body.length(), result)).isEqualTo(2);
+        assertThat(result.getErrorEntries()).isEmpty();
+    }
+
+    @Test
+    void reportsSyntaxProblems() {
+        assertThat(problems(anyCodec, "v=1\r\ns=-\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_SYNTAX, "line 1: the first line must be v=0"));
+        assertThat(problems(anyCodec, "s=-\r\nv=0\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_SYNTAX, "line 1: the first line must be v=0"));
+        assertThat(problems(anyCodec, "")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_SYNTAX, "line 1: the body is empty"));
+        assertThat(problems(anyCodec, "\r\n\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_SYNTAX, "line 1: the body is empty"));
+        assertThat(problems(anyCodec, SESSION + "no value\r\nX=1\r\n"))
+            .extracting(ResultMessage::detail)
+            .containsExactly("line 6: not a <type>=<value> line: no value", "line 7: not a <type>=<value> line: X=1");
+        assertThat(problems(anyCodec, SESSION + "m=audio 49170\r\n")).singleElement()
+            .satisfies(problem -> assertThat(problem.code()).isEqualTo(ResultCode.SDP_SYNTAX));
+    }
+
+    @Test
+    void reportsDynamicPayloadTypeWithoutRtpmap() {
+        assertThat(problems(anyCodec, SESSION + "m=audio 49170 RTP/AVP 0 97\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_CODEC,
+                "line 6: dynamic payload type 97 has no rtpmap"));
+        assertThat(problems(anyCodec, SESSION + "m=audio 49170 RTP/AVP 0 abc\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_CODEC,
+                "line 6: format abc is not an RTP payload type"));
+    }
+
+    @Test
+    void reportsRtpmapAndFmtpOfFormatsNotOffered() {
+        String body = SESSION
+            + "a=rtpmap:0 PCMU/8000\r\n"
+            + "m=audio 49170 RTP/AVP 0\r\n"
+            + "a=rtpmap:8 PCMA/8000\r\n"
+            + "a=fmtp:101 0-15\r\n";
+
+        assertThat(problems(anyCodec, body)).extracting(ResultMessage::detail).containsExactly(
+            "line 6: rtpmap outside of a media description",
+            "line 8: rtpmap for payload type 8, which the media description in line 7 does not offer",
+            "line 9: fmtp for payload type 101, which the media description in line 7 does not offer");
+    }
+
+    @Test
+    void reportsStaticPayloadTypeMappedToAnotherEncodingAndSecondRtpmap() {
+        String body = SESSION
+            + "m=audio 49170 RTP/AVP 0 96\r\n"
+            + "a=rtpmap:0 PCMA/8000\r\n"
+            + "a=rtpmap:96 opus/48000/2\r\n"
+            + "a=rtpmap:96 opus/48000/2\r\n"
+            + "a=rtpmap:96\r\n";
+
+        assertThat(problems(anyCodec, body)).extracting(ResultMessage::detail).containsExactly(
+            "line 7: payload type 0 is PCMU, not PCMA",
+            "line 9: second rtpmap for payload type 96",
+            "line 10: second rtpmap for payload type 96");
+        // Encoding names compare case-insensitively
+        assertThat(problems(anyCodec, SESSION + "m=audio 49170 RTP/AVP 8\r\na=rtpmap:8 pcma/8000\r\n")).isEmpty();
+        assertThat(problems(anyCodec, SESSION + "m=audio 49170 RTP/AVP 96\r\na=rtpmap:96 opus\r\n"))
+            .extracting(ResultMessage::detail)
+            .containsExactly("line 7: rtpmap for payload type 96 needs encoding name and clock rate: opus");
+    }
+
+    @Test
+    void checksOfferedCodecsAgainstTheAllowedList() {
+        SdpValidator allowed = new SdpValidator(List.of("PCMA", " opus "));
+
+        // Static types are allowed by their encoding without rtpmap
+        assertThat(problems(allowed, SESSION + "m=audio 49170 RTP/AVP 0 8\r\n")).isEmpty();
+        assertThat(problems(allowed, SESSION + "m=audio 49170 RTP/AVP 96\r\na=rtpmap:96 OPUS/48000/2\r\n")).isEmpty();
+        assertThat(problems(allowed, SESSION + "m=audio 49170 RTP/AVP 0 96\r\na=rtpmap:96 G726-32/8000\r\n"))
+            .singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_CODEC,
+                "line 6: none of the formats is an allowed codec"));
+        // A static type mapped to another encoding counts by its rtpmap
+        assertThat(problems(allowed, SESSION + "m=audio 49170 RTP/AVP 8\r\na=rtpmap:8 G729/8000\r\n"))
+            .extracting(ResultMessage::detail)
+            .containsExactly("line 7: payload type 8 is PCMA, not G729", "line 6: none of the formats is an allowed codec");
+        // Inactive and non-RTP media descriptions are not checked
+        assertThat(problems(allowed, SESSION + "m=audio 0 RTP/AVP 0\r\n")).isEmpty();
+        assertThat(problems(allowed, SESSION + "m=application 9 TCP/BFCP *\r\n")).isEmpty();
+    }
+
+    @Test
+    void reportsConflictingDirections() {
+        String body = SESSION
+            + "a=sendonly\r\n"
+            + "a=inactive\r\n"
+            + "m=audio 49170 RTP/AVP 0\r\n"
+            + "a=sendrecv\r\n"
+            + "m=audio 49172 RTP/AVP 0\r\n"
+            + "a=recvonly\r\n"
+            + "a=sendonly\r\n";
+
+        List<ResultMessage> problems = problems(anyCodec, body);
+
+        assertThat(problems).extracting(ResultMessage::code).containsOnly(ResultCode.SDP_DIRECTION);
+        assertThat(problems).extracting(ResultMessage::detail).containsExactly(
+            "line 7: inactive conflicts with an earlier direction at session level",
+            "line 12: sendonly conflicts with an earlier direction of the media description in line 10");
+    }
+
+    @Test
+    void checksIp4Addresses() {
+        assertThat(connectionProblems("IN IP4 192.0.2.1")).isEmpty();
+        assertThat(connectionProblems("IN IP4 224.2.1.1/127/3")).isEmpty();
+        assertThat(connectionProblems("IN IP4 media.example.com")).isEmpty();
+        assertThat(connectionProblems("IN IP4 1.2.3.4.")).containsExactly("line 6: 1.2.3.4. is no IP4 address");
+        assertThat(connectionProblems("IN IP4 256.1.1.1")).containsExactly("line 6: 256.1.1.1 is no IP4 address");
+        assertThat(connectionProblems("IN IP4 1.2.3")).containsExactly("line 6: 1.2.3 is no IP4 address");
+        assertThat(connectionProblems("IN IP4 -media.example.com"))
+            .containsExactly("line 6: -media.example.com is no IP4 address");
+        assertThat(connectionProblems("IN IP4 host_name")).containsExactly("line 6: host_name is no IP4 address");
+    }
+
+    @Test
+    void checksIp6Addresses() {
+        assertThat(connectionProblems("IN IP6 2001:db8::1")).isEmpty();
+        assertThat(connectionProblems("IN IP6 ::ffff:192.0.2.1")).isEmpty();
+        assertThat(connectionProblems("IN IP6 media.example.com")).isEmpty();
+        assertThat(connectionProblems("IN IP6 2001::db8::1")).containsExactly("line 6: 2001::db8::1 is no IP6 address");
+        assertThat(connectionProblems("IN IP6 2001:db8:g::1")).containsExactly("line 6: 2001:db8:g::1 is no IP6 address");
+    }
+
+    @Test
+    void reportsConnectionsOfOtherTypes() {
+        assertThat(connectionProblems("ATM NSAP 47.0005")).containsExactly("line 6: network type ATM is not IN");
+        assertThat(connectionProblems("IN IPX 192.0.2.1"))
+            .containsExactly("line 6: address type IPX is neither IP4 nor IP6");
+        assertThat(connectionProblems("IN IP4"))
+            .containsExactly("line 6: a connection needs network type, address type and address: IN IP4");
+    }
+
+    @Test
+    void requiresConnectionForActiveMediaOnly() {
+        String noSessionConnection = "v=0\r\ns=-\r\nt=0 0\r\n";
+
+        assertThat(problems(anyCodec, noSessionConnection + "m=audio 49170 RTP/AVP 0\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_ADDRESS,
+                "line 4: media description without connection address"));
+        assertThat(problems(anyCodec, noSessionConnection + "m=audio 0 RTP/AVP 0\r\n")).isEmpty();
+        assertThat(problems(anyCodec, noSessionConnection + "m=audio 49170 RTP/AVP 0\r\nc=IN IP4 192.0.2.1\r\n"))
+            .isEmpty();
+        assertThat(problems(anyCodec, SESSION + "m=audio 70000 RTP/AVP 0\r\n")).singleElement()
+            .satisfies(problem -> assertProblem(problem, ResultCode.SDP_ADDRESS, "line 6: invalid port 70000"));
+    }
+
+    @Test
+    void checksOnlyTheGivenRangeOfTheArray() {
+        String body = SESSION + "m=audio 49170 RTP/AVP 0\r\n";
+        byte[] buffer = bytes("garbage" + body + "m=audio 49170 RTP/AVP 97\r\n");
+
+        ValidationResult result = new ValidationResult();
+        anyCodec.validate(buffer, "garbage".length(), body.length(), result);
+
+        assertThat(result.getErrorEntries()).isEmpty();
+    }
+
+    @Test
+    void boundsTheBodyOfMessagesByContentLengthAndCountsSdpErrors() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SipValidatorService service = new SipValidatorService(new ValidationMetrics(registry),
+            ValidationCache.disabled(), MessageLimits.defaults(), anyCodec);
+        String valid = SESSION + "m=audio 49170 RTP/AVP 0\r\n";
+
+        // Responses are parsed leniently, bytes after Content-Length are not part of the body
+        ValidationResult bounded = service.validateMessage(response(valid, valid.length(), "m=audio 1 RTP/AVP 97\r\n"));
+        assertThat(bounded.isValid()).isTrue();
+        assertThat(bounded.getMessageEntries()).contains(new ResultMessage(ResultCode.SDP_CHECKED, "1"));
+
+        String broken = SESSION + "m=audio 49170 RTP/AVP 97\r\n";
+        ValidationResult invalid = service.validateMessage(response(broken, broken.length(), ""));
+        assertThat(invalid.isValid()).isFalse();
+        assertThat(invalid.getErrorEntries()).singleElement()
+            .satisfies(problem -> assertThat(problem.code()).isEqualTo(ResultCode.SDP_CODEC));
+        assertThat(registry.get("sipvalidator.errors").tag("category", ValidationMetrics.SDP).counter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("sipvalidator.sdp.problems").tag("kind", "codec").counter().count()).isEqualTo(1);
+    }
+
+    private static String response(String body, int contentLength, String trailing) {
+        return "SIP/2.0 200 OK\r\n"
+            + "Via: SIP/2.0/UDP pc33.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "To: Bob <sip:bob@example.com>;tag=a6c85cf\r\n"
+            + "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Content-Type: application/sdp\r\n"
+            + "Content-Length: " + contentLength + "\r\n"
+            + "\r\n"
+            + body + trailing;
+    }
+
+    private List<String> connectionProblems(String connection) {
+        String body = "v=0\r\ns=-\r\nt=0 0\r\nm=audio 49170 RTP/AVP 0\r\na=sendrecv\r\nc=" + connection + "\r\n";
+        return problems(anyCodec, body).stream().map(ResultMessage::detail).toList();
+    }
+
+    private static List<ResultMessage> problems(SdpValidator validator, String body) {
+        ValidationResult result = new ValidationResult();
+        validator.validate(bytes(body), 0, body.length(), result);
+        return result.getErrorEntries();
+    }
+
+    private static void assertProblem(ResultMessage problem, ResultCode code, String detail) {
+        assertThat(problem.code()).isEqualTo(code);
+        assertThat(problem.detail()).isEqualTo(detail);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
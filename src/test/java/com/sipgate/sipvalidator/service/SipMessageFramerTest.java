@@ -0,0 +1,188 @@
+package com.sipgate.sipvalidator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SipMessageFramerTest {
+
+    private static final String OPTIONS = "OPTIONS sip:bob@example.com SIP/2.0\r\n"
+        + "Via: SIP/2.0/TCP pc33.example.com;branch=z9hG4bK74bf9\r\n"
+        + "Call-ID: 843817637684230@998sdasdh09\r\n"
+        + "CSeq: 63104 OPTIONS\r\n"
+        + "Content-Length: 0\r\n"
+        + "\r\n";
+
+    private static final String MESSAGE = "MESSAGE sip:bob@example.com SIP/2.0\r\n"
+        + "Via: SIP/2.0/TCP pc33.example.com;branch=z9hG4bK776sgdkse\r\n"
+        + "Call-ID: asd88asd77a@1.2.3.4\r\n"
+        + "CSeq: 1 MESSAGE\r\n"
+        + "Content-Type: text/plain\r\n"
+        + "Content-Length: 18\r\n"
+        + "\r\n"
+        + "Watson, come here.";
+
+    private final Collector collector = new Collector();
+
+    @Test
+    void framesConcatenatedMessagesAndSkipsEmptyLinesBetweenThem() {
+        SipMessageFramer framer = new SipMessageFramer(4096, collector);
+
+        feed(framer, "\r\n\r\n" + OPTIONS + MESSAGE + "\r\n\r\n" + OPTIONS, Integer.MAX_VALUE);
+        framer.finish();
+
+        assertThat(collector.messages).containsExactly(OPTIONS, MESSAGE, OPTIONS);
+        assertThat(collector.oversized).isEmpty();
+    }
+
+    @Test
+    void framesTheSameMessagesWhateverTheChunkSize() {
+        String stream = OPTIONS + MESSAGE + "\r\n" + MESSAGE + OPTIONS;
+
+        for (int chunkSize : new int[] {1, 2, 3, 7, 13, 64, 97}) {
+            Collector chunked = new Collector();
+            SipMessageFramer framer = new SipMessageFramer(4096, chunked);
+            feed(framer, stream, chunkSize);
+            framer.finish();
+
+            assertThat(chunked.messages).as("chunks of %d bytes", chunkSize)
+                .containsExactly(OPTIONS, MESSAGE, MESSAGE, OPTIONS);
+        }
+    }
+
+    @Test
+    void readsTheCompactContentLengthHeader() {
+        String compact = MESSAGE.replace("Content-Length: 18", "l : 18");
+        String upperCase = MESSAGE.replace("Content-Length: 18", "L:18");
+        SipMessageFramer framer = new SipMessageFramer(4096, collector);
+
+        feed(framer, compact + upperCase + OPTIONS, 5);
+
+        assertThat(collector.messages).containsExactly(compact, upperCase, OPTIONS);
+    }
+
+    @Test
+    void endsMessagesWithoutContentLengthAtTheEmptyLine() {
+        String withoutLength = OPTIONS.replace("Content-Length: 0\r\n", "");
+        SipMessageFramer framer = new SipMessageFramer(4096, collector);
+
+        feed(framer, withoutLength + MESSAGE, 11);
+
+        assertThat(collector.messages).containsExactly(withoutLength, MESSAGE);
+    }
+
+    @Test
+    void dropsAnOversizedMessageAndFramesTheNextOne() {
+        String body = "x".repeat(500);
+        String large = MESSAGE.replace("Content-Length: 18", "Content-Length: 500")
+            .replace("Watson, come here.", body);
+        SipMessageFramer framer = new SipMessageFramer(300, collector);
+
+        feed(framer, large + OPTIONS, 64);
+
+        // The announced body is skipped, so the next message starts right after it
+        assertThat(collector.oversized).containsExactly((long) large.length());
+        assertThat(collector.messages).containsExactly(OPTIONS);
+    }
+
+    @Test
+    void resynchronisesAfterAnOversizedHeaderSection() {
+        String large = OPTIONS.replace("Content-Length: 0", "Subject: " + "y".repeat(400) + "\r\nContent-Length: 0");
+        SipMessageFramer framer = new SipMessageFramer(300, collector);
+
+        feed(framer, large + OPTIONS, Integer.MAX_VALUE);
+
+        assertThat(collector.oversized).containsExactly((long) large.length());
+        assertThat(collector.messages).containsExactly(OPTIONS);
+    }
+
+    @Test
+    void emitsATruncatedFinalMessageAsItIs() {
+        String truncatedBody = MESSAGE.substring(0, MESSAGE.length() - 5);
+        String truncatedHeaders = OPTIONS.substring(0, 50);
+
+        SipMessageFramer framer = new SipMessageFramer(4096, collector);
+        feed(framer, OPTIONS + truncatedBody, 9);
+        assertThat(collector.messages).containsExactly(OPTIONS);
+        framer.finish();
+
+        feed(framer, truncatedHeaders, 9);
+        framer.finish();
+        // Nothing is left over for the next stream
+        framer.finish();
+
+        assertThat(collector.messages).containsExactly(OPTIONS, truncatedBody, truncatedHeaders);
+    }
+
+    @Test
+    void reportsADiscardedMessageThatEndsWithTheStream() {
+        // The stream ends long before the announced body does
+        String truncated = MESSAGE.replace("Content-Length: 18", "Content-Length: 1000");
+        SipMessageFramer framer = new SipMessageFramer(truncated.length() - 5, collector);
+
+        feed(framer, truncated, Integer.MAX_VALUE);
+        assertThat(collector.oversized).isEmpty();
+        framer.finish();
+
+        assertThat(collector.messages).isEmpty();
+        assertThat(collector.oversized).containsExactly((long) truncated.length());
+    }
+
+    @Test
+    void consumesAStreamToItsEnd() throws IOException {
+        SipMessageFramer framer = new SipMessageFramer(4096, collector);
+
+        framer.consume(new ByteArrayInputStream((MESSAGE + OPTIONS.substring(0, 20)).getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(collector.messages).containsExactly(MESSAGE, OPTIONS.substring(0, 20));
+    }
+
+    @Test
+    void parsesTheContentLengthOfAHeaderSection() {
+        assertThat(contentLength(MESSAGE)).isEqualTo(18);
+        assertThat(contentLength(MESSAGE.replace("Content-Length: 18", "content-length:\t 18 "))).isEqualTo(18);
+        assertThat(contentLength(MESSAGE.replace("Content-Length: 18", "Content-Length: 99999999999"))).isEqualTo(Integer.MAX_VALUE);
+        assertThat(contentLength(MESSAGE.replace("Content-Length: 18", "Content-Length: abc"))).isZero();
+        assertThat(contentLength(MESSAGE.replace("Content-Length: 18\r\n", ""))).isEqualTo(-1);
+        // A body line that looks like the header does not count
+        assertThat(contentLength(OPTIONS.replace("Content-Length: 0\r\n", "") + "l: 5")).isEqualTo(-1);
+    }
+
+    private static int contentLength(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int headerLength = message.indexOf("\r\n\r\n") + 4;
+        return SipMessageFramer.parseContentLength(bytes, headerLength);
+    }
+
+    private static void feed(SipMessageFramer framer, String stream, int chunkSize) {
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            // Pass the array with the chunk in the middle to check offsets are honoured
+            int count = Math.min(chunkSize, bytes.length - offset);
+            byte[] chunk = new byte[count + 2];
+            System.arraycopy(bytes, offset, chunk, 1, count);
+            framer.feed(chunk, 1, count);
+        }
+    }
+
+    private static final class Collector implements SipMessageFramer.Listener {
+        private final List<String> messages = new ArrayList<>();
+        private final List<Long> oversized = new ArrayList<>();
+
+        @Override
+        public void onMessage(byte[] message) {
+            messages.add(new String(message, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onOversized(long discardedBytes) {
+            oversized.add(discardedBytes);
+        }
+    }
+}
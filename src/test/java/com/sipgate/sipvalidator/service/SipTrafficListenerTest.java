@@ -0,0 +1,154 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SipTrafficListenerTest {
+
+    /** The INVITE with a request line that does not parse */
+    private static final String BROKEN_INVITE = SipValidatorServiceTest.INVITE
+        .replace("INVITE sip:bob@example.com SIP/2.0", "INVITE bob SIP/3.0");
+
+    private SipValidatorProperties properties;
+    private SimpleMeterRegistry registry;
+    private SipTrafficListener listener;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new SipValidatorProperties();
+        properties.getListener().setBindAddress(InetAddress.getLoopbackAddress().getHostAddress());
+        properties.getListener().setUdpPort(freeUdpPort());
+        properties.getListener().setTcpPort(freeTcpPort());
+        properties.getListener().setWorkers(1);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (listener != null) {
+            listener.stop();
+        }
+    }
+
+    @Test
+    void validatesDatagramsAndTcpStreamsWithoutAnswering() throws Exception {
+        start();
+
+        try (DatagramSocket udp = new DatagramSocket()) {
+            send(udp, SipValidatorServiceTest.INVITE);
+            await(() -> validations("valid"), 1);
+
+            // Nothing comes back to the sender
+            udp.setSoTimeout(200);
+            assertThatThrownBy(() -> udp.receive(new DatagramPacket(new byte[1024], 1024)))
+                .isInstanceOf(SocketTimeoutException.class);
+        }
+
+        try (Socket tcp = new Socket()) {
+            tcp.connect(listener.getTcpAddress());
+            tcp.getOutputStream().write((SipValidatorServiceTest.INVITE + BROKEN_INVITE).getBytes(StandardCharsets.UTF_8));
+            tcp.shutdownOutput();
+            await(() -> validations("valid") + validations("invalid"), 3);
+
+            // The listener closes its side once the stream ends, without writing anything
+            tcp.setSoTimeout(5000);
+            InputStream in = tcp.getInputStream();
+            assertThat(in.read()).isEqualTo(-1);
+        }
+
+        assertThat(validations("valid")).isEqualTo(2);
+        assertThat(validations("invalid")).isEqualTo(1);
+        assertThat(registry.get("sipvalidator.listener.received").tag("transport", "udp").counter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("sipvalidator.listener.received").tag("transport", "tcp").counter().count())
+            .isEqualTo(2);
+        assertThat(dropped("udp", "queue-full") + dropped("tcp", "queue-full")).isZero();
+    }
+
+    @Test
+    void dropsMessagesWhenTheQueueIsFull() throws Exception {
+        // Without workers nothing takes messages off the queue
+        properties.getListener().setWorkers(0);
+        properties.getListener().setQueueCapacity(2);
+        start();
+
+        try (DatagramSocket udp = new DatagramSocket()) {
+            for (int i = 0; i < 5; i++) {
+                send(udp, SipValidatorServiceTest.INVITE);
+            }
+            await(() -> registry.get("sipvalidator.listener.received").tag("transport", "udp").counter().count(), 5);
+        }
+
+        assertThat(registry.get("sipvalidator.listener.queue").gauge().value()).isEqualTo(2);
+        assertThat(dropped("udp", "queue-full")).isEqualTo(3);
+        assertThat(validations("valid") + validations("invalid")).isZero();
+    }
+
+    private void start() throws IOException {
+        SipValidatorService service = new SipValidatorService(new ValidationMetrics(registry),
+            ValidationCache.disabled(), MessageLimits.defaults());
+        listener = new SipTrafficListener(service, properties, registry);
+        listener.start();
+    }
+
+    private void send(DatagramSocket udp, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        udp.send(new DatagramPacket(bytes, bytes.length, listener.getUdpAddress()));
+    }
+
+    private double validations(String outcome) {
+        return registry.find("sipvalidator.validation").tag("kind", "message").tag("outcome", outcome)
+            .timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    private double dropped(String transport, String reason) {
+        return registry.get("sipvalidator.listener.dropped").tag("transport", transport).tag("reason", reason)
+            .counter().count();
+    }
+
+    private static void await(DoubleSupplier value, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (value.getAsDouble() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(value.getAsDouble()).isEqualTo(expected);
+    }
+
+    /**
+     * Port 0 disables a transport of the listener, so ephemeral ports are
+     * looked up beforehand
+     */
+    private static int freeUdpPort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int freeTcpPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
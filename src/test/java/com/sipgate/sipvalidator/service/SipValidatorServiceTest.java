@@ -0,0 +1,242 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.HeaderInfo;
+import com.sipgate.sipvalidator.model.LimitViolation;
+import com.sipgate.sipvalidator.model.ResultCode;
+import com.sipgate.sipvalidator.model.ResultMessage;
+import com.sipgate.sipvalidator.service.SipHeaderRfcMapping.RfcReference;
+import com.sipgate.sipvalidator.service.SipValidatorService.ValidationResult;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SipValidatorServiceTest {
+
+    static final String INVITE = "INVITE sip:bob@example.com SIP/2.0\r\n"
+        + "Via: SIP/2.0/UDP pc33.example.com;branch=z9hG4bK776asdhds\r\n"
+        + "Max-Forwards: 70\r\n"
+        + "To: Bob <sip:bob@example.com>\r\n"
+        + "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+        + "Call-ID: a84b4c76e66710@pc33.example.com\r\n"
+        + "CSeq: 314159 INVITE\r\n"
+        + "Contact: <sip:alice@pc33.example.com>\r\n"
+        + "Content-Length: 0\r\n"
+        + "\r\n";
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void validatesMessageWithinLimits() {
+        SipValidatorService service = service(MessageLimits.defaults());
+
+        ValidationResult result = service.validateMessage(INVITE);
+
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.getRejection()).isNull();
+        assertThat(result.getHeaderCount()).isEqualTo(8);
+    }
+
+    @Test
+    void rejectsMessageOverHeaderCountWithoutParsing() {
+        SipValidatorService service = service(MessageLimitsTest.limits(1024, 3, 8192, 1024));
+
+        ValidationResult result = service.validateMessage(INVITE);
+
+        assertThat(result.isValid()).isFalse();
+        LimitViolation rejection = result.getRejection();
+        assertThat(rejection.getLimit()).isEqualTo(MessageLimits.HEADER_COUNT);
+        assertThat(rejection.getMaximum()).isEqualTo(3);
+        assertThat(rejection.getActual()).isEqualTo(4);
+        assertThat(result.getErrorEntries()).singleElement()
+            .satisfies(error -> assertThat(error.code()).isEqualTo(ResultCode.LIMIT_EXCEEDED));
+        assertThat(result.getHeaderCount()).isZero();
+        assertThat(rejected(MessageLimits.HEADER_COUNT)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTooLongMessageTextBeforeEncoding() {
+        SipValidatorService service = service(MessageLimitsTest.limits(100, 256, 8192, 1024));
+
+        ValidationResult plain = service.validateMessage(INVITE);
+        ValidationResult detailed = service.validateMessageDetailed(INVITE);
+
+        assertThat(plain.getRejection().getLimit()).isEqualTo(MessageLimits.MESSAGE_SIZE);
+        assertThat(plain.getRejection().getActual()).isEqualTo(INVITE.length());
+        assertThat(detailed.getRejection().getLimit()).isEqualTo(MessageLimits.MESSAGE_SIZE);
+        assertThat(rejected(MessageLimits.MESSAGE_SIZE)).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsTooLongHeader() {
+        SipValidatorService service = service(MessageLimitsTest.limits(1024, 256, 20, 1024));
+
+        ValidationResult result = service.validateHeader("Subject: " + "x".repeat(20));
+
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getRejection().getLimit()).isEqualTo(MessageLimits.LINE_LENGTH);
+        assertThat(rejected(MessageLimits.LINE_LENGTH)).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotCopiesHeadersAndMakesThemUnmodifiable() {
+        ValidationResult result = new ValidationResult();
+        HeaderInfo header = new HeaderInfo("Via", "Via", "Via", null);
+        result.addHeader(header);
+
+        ValidationResult snapshot = result.snapshot();
+        header.setValid(false);
+
+        HeaderInfo copy = snapshot.getHeaders().get(0);
+        assertThat(copy).isNotSameAs(header);
+        assertThat(copy.getName()).isEqualTo("Via");
+        assertThat(copy.getValid()).isNull();
+        assertThatThrownBy(() -> copy.setType("changed")).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(snapshot.snapshot().getHeaders().get(0)).isSameAs(copy);
+    }
+
+    @Test
+    void snapshotRejectsEveryChange() {
+        ValidationResult result = new ValidationResult();
+        result.setValid(true);
+        result.addMessage(ResultCode.MESSAGE_PARSED);
+
+        ValidationResult snapshot = result.snapshot();
+
+        assertThatThrownBy(() -> snapshot.setValid(false)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.setRejection(null)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.addMessage(ResultCode.MESSAGE_TYPE, "SIPRequest"))
+            .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.addError(ResultCode.PARSE_ERROR, "broken"))
+            .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.addHeaderName("Via")).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(snapshot.isValid()).isTrue();
+        assertThat(snapshot.getErrorEntries()).isEmpty();
+        assertThat(snapshot.snapshot()).isSameAs(snapshot);
+
+        // The result the snapshot was taken of stays modifiable
+        result.addError(ResultCode.PARSE_ERROR, "broken");
+        assertThat(result.isValid()).isFalse();
+    }
+
+    @Test
+    void cachedMessageResultsCannotBeChangedByCallers() {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getCache().setEnabled(true);
+        SipValidatorService service = new SipValidatorService(new ValidationMetrics(registry),
+            new ValidationCache(properties, registry), MessageLimits.defaults());
+
+        ValidationResult first = service.validateMessage(INVITE);
+        assertThatThrownBy(() -> first.addError(ResultCode.PARSE_ERROR, "broken"))
+            .isInstanceOf(UnsupportedOperationException.class);
+
+        ValidationResult second = service.validateMessage(INVITE);
+        assertThat(second.isValid()).isTrue();
+        assertThat(second.getErrorEntries()).isEmpty();
+    }
+
+    @Test
+    void cachedHeaderResultsCannotBeChangedByCallers() {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getCache().setEnabled(true);
+        SipValidatorService service = new SipValidatorService(new ValidationMetrics(registry),
+            new ValidationCache(properties, registry), MessageLimits.defaults());
+
+        HeaderInfo first = service.validateHeader("Max-Forwards: 70").getHeaders().get(0);
+        assertThatThrownBy(() -> first.setCanonicalName("changed"))
+            .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(service.validateHeader("Max-Forwards: 70").getHeaders().get(0).getCanonicalName())
+            .isEqualTo("Max-Forwards");
+    }
+
+    @Test
+    void detailedValidationLooksUpRfcReferencesOfEveryHeaderSpelling() {
+        SipValidatorService service = service(MessageLimits.defaults());
+        String message = INVITE.replace("Via:", "v :").replace("Call-ID:", "CALL-ID:")
+            .replace("Contact:", "X-Custom: 1\r\nContact:");
+
+        List<HeaderInfo> headers = service.validateMessageDetailed(message).getHeaders();
+
+        assertThat(headers).extracting(HeaderInfo::getName).startsWith("v", "Max-Forwards");
+        assertThat(headers.get(0).getRfcReference()).isSameAs(SipHeaderRfcMapping.getRfcReference("Via"));
+        assertThat(headers).filteredOn(header -> header.getName().equals("CALL-ID")).singleElement()
+            .satisfies(header -> assertThat(header.getRfcReference().getSection()).isEqualTo("20.8"));
+        assertThat(headers).filteredOn(header -> header.getName().equals("X-Custom")).singleElement()
+            .satisfies(header -> assertThat(header.getRfcReference()).isNull());
+    }
+
+    @Test
+    void detailedValidationReportsLineAndColumnOfEveryBrokenHeader() {
+        SipValidatorService service = service(MessageLimits.defaults());
+        String message = "INVITE sip:bob@example.com SIP/2.0\r\n"
+            + "v: SIP/2.0/UDP pc33.example.com;branch=z9hG4bK776asdhds\r\n"
+            + "Max-Forwards: seventy\r\n"
+            + "To: Bob\r\n"
+            + " <sip:bob@example.com>\r\n"
+            + "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+            + "Call-ID: a84b4c76e66710@pc33.example.com\r\n"
+            + "CSeq: 314159 INVITE\r\n"
+            + "Contact: <sip:alice@pc33.example.com\r\n"
+            + "l: 0\r\n"
+            + "\r\n";
+
+        ValidationResult result = service.validateMessageDetailed(message);
+
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getErrorEntries()).extracting(ResultMessage::code)
+            .containsExactly(ResultCode.INVALID_HEADER, ResultCode.INVALID_HEADER);
+        assertThat(result.getErrorEntries()).extracting(ResultMessage::detail).satisfiesExactly(
+            detail -> assertThat(detail).startsWith("Max-Forwards header at line 3, column 15: "),
+            detail -> assertThat(detail).startsWith("Contact header at line 9, column 37: "));
+        // The folded To header counts as one header at its first line
+        assertThat(result.getHeaders()).extracting(HeaderInfo::getName, HeaderInfo::getLine, HeaderInfo::getValid,
+                HeaderInfo::getErrorColumn)
+            .containsExactly(
+                tuple("v", 2, true, null),
+                tuple("Max-Forwards", 3, false, 15),
+                tuple("To", 4, true, null),
+                tuple("From", 6, true, null),
+                tuple("Call-ID", 7, true, null),
+                tuple("CSeq", 8, true, null),
+                tuple("Contact", 9, false, 37),
+                tuple("l", 10, true, null));
+        assertThat(result.getHeaders()).filteredOn(header -> header.getName().length() == 1)
+            .extracting(HeaderInfo::getCanonicalName, HeaderInfo::getType)
+            .containsExactly(tuple("Via", "Via"), tuple("Content-Length", "ContentLength"));
+    }
+
+    @Test
+    void registeredReferencesHaveTheirIndexAsId() {
+        List<RfcReference> references = SipHeaderRfcMapping.getReferences();
+        for (int i = 0; i < references.size(); i++) {
+            assertThat(SipHeaderRfcMapping.getReferenceId(references.get(i))).isEqualTo(i);
+        }
+        RfcReference via = SipHeaderRfcMapping.getRfcReference("Via");
+        assertThat(RfcReference.of(via.getRfc(), via.getSection(), via.getUrl())).isSameAs(via);
+        assertThat(SipHeaderRfcMapping.getReferenceId(new RfcReference("RFC 1", "1", "https://example.com")))
+            .isEqualTo(-1);
+    }
+
+    private SipValidatorService service(MessageLimits limits) {
+        return new SipValidatorService(new ValidationMetrics(registry), ValidationCache.disabled(), limits);
+    }
+
+    private double rejected(String limit) {
+        Counter counter = registry.find("sipvalidator.rejected").tag("limit", limit).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+import com.sipgate.sipvalidator.model.JobStatus;
+import com.sipgate.sipvalidator.model.JobStatus.State;
+import com.sipgate.sipvalidator.model.ValidationRequest;
+import com.sipgate.sipvalidator.model.ValidationResponse;
+import com.sipgate.sipvalidator.service.ValidationJobService.JobResults;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ValidationJobServiceTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder().build();
+
+    private SipValidatorProperties properties;
+    private InMemoryJobStore store;
+    private SimpleMeterRegistry registry;
+    /** Holds the workers in validateRequests until released */
+    private CountDownLatch release;
+    private BatchValidationService batch;
+    private ValidationJobService jobs;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SipValidatorProperties();
+        properties.getJobs().setWorkers(1);
+        properties.getJobs().setChunkSize(2);
+        store = new InMemoryJobStore();
+        registry = new SimpleMeterRegistry();
+        release = new CountDownLatch(0);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (jobs != null) {
+            jobs.shutdown();
+        }
+        batch.shutdown();
+    }
+
+    @Test
+    void validatesJobInChunksAndPagesThroughResults() throws Exception {
+        start();
+        List<ValidationRequest> requests = requests(5);
+
+        JobStatus submitted = jobs.submit(requests);
+        assertThat(submitted.getState()).isEqualTo(State.QUEUED);
+        assertThat(submitted.getTotal()).isEqualTo(5);
+
+        JobStatus finished = awaitFinished(submitted.getId());
+        assertThat(finished.getState()).isEqualTo(State.COMPLETED);
+        assertThat(finished.getCompleted()).isEqualTo(5);
+        assertThat(finished.getValid()).isEqualTo(3);
+        assertThat(finished.getInvalid()).isEqualTo(2);
+
+        JobResults page = jobs.results(submitted.getId(), 1, 3).orElseThrow();
+        assertThat(page.results()).extracting(ValidationResponse::getId).containsExactly("m1", "m2", "m3");
+        assertThat(page.results()).extracting(ValidationResponse::isValid).containsExactly(false, true, false);
+        assertThat(jobs.results(submitted.getId(), 4, 10).orElseThrow().results()).hasSize(1);
+        assertThat(jobs.results("unknown", 0, 10)).isEmpty();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(jobs.streamResults(submitted.getId(), 2, out)).isTrue();
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize(3)
+            .allSatisfy(line -> assertThat(line).startsWith("{"));
+
+        assertThat(jobs.delete(submitted.getId())).isTrue();
+        assertThat(jobs.status(submitted.getId())).isEmpty();
+    }
+
+    @Test
+    void readingResultsDoesNotGrowTheStore() throws Exception {
+        start();
+        JobStatus submitted = jobs.submit(requests(4));
+        awaitFinished(submitted.getId());
+        long size = store.size(submitted.getId());
+
+        List<ValidationResponse> first = jobs.results(submitted.getId(), 0, 4).orElseThrow().results();
+        String json = OBJECT_MAPPER.writeValueAsString(first);
+        List<ValidationResponse> second = jobs.results(submitted.getId(), 0, 4).orElseThrow().results();
+
+        assertThat(size).isPositive();
+        assertThat(store.size(submitted.getId())).isEqualTo(size);
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+        assertThat(OBJECT_MAPPER.writeValueAsString(second)).isEqualTo(json);
+    }
+
+    @Test
+    void refusesJobWithMoreResultsThanRetained() {
+        properties.getJobs().setMaxRetainedResults(4);
+        start();
+
+        assertThatThrownBy(() -> jobs.submit(requests(5)))
+            .isInstanceOf(RejectedExecutionException.class)
+            .hasMessageContaining("retained results");
+        assertThat(store.list()).isEmpty();
+        assertThat(rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void removesOldestFinishedJobsToMakeRoom() throws Exception {
+        properties.getJobs().setMaxRetainedResults(6);
+        start();
+        JobStatus first = jobs.submit(requests(3));
+        awaitFinished(first.getId());
+        JobStatus second = jobs.submit(requests(3));
+        awaitFinished(second.getId());
+
+        JobStatus third = jobs.submit(requests(3));
+
+        assertThat(jobs.status(first.getId())).isEmpty();
+        assertThat(jobs.status(second.getId())).isPresent();
+        assertThat(awaitFinished(third.getId()).getState()).isEqualTo(State.COMPLETED);
+    }
+
+    @Test
+    void refusesJobWhileUnfinishedJobsHoldTheRetainedResults() {
+        properties.getJobs().setMaxRetainedResults(6);
+        release = new CountDownLatch(1);
+        start();
+        jobs.submit(requests(4));
+
+        assertThatThrownBy(() -> jobs.submit(requests(3)))
+            .isInstanceOf(RejectedExecutionException.class)
+            .hasMessageContaining("retained results");
+    }
+
+    @Test
+    void refusesJobWhileQueuedMessagesAreTooLarge() {
+        properties.getJobs().setMaxQueuedSize(2 * SipValidatorServiceTest.INVITE.length());
+        release = new CountDownLatch(1);
+        start();
+        // A job larger than the limit is accepted while nothing else is queued
+        JobStatus large = jobs.submit(requests(3));
+
+        assertThatThrownBy(() -> jobs.submit(requests(1)))
+            .isInstanceOf(RejectedExecutionException.class)
+            .hasMessageContaining("queued messages");
+        assertThat(rejected()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(awaitFinished(large.getId()).getState()).isEqualTo(State.COMPLETED);
+        assertThat(jobs.submit(requests(1)).getState()).isEqualTo(State.QUEUED);
+    }
+
+    private void start() {
+        properties.getBatch().setParallelism(1);
+        CountDownLatch hold = release;
+        batch = new BatchValidationService(new SipValidatorService(), properties) {
+            @Override
+            public List<ValidationResponse> validateRequests(List<ValidationRequest> requests) {
+                try {
+                    hold.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.validateRequests(requests);
+            }
+        };
+        jobs = new ValidationJobService(batch, store, OBJECT_MAPPER, properties, registry);
+    }
+
+    private JobStatus awaitFinished(String id) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            JobStatus status = jobs.status(id).orElseThrow();
+            if (status.getState().isFinished()) {
+                return status;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new AssertionError("Job " + id + " did not finish");
+    }
+
+    private double rejected() {
+        return registry.get("sipvalidator.jobs.rejected").counter().count();
+    }
+
+    /**
+     * Entries m0, m1, ... alternating between a valid INVITE and garbage
+     */
+    static List<ValidationRequest> requests(int count) {
+        List<ValidationRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String text = i % 2 == 0 ? SipValidatorServiceTest.INVITE : "not a SIP message";
+            requests.add(OBJECT_MAPPER.convertValue(Map.of("id", "m" + i, "messageText", text),
+                ValidationRequest.class));
+        }
+        return requests;
+    }
+}
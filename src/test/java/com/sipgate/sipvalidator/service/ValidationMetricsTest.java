@@ -0,0 +1,83 @@
+package com.sipgate.sipvalidator.service;
+
+import com.sipgate.sipvalidator.config.SipValidatorProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValidationMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private ValidationMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new ValidationMetrics(registry);
+    }
+
+    @Test
+    void countsEverySpellingOfAHeaderUnderItsCanonicalName() {
+        metrics.recordHeaderSeen("Via");
+        metrics.recordHeaderSeen("VIA");
+        metrics.recordHeaderSeen("v");
+        metrics.recordHeaderSeen("Call-ID");
+        metrics.recordHeaderSeen("i");
+        metrics.recordHeaderSeen("call-id");
+
+        assertThat(headers("via")).isEqualTo(3);
+        assertThat(headers("call-id")).isEqualTo(3);
+        assertThat(registry.find("sipvalidator.headers").counters()).extracting(counter -> counter.getId().getTag("name"))
+            .containsExactlyInAnyOrder("other", "via", "call-id");
+    }
+
+    @Test
+    void countsHeadersWithoutRfcReferenceAsOther() {
+        metrics.recordHeaderSeen("X-Custom");
+        metrics.recordHeaderSeen("x-custom");
+        metrics.recordHeaderSeen("P-Asserted-Identity");
+
+        assertThat(headers("other")).isEqualTo(3);
+        assertThat(registry.find("sipvalidator.headers").counters()).hasSize(1);
+    }
+
+    @Test
+    void countsHeadersOfValidatedMessages() {
+        SipValidatorService service = new SipValidatorService(metrics, ValidationCache.disabled(),
+            MessageLimits.defaults());
+
+        service.validateMessage(SipValidatorServiceTest.INVITE.replace("Via:", "v:"));
+        service.validateMessageDetailed(SipValidatorServiceTest.INVITE.replace("Via:", "VIA:")
+            .replace("Contact:", "X-Custom: 1\r\nContact:"));
+
+        assertThat(headers("via")).isEqualTo(2);
+        assertThat(headers("max-forwards")).isEqualTo(2);
+        assertThat(headers("other")).isEqualTo(1);
+    }
+
+    @Test
+    void countsHeadersOfCachedResultsOnEveryValidation() {
+        SipValidatorProperties properties = new SipValidatorProperties();
+        properties.getCache().setEnabled(true);
+        ValidationCache cache = new ValidationCache(properties, registry);
+        SipValidatorService service = new SipValidatorService(metrics, cache, MessageLimits.defaults());
+
+        service.validateMessage(SipValidatorServiceTest.INVITE);
+        service.validateMessage(SipValidatorServiceTest.INVITE);
+
+        assertThat(registry.get("cache.gets").tag("cache", "sipvalidator.validation").tag("result", "hit").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(headers("via")).isEqualTo(2);
+        assertThat(headers("contact")).isEqualTo(2);
+    }
+
+    private double headers(String name) {
+        Counter counter = registry.find("sipvalidator.headers").tag("name", name).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}